@@ -2,8 +2,10 @@ package org.soika.auth_provider;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class AuthProviderApplication {
     public static void main(String[] args) {
         SpringApplication.run(AuthProviderApplication.class, args);
@@ -1,25 +1,56 @@
 package org.soika.auth_provider.config;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.soika.auth_provider.model.User;
+import org.soika.auth_provider.service.UserDetailsCache;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.soika.auth_provider.service.JwtService;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 @Component
+@Slf4j
 public class JwtAuthFilter extends OncePerRequestFilter {
     
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final UserDetailsCache userDetailsCache;
+    private final boolean loadUser;
+    private final List<RequestMatcher> rolePaths;
     
-    public JwtAuthFilter(JwtService jwtService, UserDetailsService userDetailsService) {
+    public JwtAuthFilter(
+            JwtService jwtService,
+            UserDetailsService userDetailsService,
+            UserDetailsCache userDetailsCache,
+            @Value("${jwt.filter.load-user:false}") boolean loadUser,
+            @Value("${jwt.filter.role-paths:/api/admin/**,/api/moderator/**}") List<String> rolePaths
+    ) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.userDetailsCache = userDetailsCache;
+        this.loadUser = loadUser;
+        this.rolePaths = rolePaths.stream()
+                .<RequestMatcher>map(AntPathRequestMatcher::antMatcher)
+                .toList();
     }
     
     @Override
@@ -29,21 +60,13 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             FilterChain filterChain
     ) {
         String authHeader = request.getHeader("Authorization");
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+        if (authHeader != null && authHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
             String jwt = authHeader.substring(7);
-            String username = jwtService.extractUsername(jwt);
-            
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                var userDetails = userDetailsService.loadUserByUsername(username);
-                if (jwtService.validateToken(jwt, userDetails)) {
-                    var authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
-                            null,
-                            userDetails.getAuthorities()
-                    );
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                }
+            var authToken = authenticate(jwt, isRoleProtected(request));
+            if (authToken != null) {
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authToken);
             }
         }
         try {
@@ -52,4 +75,60 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             throw new RuntimeException(e);
         }
     }
-} 
\ No newline at end of file
+
+    // Roles in the token are fixed until it expires, so role-protected paths read the current role
+    // from the database on every request, past the cache, which other instances do not invalidate
+    private boolean isRoleProtected(HttpServletRequest request) {
+        for (RequestMatcher matcher : rolePaths) {
+            if (matcher.matches(request)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private UsernamePasswordAuthenticationToken authenticate(String jwt, boolean roleProtected) {
+        Claims claims;
+        try {
+            claims = jwtService.extractAllClaims(jwt);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Rejected bearer token: {}", e.getMessage());
+            return null;
+        }
+
+        String username = claims.getSubject();
+        if (username == null || jwtService.isRevoked(claims)) {
+            return null;
+        }
+
+        if (!loadUser && !roleProtected) {
+            return new UsernamePasswordAuthenticationToken(username, null, extractAuthorities(claims));
+        }
+
+        try {
+            User user = roleProtected
+                    ? (User) userDetailsService.loadUserByUsername(username)
+                    : userDetailsCache.get(username, email -> (User) userDetailsService.loadUserByUsername(email));
+            return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+        } catch (UsernameNotFoundException e) {
+            log.debug("Token subject no longer exists: {}", username);
+            return null;
+        }
+    }
+
+    private static List<GrantedAuthority> extractAuthorities(Claims claims) {
+        if (!(claims.get("authorities") instanceof Collection<?> values)) {
+            return List.of();
+        }
+
+        List<GrantedAuthority> authorities = new ArrayList<>(values.size());
+        for (Object value : values) {
+            if (value instanceof Map<?, ?> map && map.get("authority") != null) {
+                authorities.add(new SimpleGrantedAuthority(map.get("authority").toString()));
+            } else if (value instanceof String authority) {
+                authorities.add(new SimpleGrantedAuthority(authority));
+            }
+        }
+        return authorities;
+    }
+}
@@ -2,15 +2,28 @@ package org.soika.auth_provider.controller;
 
 import org.soika.auth_provider.dto.*;
 import org.soika.auth_provider.model.User;
+import jakarta.servlet.http.HttpServletRequest;
 import org.soika.auth_provider.service.JwtService;
+import org.soika.auth_provider.service.LoginThrottle;
+import org.soika.auth_provider.service.PasswordHashingExecutor;
+import org.soika.auth_provider.service.RefreshTokenService;
+import org.soika.auth_provider.service.TokenRevocationService;
 import org.soika.auth_provider.service.UserService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.web.bind.annotation.*;
 
 import lombok.RequiredArgsConstructor;
 
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
@@ -19,30 +32,87 @@ public class AuthController {
     private final AuthenticationManager authenticationManager;
     private final UserService userService;
     private final JwtService jwtService;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final LoginThrottle loginThrottle;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationService revocationService;
 
     
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@RequestBody AuthRequest request) {
-        authenticationManager.authenticate(
-            new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword())
-        );
+    public ResponseEntity<AuthResponse> login(@RequestBody AuthRequest request, HttpServletRequest httpRequest) {
+        String ip = httpRequest.getRemoteAddr();
+        if (!loginThrottle.allowLogin(ip, request.getEmail())) {
+            return tooManyRequests();
+        }
+
+        User user;
+        try {
+            var authentication = passwordHashingExecutor.execute(() -> authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword())
+            ));
+            user = (User) authentication.getPrincipal();
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
+        } catch (AuthenticationException e) {
+            loginThrottle.recordFailure(ip, request.getEmail());
+            throw e;
+        }
 
-        var user = userService.loadUserByUsername(request.getEmail());
         var token = jwtService.generateToken(user);
+        var refreshToken = refreshTokenService.issue(user);
         
-        return ResponseEntity.ok(new AuthResponse(token, user));
+        return ResponseEntity.ok(new AuthResponse(token, refreshToken, user));
     }
 
     @PostMapping("/register")
-    public ResponseEntity<AuthResponse> register(@RequestBody RegisterRequest request) {
-        var user = userService.createUser(
-            request.getEmail(),
-            request.getPassword(),
-            request.getUsername()
-        );
+    public ResponseEntity<AuthResponse> register(@RequestBody RegisterRequest request, HttpServletRequest httpRequest) {
+        if (!loginThrottle.tryAcquireRegistration(httpRequest.getRemoteAddr())) {
+            return tooManyRequests();
+        }
+
+        User user;
+        try {
+            user = passwordHashingExecutor.execute(() -> userService.createUser(
+                request.getEmail(),
+                request.getPassword(),
+                request.getUsername()
+            ));
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
+        }
+
         var token = jwtService.generateToken(user);
+        var refreshToken = refreshTokenService.issue(user);
         
-        return ResponseEntity.ok(new AuthResponse(token, user));
+        return ResponseEntity.ok(new AuthResponse(token, refreshToken, user));
+    }
+
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthResponse> refresh(@RequestBody RefreshTokenRequest request) {
+        if (request.getRefreshToken() == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        try {
+            var rotation = refreshTokenService.rotate(request.getRefreshToken());
+            var token = jwtService.generateToken(rotation.user());
+            return ResponseEntity.ok(new AuthResponse(token, rotation.refreshToken(), rotation.user()));
+        } catch (BadCredentialsException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @RequestBody(required = false) RefreshTokenRequest request
+    ) {
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            jwtService.revokeToken(authHeader.substring(7));
+        }
+        if (request != null && request.getRefreshToken() != null) {
+            refreshTokenService.revoke(request.getRefreshToken());
+        }
+        return ResponseEntity.noContent().build();
     }
 
     @GetMapping("/me")
@@ -57,4 +127,27 @@ public class AuthController {
     public ResponseEntity<ValidateTokenResponse> validateToken(@RequestBody ValidateTokenRequest request) {
         return ResponseEntity.ok(jwtService.validateToken(request));
     }
+
+    @GetMapping("/revocations")
+    public ResponseEntity<RevocationsResponse> revocations(@RequestParam(defaultValue = "0") long after) {
+        return ResponseEntity.ok(new RevocationsResponse(revocationService.findAfter(after).stream()
+                .map(revocation -> new RevokedTokenResponse(
+                        revocation.getId(),
+                        revocation.getJti(),
+                        revocation.getExpiresAt().toEpochMilli()))
+                .toList()));
+    }
+
+    @GetMapping("/jwks")
+    public ResponseEntity<JwkSetResponse> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofMinutes(5)))
+                .body(jwtService.getJwkSet());
+    }
+
+    private static ResponseEntity<AuthResponse> tooManyRequests() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
 } 
\ No newline at end of file
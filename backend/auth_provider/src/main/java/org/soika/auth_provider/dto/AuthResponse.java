@@ -4,12 +4,14 @@ import org.soika.auth_provider.model.User;
 
 public class AuthResponse {
     private String token;
+    private String refreshToken;
     private User user;
     
     public AuthResponse() {}
     
-    public AuthResponse(String token, User user) {
+    public AuthResponse(String token, String refreshToken, User user) {
         this.token = token;
+        this.refreshToken = refreshToken;
         this.user = user;
     }
     
@@ -17,6 +19,10 @@ public class AuthResponse {
         return token;
     }
     
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+    
     public User getUser() {
         return user;
     }
@@ -0,0 +1,8 @@
+package org.soika.auth_provider.dto;
+
+import lombok.Data;
+
+@Data
+public class RefreshTokenRequest {
+    private String refreshToken;
+}
@@ -0,0 +1,12 @@
+package org.soika.auth_provider.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class RevocationsResponse {
+    private List<RevokedTokenResponse> revocations;
+}
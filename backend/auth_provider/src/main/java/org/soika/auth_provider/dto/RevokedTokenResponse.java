@@ -0,0 +1,12 @@
+package org.soika.auth_provider.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class RevokedTokenResponse {
+    private Long id;
+    private String jti;
+    private Long expiresAt;
+}
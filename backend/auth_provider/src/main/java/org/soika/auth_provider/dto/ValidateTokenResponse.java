@@ -10,4 +10,6 @@ public class ValidateTokenResponse {
     private String username;
     private String error;
     private Long id;
+    private Long expiresAt;
+    private String jti;
 } 
\ No newline at end of file
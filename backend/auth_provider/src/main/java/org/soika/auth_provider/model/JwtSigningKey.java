@@ -0,0 +1,46 @@
+package org.soika.auth_provider.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "jwt_signing_keys")
+@Getter
+@NoArgsConstructor
+public class JwtSigningKey {
+
+    @Id
+    private String kid;
+
+    // base64 DER, PKCS#8 and X.509, as in jwt.keys.private-key / public-key; the private key is
+    // AES-GCM encrypted (prefixed "aes-gcm:") when jwt.keys.encryption-key is set
+    @Setter
+    @Column(name = "private_key", nullable = false)
+    private String privateKey;
+
+    @Column(name = "public_key", nullable = false)
+    private String publicKey;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    // null while the key waits to be promoted by the next rotation
+    @Setter
+    @Column(name = "activated_at")
+    private Instant activatedAt;
+
+    public JwtSigningKey(String kid, String privateKey, String publicKey) {
+        this.kid = kid;
+        this.privateKey = privateKey;
+        this.publicKey = publicKey;
+        this.createdAt = Instant.now();
+    }
+
+    public boolean isActive() {
+        return activatedAt != null;
+    }
+}
@@ -0,0 +1,42 @@
+package org.soika.auth_provider.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "refresh_tokens")
+@Getter
+@NoArgsConstructor
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "token_hash", nullable = false, unique = true)
+    private String tokenHash;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Setter
+    @Column(nullable = false)
+    private boolean revoked;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public RefreshToken(String tokenHash, Long userId, Instant expiresAt) {
+        this.tokenHash = tokenHash;
+        this.userId = userId;
+        this.expiresAt = expiresAt;
+        this.createdAt = Instant.now();
+    }
+}
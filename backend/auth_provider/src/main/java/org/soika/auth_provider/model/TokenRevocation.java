@@ -0,0 +1,33 @@
+package org.soika.auth_provider.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "token_revocations")
+@Getter
+@NoArgsConstructor
+public class TokenRevocation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true)
+    private String jti;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public TokenRevocation(String jti, Instant expiresAt) {
+        this.jti = jti;
+        this.expiresAt = expiresAt;
+        this.createdAt = Instant.now();
+    }
+}
@@ -24,6 +24,7 @@ public class User implements UserDetails {
     private String email;
     
     @Getter
+    @Setter
     private String password;
 
     @Setter
@@ -0,0 +1,23 @@
+package org.soika.auth_provider.repository;
+
+import jakarta.persistence.LockModeType;
+import org.soika.auth_provider.model.JwtSigningKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface JwtSigningKeyRepository extends JpaRepository<JwtSigningKey, String> {
+
+    // A handful of rows; locking them all serializes rotations of several instances
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select k from JwtSigningKey k")
+    List<JwtSigningKey> findAllForUpdate();
+
+    // Held until the transaction ends; also covers the empty table, where there is no row to lock
+    @Query(value = "select 1 from pg_advisory_xact_lock(hashtext('jwt_signing_keys'))", nativeQuery = true)
+    Integer lockKeys();
+}
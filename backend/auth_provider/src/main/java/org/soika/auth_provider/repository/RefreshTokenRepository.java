@@ -0,0 +1,24 @@
+package org.soika.auth_provider.repository;
+
+import org.soika.auth_provider.model.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    // Conditional, so of two concurrent rotations of one token only one gets a row back
+    @Modifying
+    @Query("update RefreshToken t set t.revoked = true where t.tokenHash = :tokenHash and t.revoked = false")
+    int claim(@Param("tokenHash") String tokenHash);
+
+    @Modifying
+    @Query("update RefreshToken t set t.revoked = true where t.userId = :userId and t.revoked = false")
+    int revokeAllByUserId(@Param("userId") Long userId);
+}
@@ -0,0 +1,23 @@
+package org.soika.auth_provider.repository;
+
+import org.soika.auth_provider.model.TokenRevocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, Long> {
+    boolean existsByJti(String jti);
+    List<TokenRevocation> findTop1000ByIdGreaterThanOrderByIdAsc(Long id);
+
+    @Modifying
+    @Transactional
+    @Query("delete from TokenRevocation r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") Instant now);
+}
@@ -0,0 +1,262 @@
+package org.soika.auth_provider.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soika.auth_provider.model.JwtSigningKey;
+import org.soika.auth_provider.repository.JwtSigningKeyRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * RS256 signing keys, persisted in {@code jwt_signing_keys} so that restarts and every instance
+ * sign and publish the same keys. The newest activated key signs, {@code retained} activated keys
+ * verify, and one pending key is published ahead of the rotation that promotes it. A configured
+ * key pair is stored on startup: it signs when nothing else does, otherwise it is the next to be
+ * promoted.
+ * <p>
+ * Private keys are stored encrypted with AES-GCM under {@code jwt.keys.encryption-key}, bound to
+ * their kid, so that readers of the shared database cannot sign tokens. Without that key they are
+ * stored as plain base64, and existing plain rows are encrypted once it is configured.
+ */
+@Component
+@Slf4j
+public class JwtKeyStore {
+
+    private static final int KEY_SIZE = 2048;
+    private static final String ENCRYPTED_PREFIX = "aes-gcm:";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Comparator<JwtSigningKey> NEWEST_ACTIVATED_FIRST =
+            Comparator.comparing(JwtSigningKey::getActivatedAt).reversed().thenComparing(JwtSigningKey::getKid);
+    private static final Comparator<JwtSigningKey> OLDEST_CREATED_FIRST =
+            Comparator.comparing(JwtSigningKey::getCreatedAt).thenComparing(JwtSigningKey::getKid);
+
+    private final JwtSigningKeyRepository repository;
+    private final TransactionOperations transactions;
+    private final KeyPair configured;
+    private final SecretKey encryptionKey;
+    private final int retainedKeys;
+    private final Duration rotationInterval;
+    // Current key first, then the retained ones, then the pending one
+    private volatile List<SigningKey> keys;
+
+    public JwtKeyStore(
+            JwtSigningKeyRepository repository,
+            TransactionOperations transactions,
+            @Value("${jwt.keys.private-key:}") String privateKey,
+            @Value("${jwt.keys.public-key:}") String publicKey,
+            @Value("${jwt.keys.encryption-key:}") String encryptionKey,
+            @Value("${jwt.keys.retained:2}") int retainedKeys,
+            @Value("${jwt.keys.rotation-interval:P7D}") Duration rotationInterval
+    ) {
+        this.repository = repository;
+        this.transactions = transactions;
+        this.configured = privateKey.isBlank() || publicKey.isBlank() ? null : decodeKeyPair(privateKey, publicKey);
+        this.encryptionKey = encryptionKey.isBlank() ? null : decodeEncryptionKey(encryptionKey);
+        if (this.encryptionKey == null) {
+            log.warn("No JWT key encryption key configured (JWT_KEY_ENCRYPTION_KEY); "
+                    + "private keys in jwt_signing_keys are stored unencrypted");
+        }
+        this.retainedKeys = Math.max(1, retainedKeys);
+        this.rotationInterval = rotationInterval;
+        transactions.executeWithoutResult(status -> synchronize());
+    }
+
+    public SigningKey current() {
+        return keys.get(0);
+    }
+
+    public SigningKey find(String kid) {
+        for (SigningKey key : keys) {
+            if (key.kid().equals(kid)) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    public List<SigningKey> all() {
+        return keys;
+    }
+
+    /**
+     * Promotes the pending key once the current one has signed for {@code rotation-interval},
+     * and picks up rotations done by other instances in the meantime.
+     */
+    @Scheduled(fixedDelayString = "${jwt.keys.check-interval:PT1M}")
+    public void rotate() {
+        try {
+            transactions.executeWithoutResult(status -> synchronize());
+        } catch (RuntimeException e) {
+            log.warn("Failed to check JWT signing keys, keeping kid {}: {}", current().kid(), e.getMessage());
+        }
+    }
+
+    private void synchronize() {
+        // Row locks alone leave an empty table unguarded, and every instance would generate a key
+        repository.lockKeys();
+        List<JwtSigningKey> stored = new ArrayList<>(repository.findAllForUpdate());
+        if (encryptionKey != null) {
+            for (JwtSigningKey key : stored) {
+                if (!key.getPrivateKey().startsWith(ENCRYPTED_PREFIX)) {
+                    key.setPrivateKey(encrypt(key.getKid(), key.getPrivateKey()));
+                    repository.save(key);
+                }
+            }
+        }
+        if (configured != null) {
+            String kid = keyId((RSAPublicKey) configured.getPublic());
+            if (stored.stream().noneMatch(key -> key.getKid().equals(kid))) {
+                stored.add(repository.save(toEntity(configured)));
+            }
+        } else if (stored.isEmpty()) {
+            log.warn("No JWT signing key configured (JWT_PRIVATE_KEY / JWT_PUBLIC_KEY) and none stored; "
+                    + "generating one in jwt_signing_keys. Configure a key pair to control what signs tokens");
+        }
+
+        List<JwtSigningKey> active = new ArrayList<>(stored.stream().filter(JwtSigningKey::isActive).sorted(NEWEST_ACTIVATED_FIRST).toList());
+        List<JwtSigningKey> pending = new ArrayList<>(stored.stream().filter(key -> !key.isActive()).sorted(OLDEST_CREATED_FIRST).toList());
+        Instant now = Instant.now();
+        if (active.isEmpty() || !active.get(0).getActivatedAt().plus(rotationInterval).isAfter(now)) {
+            JwtSigningKey next = pending.isEmpty() ? repository.save(toEntity(generateKeyPair())) : pending.remove(0);
+            next.setActivatedAt(now);
+            active.add(0, repository.save(next));
+            log.info("Rotated JWT signing key, current kid: {}", next.getKid());
+        }
+        if (pending.isEmpty()) {
+            pending.add(repository.save(toEntity(generateKeyPair())));
+        }
+        if (active.size() > retainedKeys) {
+            List<JwtSigningKey> retired = List.copyOf(active.subList(retainedKeys, active.size()));
+            repository.deleteAll(retired);
+            active.removeAll(retired);
+        }
+
+        List<SigningKey> loaded = new ArrayList<>(active.size() + pending.size());
+        active.forEach(key -> loaded.add(toSigningKey(key)));
+        pending.forEach(key -> loaded.add(toSigningKey(key)));
+        keys = List.copyOf(loaded);
+    }
+
+    private static KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(KEY_SIZE);
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot generate RSA key pair", e);
+        }
+    }
+
+    private static KeyPair decodeKeyPair(String privateKey, String publicKey) {
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+            return new KeyPair(
+                    keyFactory.generatePublic(new X509EncodedKeySpec(Base64.getMimeDecoder().decode(publicKey))),
+                    keyFactory.generatePrivate(new PKCS8EncodedKeySpec(Base64.getMimeDecoder().decode(privateKey)))
+            );
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Cannot decode RSA key pair", e);
+        }
+    }
+
+    private static SecretKey decodeEncryptionKey(String encoded) {
+        byte[] key;
+        try {
+            key = Base64.getDecoder().decode(encoded);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Cannot decode JWT key encryption key", e);
+        }
+        if (key.length != 16 && key.length != 24 && key.length != 32) {
+            throw new IllegalStateException("JWT key encryption key must be a base64 AES key of 128, 192 or 256 bits");
+        }
+        return new SecretKeySpec(key, "AES");
+    }
+
+    private JwtSigningKey toEntity(KeyPair keyPair) {
+        Base64.Encoder encoder = Base64.getEncoder();
+        String kid = keyId((RSAPublicKey) keyPair.getPublic());
+        String privateKey = encoder.encodeToString(keyPair.getPrivate().getEncoded());
+        return new JwtSigningKey(
+                kid,
+                encryptionKey == null ? privateKey : encrypt(kid, privateKey),
+                encoder.encodeToString(keyPair.getPublic().getEncoded()));
+    }
+
+    private SigningKey toSigningKey(JwtSigningKey key) {
+        KeyPair keyPair = decodeKeyPair(decrypt(key.getKid(), key.getPrivateKey()), key.getPublicKey());
+        return new SigningKey(key.getKid(), keyPair.getPrivate(), (RSAPublicKey) keyPair.getPublic());
+    }
+
+    // Stored as the prefix and base64 of IV followed by ciphertext and tag; the kid is the associated data
+    private String encrypt(String kid, String privateKey) {
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            RANDOM.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+            byte[] sealed = cipher.doFinal(privateKey.getBytes(StandardCharsets.UTF_8));
+            byte[] stored = new byte[iv.length + sealed.length];
+            System.arraycopy(iv, 0, stored, 0, iv.length);
+            System.arraycopy(sealed, 0, stored, iv.length, sealed.length);
+            return ENCRYPTED_PREFIX + Base64.getEncoder().encodeToString(stored);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot encrypt JWT signing key " + kid, e);
+        }
+    }
+
+    private String decrypt(String kid, String stored) {
+        if (!stored.startsWith(ENCRYPTED_PREFIX)) {
+            return stored;
+        }
+        if (encryptionKey == null) {
+            throw new IllegalStateException("JWT signing key " + kid + " is encrypted but no encryption key is configured");
+        }
+        try {
+            byte[] sealed = Base64.getDecoder().decode(stored.substring(ENCRYPTED_PREFIX.length()));
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_BITS, sealed, 0, IV_LENGTH));
+            cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+            return new String(cipher.doFinal(sealed, IV_LENGTH, sealed.length - IV_LENGTH), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Cannot decrypt JWT signing key " + kid, e);
+        }
+    }
+
+    private static String keyId(RSAPublicKey publicKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(publicKey.getEncoded());
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 16);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record SigningKey(String kid, PrivateKey privateKey, RSAPublicKey publicKey) {
+    }
+}
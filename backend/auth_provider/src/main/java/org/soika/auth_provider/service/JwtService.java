@@ -1,10 +1,17 @@
 package org.soika.auth_provider.service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Header;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.ProtectedHeader;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
 import lombok.extern.slf4j.Slf4j;
+import org.soika.auth_provider.dto.JwkResponse;
+import org.soika.auth_provider.dto.JwkSetResponse;
 import org.soika.auth_provider.dto.ValidateTokenRequest;
 import org.soika.auth_provider.dto.ValidateTokenResponse;
 import org.soika.auth_provider.model.User;
@@ -12,62 +19,144 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.SecretKey;
+import java.math.BigInteger;
+import java.security.Key;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Date;
+import java.util.UUID;
 
 @Service
 @Slf4j
 public class JwtService {
-    
-    @Value("${jwt.secret}")
-    private String secret;
-    
-    @Value("${jwt.expiration}")
-    private long jwtExpiration = 86400000; // 24 hours
+
+    private final JwtKeyStore keyStore;
+    private final TokenRevocationService revocationService;
+    private final SecretKey legacyKey;
+    private final long jwtExpiration;
+    private final JwtParser parser;
+
+    public JwtService(
+            JwtKeyStore keyStore,
+            TokenRevocationService revocationService,
+            @Value("${jwt.secret}") String secret,
+            @Value("${jwt.expiration:900000}") long jwtExpiration
+    ) {
+        this.keyStore = keyStore;
+        this.revocationService = revocationService;
+        this.legacyKey = Keys.hmacShaKeyFor(secret.getBytes());
+        this.jwtExpiration = jwtExpiration;
+        // JwtParser is immutable and thread-safe; the locator reads the key store on every call
+        this.parser = Jwts.parser()
+                .keyLocator(this::locateKey)
+                .build();
+    }
     
     public String generateToken(User userDetails) {
+        JwtKeyStore.SigningKey signingKey = keyStore.current();
+        long now = System.currentTimeMillis();
         return Jwts.builder()
+                .header().keyId(signingKey.kid()).and()
+                .id(UUID.randomUUID().toString())
                 .subject(userDetails.getUsername())
                 .claim("authorities", userDetails.getAuthorities())
                 .claim("id", userDetails.getId())
-                .issuedAt(new Date())
-                .expiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(Keys.hmacShaKeyFor(secret.getBytes()), SignatureAlgorithm.HS512)
+                .issuedAt(new Date(now))
+                .expiration(new Date(now + jwtExpiration))
+                .signWith(signingKey.privateKey(), Jwts.SIG.RS256)
                 .compact();
     }
     
     public boolean validateToken(String token, UserDetails userDetails) {
         Claims claims = extractAllClaims(token);
-        String username = claims.getSubject();
-        Date expiration = claims.getExpiration();
-        return username.equals(userDetails.getUsername()) && !expiration.before(new Date());
+        return claims.getSubject().equals(userDetails.getUsername())
+                && claims.getExpiration().getTime() >= System.currentTimeMillis();
     }
 
     public ValidateTokenResponse validateToken(ValidateTokenRequest request) {
         try {
             Claims claims = extractAllClaims(request.getToken());
+            if (isRevoked(claims)) {
+                return invalid("Token revoked");
+            }
+            Date expiration = claims.getExpiration();
             return ValidateTokenResponse.builder()
                     .valid(true)
                     .username(claims.getSubject())
                     .id(claims.get("id", Long.class))
+                    .jti(claims.getId())
+                    .expiresAt(expiration != null ? expiration.getTime() : null)
                     .build();
-        } catch (Exception e) {
-            log.error(e.getMessage());
-            return ValidateTokenResponse.builder()
-                    .valid(false)
-                    .error(e.getMessage())
-                    .build();
+        } catch (ExpiredJwtException e) {
+            log.debug("Expired token for subject {}", e.getClaims().getSubject());
+            return invalid("Token expired");
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Invalid token: {}", e.getMessage());
+            return invalid(e.getMessage());
+        }
+    }
+    
+    public boolean isRevoked(Claims claims) {
+        return revocationService.isRevoked(claims.getId());
+    }
+
+    public void revokeToken(String token) {
+        try {
+            Claims claims = extractAllClaims(token);
+            if (claims.getExpiration() != null) {
+                revocationService.revoke(claims.getId(), claims.getExpiration().toInstant());
+            }
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Nothing to revoke: {}", e.getMessage());
         }
     }
     
     public String extractUsername(String token) {
         return extractAllClaims(token).getSubject();
     }
+
+    public JwkSetResponse getJwkSet() {
+        return new JwkSetResponse(keyStore.all().stream()
+                .map(key -> JwkResponse.builder()
+                        .kty("RSA")
+                        .kid(key.kid())
+                        .use("sig")
+                        .alg(Jwts.SIG.RS256.getId())
+                        .n(base64Url(key.publicKey().getModulus()))
+                        .e(base64Url(key.publicKey().getPublicExponent()))
+                        .build())
+                .toList());
+    }
     
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .setSigningKey(Keys.hmacShaKeyFor(secret.getBytes()))
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    public Claims extractAllClaims(String token) {
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    private Key locateKey(Header header) {
+        if (header instanceof ProtectedHeader protectedHeader && protectedHeader.getKeyId() != null) {
+            JwtKeyStore.SigningKey signingKey = keyStore.find(protectedHeader.getKeyId());
+            if (signingKey == null) {
+                throw new SignatureException("Unknown signing key: " + protectedHeader.getKeyId());
+            }
+            return signingKey.publicKey();
+        }
+        // Tokens issued before the switch to RS256 carry no kid and are signed with the shared secret
+        return legacyKey;
+    }
+
+    private static ValidateTokenResponse invalid(String error) {
+        return ValidateTokenResponse.builder()
+                .valid(false)
+                .error(error)
+                .build();
+    }
+
+    private static String base64Url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,110 @@
+package org.soika.auth_provider.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+
+@Component
+public class LoginThrottle {
+
+    private final Cache<String, SlidingWindow> windows;
+    private final long windowMillis;
+    private final int perIpLimit;
+    private final int perEmailLimit;
+
+    public LoginThrottle(
+            @Value("${auth.throttle.window:1m}") Duration window,
+            @Value("${auth.throttle.per-ip:30}") int perIpLimit,
+            @Value("${auth.throttle.per-email:10}") int perEmailLimit,
+            @Value("${auth.throttle.maximum-keys:100000}") long maximumKeys
+    ) {
+        this.windowMillis = window.toMillis();
+        this.perIpLimit = perIpLimit;
+        this.perEmailLimit = perEmailLimit;
+        this.windows = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(window.multipliedBy(2))
+                .build();
+    }
+
+    /**
+     * Whether a login may be attempted. Only failures count, and the email limit is kept per
+     * (email, IP), so failures sent from elsewhere with someone's email cannot lock them out.
+     */
+    public boolean allowLogin(String ip, String email) {
+        long now = System.currentTimeMillis();
+        return (email == null || allows(emailKey(ip, email), perEmailLimit, now))
+                && (ip == null || allows(ipKey(ip), perIpLimit, now));
+    }
+
+    public void recordFailure(String ip, String email) {
+        long now = System.currentTimeMillis();
+        if (email != null) {
+            record(emailKey(ip, email), now);
+        }
+        if (ip != null) {
+            record(ipKey(ip), now);
+        }
+    }
+
+    // Registration hashes a password whatever its outcome, so every attempt is charged to the IP
+    public boolean tryAcquireRegistration(String ip) {
+        long now = System.currentTimeMillis();
+        if (ip == null) {
+            return true;
+        }
+        if (!allows(ipKey(ip), perIpLimit, now)) {
+            return false;
+        }
+        record(ipKey(ip), now);
+        return true;
+    }
+
+    private static String ipKey(String ip) {
+        return "ip:" + ip;
+    }
+
+    private static String emailKey(String ip, String email) {
+        return "email:" + email.toLowerCase(Locale.ROOT) + "|" + ip;
+    }
+
+    private boolean allows(String key, int limit, long now) {
+        SlidingWindow window = windows.getIfPresent(key);
+        return window == null || window.allows(now, windowMillis, limit);
+    }
+
+    private void record(String key, long now) {
+        windows.get(key, k -> new SlidingWindow()).record(now, windowMillis);
+    }
+
+    // Sliding window approximated by the current fixed window plus a weighted share of the previous one
+    private static final class SlidingWindow {
+        private long windowStart;
+        private int previous;
+        private int current;
+
+        synchronized boolean allows(long now, long windowMillis, int limit) {
+            roll(now, windowMillis);
+            double previousWeight = 1.0 - (double) (now - windowStart) / windowMillis;
+            return previous * previousWeight + current < limit;
+        }
+
+        synchronized void record(long now, long windowMillis) {
+            roll(now, windowMillis);
+            current++;
+        }
+
+        private void roll(long now, long windowMillis) {
+            long elapsedWindows = (now - windowStart) / windowMillis;
+            if (elapsedWindows > 0) {
+                previous = elapsedWindows == 1 ? current : 0;
+                current = 0;
+                windowStart = now - (now % windowMillis);
+            }
+        }
+    }
+}
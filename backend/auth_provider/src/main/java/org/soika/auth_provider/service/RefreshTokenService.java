@@ -0,0 +1,92 @@
+package org.soika.auth_provider.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soika.auth_provider.model.RefreshToken;
+import org.soika.auth_provider.model.User;
+import org.soika.auth_provider.repository.RefreshTokenRepository;
+import org.soika.auth_provider.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+@Service
+@Slf4j
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+    private final Duration expiration;
+    private final SecureRandom random = new SecureRandom();
+
+    public RefreshTokenService(
+            RefreshTokenRepository refreshTokenRepository,
+            UserRepository userRepository,
+            @Value("${jwt.refresh.expiration:P30D}") Duration expiration
+    ) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+        this.expiration = expiration;
+    }
+
+    public String issue(User user) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        refreshTokenRepository.save(new RefreshToken(hash(token), user.getId(), Instant.now().plus(expiration)));
+        return token;
+    }
+
+    @Transactional(noRollbackFor = BadCredentialsException.class)
+    public Rotation rotate(String token) {
+        String tokenHash = hash(token);
+        RefreshToken stored = refreshTokenRepository.findByTokenHash(tokenHash)
+                .orElseThrow(() -> new BadCredentialsException("Unknown refresh token"));
+
+        if (!stored.isRevoked() && stored.getExpiresAt().isBefore(Instant.now())) {
+            throw new BadCredentialsException("Refresh token expired");
+        }
+        // The read above takes no lock, so the token is claimed with a conditional update: a
+        // concurrent rotation of the same token finds it claimed and counts as a reuse
+        if (stored.isRevoked() || refreshTokenRepository.claim(tokenHash) == 0) {
+            // A rotated token was presented again, so it has leaked: cut off every session of the user
+            log.warn("Refresh token reuse detected for user {}", stored.getUserId());
+            refreshTokenRepository.revokeAllByUserId(stored.getUserId());
+            throw new BadCredentialsException("Refresh token reused");
+        }
+
+        User user = userRepository.findById(stored.getUserId())
+                .orElseThrow(() -> new BadCredentialsException("User no longer exists"));
+        return new Rotation(user, issue(user));
+    }
+
+    @Transactional
+    public void revoke(String token) {
+        refreshTokenRepository.findByTokenHash(hash(token)).ifPresent(stored -> {
+            stored.setRevoked(true);
+            refreshTokenRepository.save(stored);
+        });
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record Rotation(User user, String refreshToken) {
+    }
+}
@@ -0,0 +1,62 @@
+package org.soika.auth_provider.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class RevocationBloomFilter {
+
+    private final AtomicLongArray bits;
+    private final int bitCount;
+    private final int hashFunctions;
+
+    public RevocationBloomFilter(int expectedInsertions, double falsePositiveRate) {
+        int insertions = Math.max(1, expectedInsertions);
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-insertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bitCount = (int) Math.max(64, Math.min(optimalBits, Integer.MAX_VALUE - 63L));
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / insertions * ln2));
+        this.bits = new AtomicLongArray((bitCount + 63) >>> 6);
+    }
+
+    public void put(String value) {
+        long hash = hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            int index = index(h1 + i * h2);
+            bits.getAndAccumulate(index >>> 6, 1L << index, (word, mask) -> word | mask);
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            int index = index(h1 + i * h2);
+            if ((bits.get(index >>> 6) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int index(int combinedHash) {
+        return (combinedHash & Integer.MAX_VALUE) % bitCount;
+    }
+
+    // FNV-1a followed by the MurmurHash3 finalizer
+    private static long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
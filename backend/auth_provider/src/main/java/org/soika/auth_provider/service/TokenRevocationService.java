@@ -0,0 +1,99 @@
+package org.soika.auth_provider.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soika.auth_provider.model.TokenRevocation;
+import org.soika.auth_provider.repository.TokenRevocationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+
+@Service
+@Slf4j
+public class TokenRevocationService {
+
+    private final TokenRevocationRepository repository;
+    private final int expectedInsertions;
+    private final double falsePositiveRate;
+    private final long syncOverlap;
+
+    private volatile RevocationBloomFilter filter;
+    private long lastSeenId;
+
+    public TokenRevocationService(
+            TokenRevocationRepository repository,
+            @Value("${jwt.revocation.expected-insertions:100000}") int expectedInsertions,
+            @Value("${jwt.revocation.false-positive-rate:0.01}") double falsePositiveRate,
+            @Value("${jwt.revocation.sync-overlap:100}") long syncOverlap
+    ) {
+        this.repository = repository;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.syncOverlap = syncOverlap;
+        this.filter = new RevocationBloomFilter(expectedInsertions, falsePositiveRate);
+    }
+
+    // Only filter hits reach the database, so tokens that were never revoked are checked in memory
+    public boolean isRevoked(String jti) {
+        if (jti == null || !filter.mightContain(jti)) {
+            return false;
+        }
+        return repository.existsByJti(jti);
+    }
+
+    public void revoke(String jti, Instant expiresAt) {
+        if (jti == null || expiresAt == null || expiresAt.isBefore(Instant.now()) || repository.existsByJti(jti)) {
+            return;
+        }
+        repository.save(new TokenRevocation(jti, expiresAt));
+        filter.put(jti);
+    }
+
+    public List<TokenRevocation> findAfter(long afterId) {
+        return repository.findTop1000ByIdGreaterThanOrderByIdAsc(afterId);
+    }
+
+    // Ids are drawn at insert but committed in any order, so the last sync-overlap ids are read
+    // again: a revocation committed after a higher id was seen reaches the filter on the next sync
+    // instead of at the rebuild. Putting a jti twice is harmless
+    @Scheduled(fixedDelayString = "${jwt.revocation.sync-interval:PT5S}")
+    public synchronized void sync() {
+        try {
+            lastSeenId = Math.max(lastSeenId, load(filter, Math.max(0, lastSeenId - syncOverlap)));
+        } catch (RuntimeException e) {
+            log.warn("Failed to sync token revocations: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${jwt.revocation.rebuild-interval:PT1H}",
+            fixedDelayString = "${jwt.revocation.rebuild-interval:PT1H}"
+    )
+    public synchronized void rebuild() {
+        try {
+            int removed = repository.deleteExpired(Instant.now());
+            long live = repository.count();
+            RevocationBloomFilter rebuilt = new RevocationBloomFilter(
+                    (int) Math.max(expectedInsertions, live * 2), falsePositiveRate);
+            lastSeenId = load(rebuilt, 0);
+            filter = rebuilt;
+            log.info("Rebuilt token revocation filter: {} live entries, {} expired removed", live, removed);
+        } catch (RuntimeException e) {
+            log.warn("Failed to rebuild token revocation filter: {}", e.getMessage());
+        }
+    }
+
+    private long load(RevocationBloomFilter target, long afterId) {
+        List<TokenRevocation> page = repository.findTop1000ByIdGreaterThanOrderByIdAsc(afterId);
+        while (!page.isEmpty()) {
+            for (TokenRevocation revocation : page) {
+                target.put(revocation.getJti());
+            }
+            afterId = page.get(page.size() - 1).getId();
+            page = repository.findTop1000ByIdGreaterThanOrderByIdAsc(afterId);
+        }
+        return afterId;
+    }
+}
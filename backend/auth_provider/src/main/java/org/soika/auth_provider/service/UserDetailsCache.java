@@ -0,0 +1,33 @@
+package org.soika.auth_provider.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.soika.auth_provider.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+@Component
+public class UserDetailsCache {
+    private final Cache<String, User> cache;
+
+    public UserDetailsCache(
+            @Value("${jwt.filter.user-cache.maximum-size:10000}") long maximumSize,
+            @Value("${jwt.filter.user-cache.ttl:10m}") Duration ttl
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public User get(String email, Function<String, User> loader) {
+        return cache.get(email, loader);
+    }
+
+    public void invalidate(String email) {
+        cache.invalidate(email);
+    }
+}
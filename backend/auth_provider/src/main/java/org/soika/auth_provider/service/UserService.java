@@ -4,6 +4,8 @@ import lombok.RequiredArgsConstructor;
 import org.soika.auth_provider.model.User;
 import org.soika.auth_provider.model.UserRole;
 import org.soika.auth_provider.repository.UserRepository;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -12,10 +14,11 @@ import org.springframework.stereotype.Service;
 
 @Service
 @RequiredArgsConstructor
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
     
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserDetailsCache userDetailsCache;
     
     @Override
     public User loadUserByUsername(String username) throws UsernameNotFoundException {
@@ -23,6 +26,16 @@ public class UserService implements UserDetailsService {
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + username));
     }
     
+    // Called by the authentication provider when the stored hash was made with a lower BCrypt strength
+    @Override
+    public User updatePassword(UserDetails userDetails, String newPassword) {
+        var user = loadUserByUsername(userDetails.getUsername());
+        user.setPassword(newPassword);
+        var saved = userRepository.save(user);
+        userDetailsCache.invalidate(saved.getUsername());
+        return saved;
+    }
+    
     public User createUser(String email, String password, String username) {
         if (userRepository.existsByEmail(email)) {
             throw new IllegalArgumentException("Email already exists");
@@ -46,12 +59,16 @@ public class UserService implements UserDetailsService {
     public User updateUser(Long id, String username) {
         var user = getUser(id);
         user.setUsername(username);
-        return userRepository.save(user);
+        var saved = userRepository.save(user);
+        userDetailsCache.invalidate(saved.getUsername());
+        return saved;
     }
     
     public User addRole(Long userId, UserRole role) {
         var user = getUser(userId);
         user.setRole(role);
-        return userRepository.save(user);
+        var saved = userRepository.save(user);
+        userDetailsCache.invalidate(saved.getUsername());
+        return saved;
     }
 } 
\ No newline at end of file
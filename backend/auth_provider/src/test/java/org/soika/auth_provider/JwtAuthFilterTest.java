@@ -0,0 +1,77 @@
+package org.soika.auth_provider;
+
+import io.jsonwebtoken.Jwts;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.soika.auth_provider.config.JwtAuthFilter;
+import org.soika.auth_provider.model.User;
+import org.soika.auth_provider.model.UserRole;
+import org.soika.auth_provider.service.JwtService;
+import org.soika.auth_provider.service.UserDetailsCache;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class JwtAuthFilterTest {
+
+    private final JwtService jwtService = mock(JwtService.class);
+    private final UserDetailsService userDetailsService = mock(UserDetailsService.class);
+    private final JwtAuthFilter filter = new JwtAuthFilter(jwtService, userDetailsService,
+            new UserDetailsCache(100, Duration.ofMinutes(10)), false, List.of("/api/admin/**"));
+
+    @BeforeEach
+    void setUp() {
+        // the token still claims ADMIN; the user has since been demoted
+        when(jwtService.extractAllClaims("token")).thenReturn(Jwts.claims()
+                .subject("user@example.com")
+                .add("authorities", List.of("ADMIN"))
+                .build());
+        when(userDetailsService.loadUserByUsername("user@example.com"))
+                .thenReturn(new User("user@example.com", "hash", "user", UserRole.USER));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_ShouldUseCurrentRoleOnRoleProtectedPath() throws Exception {
+        Authentication authentication = filter("/api/admin/users");
+
+        assertEquals(List.of("USER"), authorities(authentication));
+        verify(userDetailsService).loadUserByUsername("user@example.com");
+    }
+
+    @Test
+    void doFilter_ShouldUseClaimsElsewhere() throws Exception {
+        Authentication authentication = filter("/api/users/me");
+
+        assertEquals(List.of("ADMIN"), authorities(authentication));
+        verify(userDetailsService, never()).loadUserByUsername(any());
+    }
+
+    private Authentication filter(String path) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setServletPath(path);
+        request.addHeader("Authorization", "Bearer token");
+        filter.doFilter(request, new MockHttpServletResponse(), mock(FilterChain.class));
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private static List<String> authorities(Authentication authentication) {
+        return authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+    }
+}
@@ -0,0 +1,147 @@
+package org.soika.auth_provider;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.soika.auth_provider.model.JwtSigningKey;
+import org.soika.auth_provider.repository.JwtSigningKeyRepository;
+import org.soika.auth_provider.service.JwtKeyStore;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class JwtKeyStoreTest {
+
+    private static final String ENCRYPTION_KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    private final Map<String, JwtSigningKey> rows = new LinkedHashMap<>();
+    private final JwtSigningKeyRepository repository = inMemoryRepository(rows);
+
+    @Test
+    void constructor_ShouldSignWithTheStoredKeyAfterRestart() {
+        JwtKeyStore first = keyStore("", "", Duration.ofDays(7));
+        JwtKeyStore restarted = keyStore("", "", Duration.ofDays(7));
+
+        assertEquals(first.current().kid(), restarted.current().kid());
+        assertEquals(first.current().privateKey(), restarted.current().privateKey());
+        assertEquals(first.all().stream().map(JwtKeyStore.SigningKey::kid).toList(),
+                restarted.all().stream().map(JwtKeyStore.SigningKey::kid).toList());
+    }
+
+    @Test
+    void constructor_ShouldSignWithTheConfiguredKey() throws Exception {
+        KeyPair keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        Base64.Encoder encoder = Base64.getEncoder();
+
+        JwtKeyStore keyStore = keyStore(encoder.encodeToString(keyPair.getPrivate().getEncoded()),
+                encoder.encodeToString(keyPair.getPublic().getEncoded()), Duration.ofDays(7));
+
+        assertEquals(keyPair.getPublic(), keyStore.current().publicKey());
+        assertTrue(rows.containsKey(keyStore.current().kid()));
+    }
+
+    @Test
+    void rotate_ShouldPromoteThePublishedPendingKey() {
+        JwtKeyStore keyStore = keyStore("", "", Duration.ZERO);
+        String current = keyStore.current().kid();
+        String pending = keyStore.all().get(keyStore.all().size() - 1).kid();
+        assertNotEquals(current, pending);
+
+        keyStore.rotate();
+
+        assertEquals(pending, keyStore.current().kid());
+        assertNotNull(keyStore.find(current));
+        assertTrue(rows.get(pending).isActive());
+    }
+
+    @Test
+    void rotate_ShouldPickUpRotationOfAnotherInstance() {
+        JwtKeyStore keyStore = keyStore("", "", Duration.ofDays(7));
+        JwtKeyStore other = keyStore("", "", Duration.ZERO);
+
+        other.rotate();
+        keyStore.rotate();
+
+        assertEquals(other.current().kid(), keyStore.current().kid());
+    }
+
+    @Test
+    void rotate_ShouldDropKeysBeyondRetained() {
+        JwtKeyStore keyStore = keyStore("", "", Duration.ZERO);
+        String first = keyStore.current().kid();
+
+        keyStore.rotate();
+        keyStore.rotate();
+
+        assertNull(keyStore.find(first));
+        assertFalse(rows.containsKey(first));
+        assertEquals(3, keyStore.all().size());
+    }
+
+    @Test
+    void constructor_ShouldLockBeforeReadingKeys() {
+        keyStore("", "", Duration.ofDays(7));
+
+        InOrder inOrder = inOrder(repository);
+        inOrder.verify(repository).lockKeys();
+        inOrder.verify(repository).findAllForUpdate();
+    }
+
+    @Test
+    void constructor_ShouldStorePrivateKeysEncrypted() {
+        JwtKeyStore first = keyStore("", "", ENCRYPTION_KEY, Duration.ofDays(7));
+        JwtKeyStore restarted = keyStore("", "", ENCRYPTION_KEY, Duration.ofDays(7));
+
+        assertTrue(rows.values().stream().allMatch(key -> key.getPrivateKey().startsWith("aes-gcm:")));
+        assertEquals(first.current().privateKey(), restarted.current().privateKey());
+        assertThrows(IllegalStateException.class, () -> keyStore("", "", Duration.ofDays(7)));
+    }
+
+    @Test
+    void constructor_ShouldEncryptPlainStoredKeys() {
+        JwtKeyStore plain = keyStore("", "", Duration.ofDays(7));
+
+        JwtKeyStore encrypted = keyStore("", "", ENCRYPTION_KEY, Duration.ofDays(7));
+
+        assertTrue(rows.values().stream().allMatch(key -> key.getPrivateKey().startsWith("aes-gcm:")));
+        assertEquals(plain.current().privateKey(), encrypted.current().privateKey());
+    }
+
+    private JwtKeyStore keyStore(String privateKey, String publicKey, Duration rotationInterval) {
+        return keyStore(privateKey, publicKey, "", rotationInterval);
+    }
+
+    private JwtKeyStore keyStore(String privateKey, String publicKey, String encryptionKey, Duration rotationInterval) {
+        return new JwtKeyStore(repository, TransactionOperations.withoutTransaction(),
+                privateKey, publicKey, encryptionKey, 2, rotationInterval);
+    }
+
+    /**
+     * A repository over {@code rows}; entities handed out stay the stored ones, as in a session.
+     */
+    @SuppressWarnings("unchecked")
+    static JwtSigningKeyRepository inMemoryRepository(Map<String, JwtSigningKey> rows) {
+        JwtSigningKeyRepository repository = mock(JwtSigningKeyRepository.class);
+        when(repository.findAllForUpdate()).thenAnswer(invocation -> new ArrayList<>(rows.values()));
+        when(repository.save(any())).thenAnswer(invocation -> {
+            JwtSigningKey key = invocation.getArgument(0);
+            rows.put(key.getKid(), key);
+            return key;
+        });
+        doAnswer(invocation -> {
+            ((Collection<JwtSigningKey>) invocation.getArgument(0)).forEach(key -> rows.remove(key.getKid()));
+            return null;
+        }).when(repository).deleteAll(any());
+        return repository;
+    }
+}
@@ -0,0 +1,117 @@
+package org.soika.auth_provider;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.soika.auth_provider.dto.JwkResponse;
+import org.soika.auth_provider.dto.JwkSetResponse;
+import org.soika.auth_provider.dto.ValidateTokenRequest;
+import org.soika.auth_provider.dto.ValidateTokenResponse;
+import org.soika.auth_provider.model.User;
+import org.soika.auth_provider.model.UserRole;
+import org.soika.auth_provider.service.JwtKeyStore;
+import org.soika.auth_provider.service.JwtService;
+import org.soika.auth_provider.service.TokenRevocationService;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JwtServiceTest {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    private JwtKeyStore keyStore;
+    private TokenRevocationService revocationService;
+    private JwtService jwtService;
+
+    @BeforeEach
+    void setUp() {
+        keyStore = new JwtKeyStore(JwtKeyStoreTest.inMemoryRepository(new HashMap<>()),
+                TransactionOperations.withoutTransaction(), "", "", "", 2, Duration.ZERO);
+        revocationService = mock(TokenRevocationService.class);
+        jwtService = new JwtService(keyStore, revocationService, SECRET, 60_000L);
+    }
+
+    @Test
+    void generateToken_ShouldBeVerifiableWithPublishedKey() {
+        String token = jwtService.generateToken(user());
+
+        ValidateTokenResponse response = jwtService.validateToken(request(token));
+
+        assertTrue(response.isValid());
+        assertEquals("user@example.com", response.getUsername());
+
+        // the current key and the pending one that the next rotation promotes
+        JwkSetResponse jwkSet = jwtService.getJwkSet();
+        assertEquals(2, jwkSet.getKeys().size());
+        JwkResponse jwk = jwkSet.getKeys().get(0);
+        assertEquals(keyStore.current().kid(), jwk.getKid());
+        assertEquals("RS256", jwk.getAlg());
+    }
+
+    @Test
+    void validateToken_AfterRotation_ShouldAcceptRetainedKeyOnly() {
+        String beforeRotation = jwtService.generateToken(user());
+
+        keyStore.rotate();
+        assertTrue(jwtService.validateToken(request(beforeRotation)).isValid());
+        assertEquals(3, jwtService.getJwkSet().getKeys().size());
+
+        keyStore.rotate();
+        assertFalse(jwtService.validateToken(request(beforeRotation)).isValid());
+    }
+
+    @Test
+    void validateToken_LegacyHmacToken_ShouldStillBeAccepted() {
+        String legacy = Jwts.builder()
+                .subject("user@example.com")
+                .claim("id", 1L)
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()), Jwts.SIG.HS512)
+                .compact();
+
+        assertTrue(jwtService.validateToken(request(legacy)).isValid());
+    }
+
+    @Test
+    void validateToken_WhenJtiRevoked_ShouldBeRejected() {
+        String token = jwtService.generateToken(user());
+        String jti = jwtService.extractAllClaims(token).getId();
+        assertNotNull(jti);
+
+        when(revocationService.isRevoked(jti)).thenReturn(true);
+
+        ValidateTokenResponse response = jwtService.validateToken(request(token));
+        assertFalse(response.isValid());
+        assertEquals("Token revoked", response.getError());
+    }
+
+    @Test
+    void revokeToken_ShouldRecordJtiUntilExpiry() {
+        String token = jwtService.generateToken(user());
+        var claims = jwtService.extractAllClaims(token);
+
+        jwtService.revokeToken(token);
+
+        verify(revocationService).revoke(claims.getId(), claims.getExpiration().toInstant());
+    }
+
+    private static User user() {
+        User user = new User("user@example.com", "encodedPass", "username", UserRole.USER);
+        ReflectionTestUtils.setField(user, "id", 1L);
+        return user;
+    }
+
+    private static ValidateTokenRequest request(String token) {
+        ValidateTokenRequest request = new ValidateTokenRequest();
+        request.setToken(token);
+        return request;
+    }
+}
@@ -0,0 +1,56 @@
+package org.soika.auth_provider;
+
+import org.junit.jupiter.api.Test;
+import org.soika.auth_provider.service.LoginThrottle;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginThrottleTest {
+
+    @Test
+    void allowLogin_WhenEmailLimitReachedFromIp_ShouldRejectOnlyThatIp() {
+        LoginThrottle throttle = new LoginThrottle(Duration.ofMinutes(1), 100, 3, 1000);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(throttle.allowLogin("10.0.0.1", "User@Example.com"));
+            throttle.recordFailure("10.0.0.1", "User@Example.com");
+        }
+
+        assertFalse(throttle.allowLogin("10.0.0.1", "user@example.com"));
+        assertTrue(throttle.allowLogin("10.0.0.2", "user@example.com"));
+        assertTrue(throttle.allowLogin("10.0.0.1", "other@example.com"));
+    }
+
+    @Test
+    void allowLogin_WhenIpLimitReached_ShouldReject() {
+        LoginThrottle throttle = new LoginThrottle(Duration.ofMinutes(1), 2, 100, 1000);
+
+        throttle.recordFailure("10.0.0.1", "a@example.com");
+        throttle.recordFailure("10.0.0.1", "b@example.com");
+
+        assertFalse(throttle.allowLogin("10.0.0.1", "c@example.com"));
+        assertTrue(throttle.allowLogin("10.0.0.2", "c@example.com"));
+    }
+
+    @Test
+    void allowLogin_ShouldNotCountAttemptsWithoutFailure() {
+        LoginThrottle throttle = new LoginThrottle(Duration.ofMinutes(1), 2, 2, 1000);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(throttle.allowLogin("10.0.0.1", "user@example.com"));
+        }
+    }
+
+    @Test
+    void tryAcquireRegistration_ShouldChargeEveryAttemptToIp() {
+        LoginThrottle throttle = new LoginThrottle(Duration.ofMinutes(1), 2, 100, 1000);
+
+        assertTrue(throttle.tryAcquireRegistration("10.0.0.1"));
+        assertTrue(throttle.tryAcquireRegistration("10.0.0.1"));
+
+        assertFalse(throttle.tryAcquireRegistration("10.0.0.1"));
+        assertFalse(throttle.allowLogin("10.0.0.1", "user@example.com"));
+    }
+}
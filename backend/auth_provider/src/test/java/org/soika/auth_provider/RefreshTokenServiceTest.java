@@ -0,0 +1,70 @@
+package org.soika.auth_provider;
+
+import org.junit.jupiter.api.Test;
+import org.soika.auth_provider.model.RefreshToken;
+import org.soika.auth_provider.model.User;
+import org.soika.auth_provider.model.UserRole;
+import org.soika.auth_provider.repository.RefreshTokenRepository;
+import org.soika.auth_provider.repository.UserRepository;
+import org.soika.auth_provider.service.RefreshTokenService;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class RefreshTokenServiceTest {
+
+    private final RefreshTokenRepository refreshTokenRepository = mock(RefreshTokenRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final RefreshTokenService service =
+            new RefreshTokenService(refreshTokenRepository, userRepository, Duration.ofDays(30));
+
+    private final User user = new User("user@example.com", "hash", "user", UserRole.USER);
+
+    @Test
+    void rotate_ShouldIssueSuccessorWhenClaimSucceeds() {
+        stored(false);
+        when(refreshTokenRepository.claim(anyString())).thenReturn(1);
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+
+        RefreshTokenService.Rotation rotation = service.rotate("token");
+
+        assertSame(user, rotation.user());
+        assertNotEquals("token", rotation.refreshToken());
+        verify(refreshTokenRepository).save(any(RefreshToken.class));
+        verify(refreshTokenRepository, never()).revokeAllByUserId(any());
+    }
+
+    @Test
+    void rotate_ShouldTreatLostClaimAsReuse() {
+        stored(false);
+        when(refreshTokenRepository.claim(anyString())).thenReturn(0);
+
+        assertThrows(BadCredentialsException.class, () -> service.rotate("token"));
+
+        verify(refreshTokenRepository).revokeAllByUserId(user.getId());
+        verify(refreshTokenRepository, never()).save(any(RefreshToken.class));
+    }
+
+    @Test
+    void rotate_ShouldRevokeEverySessionOnReuse() {
+        stored(true);
+
+        assertThrows(BadCredentialsException.class, () -> service.rotate("token"));
+
+        verify(refreshTokenRepository, never()).claim(anyString());
+        verify(refreshTokenRepository).revokeAllByUserId(user.getId());
+    }
+
+    private void stored(boolean revoked) {
+        RefreshToken token = new RefreshToken("hash", user.getId(), Instant.now().plusSeconds(60));
+        token.setRevoked(revoked);
+        when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.of(token));
+    }
+}
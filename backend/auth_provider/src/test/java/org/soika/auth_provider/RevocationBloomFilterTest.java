@@ -0,0 +1,33 @@
+package org.soika.auth_provider;
+
+import org.junit.jupiter.api.Test;
+import org.soika.auth_provider.service.RevocationBloomFilter;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RevocationBloomFilterTest {
+
+    @Test
+    void mightContain_ShouldHaveNoFalseNegativesAndBoundedFalsePositives() {
+        RevocationBloomFilter filter = new RevocationBloomFilter(10_000, 0.01);
+        String[] revoked = new String[10_000];
+        for (int i = 0; i < revoked.length; i++) {
+            revoked[i] = UUID.randomUUID().toString();
+            filter.put(revoked[i]);
+        }
+
+        for (String jti : revoked) {
+            assertTrue(filter.mightContain(jti));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+}
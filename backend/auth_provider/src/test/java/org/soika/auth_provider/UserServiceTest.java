@@ -8,6 +8,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.soika.auth_provider.model.User;
 import org.soika.auth_provider.model.UserRole;
 import org.soika.auth_provider.repository.UserRepository;
+import org.soika.auth_provider.service.UserDetailsCache;
 import org.soika.auth_provider.service.UserService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
@@ -27,6 +28,9 @@ class UserServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
     @InjectMocks
     private UserService userService;
 
@@ -87,4 +91,42 @@ class UserServiceTest {
         verify(userRepository).findByEmail(email);
     }
 
-}
\ No newline at end of file
+    @Test
+    void updateUser_ShouldInvalidateCachedUserDetails() {
+        User user = new User("user@example.com", "encodedPass", "username", UserRole.USER);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.save(user)).thenReturn(user);
+
+        userService.updateUser(1L, "renamed");
+
+        assertEquals("renamed", user.getDisplayUsername());
+        verify(userDetailsCache).invalidate("user@example.com");
+    }
+
+    @Test
+    void addRole_ShouldInvalidateCachedUserDetails() {
+        User user = new User("user@example.com", "encodedPass", "username", UserRole.USER);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.save(user)).thenReturn(user);
+
+        userService.addRole(1L, UserRole.MODERATOR);
+
+        verify(userDetailsCache).invalidate("user@example.com");
+    }
+
+    @Test
+    void updatePassword_ShouldStoreRehashedPasswordAndInvalidateCache() {
+        User user = new User("user@example.com", "oldHash", "username", UserRole.USER);
+
+        when(userRepository.findByEmail("user@example.com")).thenReturn(Optional.of(user));
+        when(userRepository.save(user)).thenReturn(user);
+
+        User result = userService.updatePassword(user, "newHash");
+
+        assertEquals("newHash", result.getPassword());
+        verify(userDetailsCache).invalidate("user@example.com");
+    }
+
+}
@@ -0,0 +1,113 @@
+package org.soika.benchmarks;
+
+import com.soika.chat.config.ws_security.ChannelExecutors;
+import org.apache.commons.logging.LogFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Clients inbound channel under load: every JMH thread is one STOMP session sending a burst
+ * of frames in order, each handled with a simulated blocking call such as a JPA insert.
+ * Throughput gives messages per second; sample time gives the p99 of a burst.
+ * The virtual mode needs the benchmark JVM to be Java 21 or newer.
+ */
+@State(Scope.Benchmark)
+@Threads(64)
+public class ChannelExecutorBenchmark {
+
+    private static final int BURST = 10;
+
+    @Param({ChannelExecutors.PLATFORM, ChannelExecutors.VIRTUAL})
+    public String mode;
+
+    @Param({"0", "500"})
+    public int blockingMicros;
+
+    private TaskExecutor executor;
+    private ExecutorSubscribableChannel channel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = ChannelExecutors.VIRTUAL.equals(mode)
+                ? ChannelExecutors.virtual("inbound-", 1000)
+                : ChannelExecutors.platform("inbound-", 4 * Runtime.getRuntime().availableProcessors(), 10_000);
+        ChannelExecutors.initialize(executor);
+        channel = new ExecutorSubscribableChannel(executor);
+        OrderedMessageChannelDecorator.configureInterceptor(channel, true);
+        channel.subscribe(message -> {
+            if (blockingMicros > 0) {
+                LockSupport.parkNanos(blockingMicros * 1000L);
+            }
+            ((CompletableFuture<?>) message.getPayload()).complete(null);
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ChannelExecutors.shutdown(executor);
+    }
+
+    @State(Scope.Thread)
+    public static class Session {
+        OrderedMessageChannelDecorator decorator;
+        String sessionId;
+
+        @Setup(Level.Trial)
+        public void setUp(ChannelExecutorBenchmark benchmark) {
+            decorator = new OrderedMessageChannelDecorator(benchmark.channel, LogFactory.getLog(Session.class));
+            sessionId = UUID.randomUUID().toString();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BURST)
+    public void throughput(Session session) {
+        sendBurst(session);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void burstLatency(Session session) {
+        sendBurst(session);
+    }
+
+    private void sendBurst(Session session) {
+        CompletableFuture<Void> last = null;
+        for (int i = 0; i < BURST; i++) {
+            last = new CompletableFuture<>();
+            session.decorator.send(message(session.sessionId, last));
+        }
+        last.join();
+    }
+
+    private static Message<CompletableFuture<Void>> message(String sessionId, CompletableFuture<Void> done) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(done, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,214 @@
+package org.soika.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.soika.chat.config.ws_security.FanoutFrameEncoder;
+import com.soika.chat.config.ws_security.PayloadEncodings;
+import com.soika.chat.model.dto.ChatMessageDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One broadcast to a chat with 1000 subscribers, from the messages the simple broker creates
+ * (one per subscription, all sharing the payload) to the bytes the container writes.
+ * {@code per-session} is Spring's STOMP handler with a CBOR transcode per subscriber, as before
+ * {@link FanoutFrameEncoder}; {@code shared} encodes the body once. Run with the gc profiler
+ * for allocation per broadcast.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FanoutEncodingBenchmark {
+
+    private static final int SUBSCRIBERS = 1000;
+
+    @Param({"per-session", "shared"})
+    public String mode;
+
+    @Param({"json", "cbor"})
+    public String encoding;
+
+    private final StompSubProtocolHandler stompHandler = new StompSubProtocolHandler();
+    private final FanoutFrameEncoder fanoutEncoder = new FanoutFrameEncoder(null);
+    private SinkSession[] sessions;
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ChatMessageDto dto = new ChatMessageDto();
+        dto.setId(100_500L);
+        dto.setChatId(42L);
+        dto.setSender("Алексей Петров");
+        dto.setEmail("alexey.petrov@soika.org");
+        dto.setContent("Коллеги, релиз переносим на завтра: ревью ещё не закончено, ссылку на отчёт пришлю сюда");
+        dto.setTimestamp(LocalDateTime.of(2024, 6, 1, 12, 0));
+        json = new ObjectMapper().findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .writeValueAsBytes(dto);
+        sessions = new SinkSession[SUBSCRIBERS];
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            sessions[i] = new SinkSession("session-" + i);
+        }
+    }
+
+    @Benchmark
+    public void broadcast(Blackhole blackhole) throws Exception {
+        boolean cbor = "cbor".equals(encoding);
+        boolean shared = "shared".equals(mode);
+        // A new array per broadcast, as the broker converts each message once
+        byte[] payload = json.clone();
+        byte[] sharedCbor = cbor && shared ? PayloadEncodings.jsonToCbor(payload) : null;
+        for (SinkSession session : sessions) {
+            session.blackhole = blackhole;
+            session.cborText = cbor && !shared;
+            if (shared) {
+                Message<byte[]> message = message(session.getId(), cbor ? sharedCbor : payload, cbor);
+                session.sendMessage(fanoutEncoder.encode(message));
+            } else {
+                Message<byte[]> message = message(session.getId(), cbor ? PayloadEncodings.jsonToCbor(payload) : payload, cbor);
+                stompHandler.handleMessageToClient(session, message);
+            }
+        }
+    }
+
+    private static Message<byte[]> message(String sessionId, byte[] payload, boolean cbor) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination("/topic/chat/42");
+        accessor.setContentType(cbor ? PayloadEncodings.CBOR : MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    /**
+     * Does what the container does with a frame: text frames are encoded to UTF-8, except the
+     * CBOR text frames from Spring's handler, which {@code SlowConsumerSession} sends as binary.
+     */
+    private static class SinkSession implements WebSocketSession {
+
+        private final String id;
+        private Blackhole blackhole;
+        private boolean cborText;
+
+        SinkSession(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            if (message instanceof BinaryMessage binary) {
+                blackhole.consume(binary.getPayload());
+            } else if (cborText) {
+                blackhole.consume(((TextMessage) message).asBytes());
+            } else {
+                blackhole.consume(((String) message.getPayload()).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public URI getUri() {
+            return null;
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return HttpHeaders.EMPTY;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return Map.of();
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return "v12.stomp";
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.soika.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.soika.auth_provider.dto.ValidateTokenRequest;
+import org.soika.auth_provider.dto.ValidateTokenResponse;
+import org.soika.auth_provider.model.JwtSigningKey;
+import org.soika.auth_provider.model.User;
+import org.soika.auth_provider.model.UserRole;
+import org.soika.auth_provider.repository.JwtSigningKeyRepository;
+import org.soika.auth_provider.service.JwtKeyStore;
+import org.soika.auth_provider.service.JwtService;
+import org.soika.auth_provider.service.TokenRevocationService;
+
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JwtServiceBenchmark {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    private JwtService jwtService;
+    private User user;
+    private ValidateTokenRequest validRequest;
+    private ValidateTokenRequest tamperedRequest;
+
+    @Setup
+    public void setUp() {
+        // An empty revocation filter answers without touching the repository, as on the hot path in production
+        TokenRevocationService revocationService = new TokenRevocationService(null, 100_000, 0.01, 100);
+        JwtKeyStore keyStore = new JwtKeyStore(inMemoryKeys(), TransactionOperations.withoutTransaction(),
+                "", "", "", 2, Duration.ofDays(7));
+        jwtService = new JwtService(keyStore, revocationService, SECRET, 3_600_000L);
+        user = new User("bench@example.com", "encoded", "bench", UserRole.USER);
+
+        String token = jwtService.generateToken(user);
+        validRequest = request(token);
+        tamperedRequest = request(token.substring(0, token.length() - 4) + "AAAA");
+    }
+
+    @Benchmark
+    public String generate() {
+        return jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public ValidateTokenResponse validate() {
+        return jwtService.validateToken(validRequest);
+    }
+
+    @Benchmark
+    public ValidateTokenResponse validateTampered() {
+        return jwtService.validateToken(tamperedRequest);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ValidateTokenResponse validateContended() {
+        return jwtService.validateToken(validRequest);
+    }
+
+    private static ValidateTokenRequest request(String token) {
+        ValidateTokenRequest request = new ValidateTokenRequest();
+        request.setToken(token);
+        return request;
+    }
+
+    // The key store only lists, saves and deletes keys; a map stands in for jwt_signing_keys
+    @SuppressWarnings("unchecked")
+    private static JwtSigningKeyRepository inMemoryKeys() {
+        Map<String, JwtSigningKey> rows = new LinkedHashMap<>();
+        return (JwtSigningKeyRepository) Proxy.newProxyInstance(
+                JwtSigningKeyRepository.class.getClassLoader(),
+                new Class<?>[]{JwtSigningKeyRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "lockKeys" -> 1;
+                    case "findAllForUpdate" -> new ArrayList<>(rows.values());
+                    case "save" -> {
+                        JwtSigningKey key = (JwtSigningKey) args[0];
+                        rows.put(key.getKid(), key);
+                        yield key;
+                    }
+                    case "deleteAll" -> {
+                        ((Iterable<JwtSigningKey>) args[0]).forEach(key -> rows.remove(key.getKid()));
+                        yield null;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
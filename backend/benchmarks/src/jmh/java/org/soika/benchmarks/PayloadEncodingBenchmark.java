@@ -0,0 +1,146 @@
+package org.soika.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.soika.chat.config.ws_security.PayloadEncodings;
+import com.soika.chat.model.dto.ChatMessageDto;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.sockjs.frame.Jackson2SockJsMessageCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * One outbound {@code ChatMessageDto} from the JSON the broker already holds to the bytes
+ * written to the socket: STOMP framing, the CBOR transcode for native clients, SockJS
+ * framing for the fallback, and permessage-deflate with context takeover. Average time is
+ * the CPU cost per message; bytes on wire per message are reported next to it as
+ * {@code bytesPerMessage}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PayloadEncodingBenchmark {
+
+    private static final int MESSAGES = 64;
+    private static final String[] SENDERS = {"Алексей Петров", "Мария Соколова", "Иван Кузнецов", "Ольга Смирнова"};
+    private static final String[] WORDS = ("созвон релиз ревью задача тест ссылка отчёт баг сервер база клиент "
+            + "завтра сегодня вечером утром готово проверю посмотрю исправил deploy merge rollback staging").split(" ");
+
+    @Param({"sockjs-json", "native-json", "native-cbor"})
+    public String encoding;
+
+    @Param({"false", "true"})
+    public boolean deflate;
+
+    private final StompEncoder stompEncoder = new StompEncoder();
+    private final Jackson2SockJsMessageCodec sockJsCodec = new Jackson2SockJsMessageCodec();
+    private final byte[] deflated = new byte[64 * 1024];
+    private byte[][] payloads;
+    private Deflater deflater;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        payloads = new byte[MESSAGES][];
+        Random random = new Random(42);
+        for (int i = 0; i < MESSAGES; i++) {
+            ChatMessageDto dto = new ChatMessageDto();
+            dto.setId(100_000L + i);
+            dto.setChatId(42L);
+            dto.setSender(SENDERS[i % SENDERS.length]);
+            dto.setEmail("user" + (i % SENDERS.length) + "@soika.org");
+            dto.setContent(content(random));
+            dto.setTimestamp(LocalDateTime.of(2024, 6, 1, 12, 0).plusSeconds(random.nextInt(86_400)));
+            payloads[i] = mapper.writeValueAsBytes(dto);
+        }
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deflater.end();
+    }
+
+    @Benchmark
+    public int encode(Wire wire) {
+        int bytes = encodeNext();
+        wire.bytes += bytes;
+        wire.messages++;
+        return bytes;
+    }
+
+    private int encodeNext() {
+        byte[] json = payloads[next++ & (MESSAGES - 1)];
+        byte[] frame = switch (encoding) {
+            case "native-cbor" -> stompEncoder.encode(message(PayloadEncodings.jsonToCbor(json), true));
+            case "native-json" -> stompEncoder.encode(message(json, false));
+            default -> sockJsCodec.encode(new String(stompEncoder.encode(message(json, false)), StandardCharsets.UTF_8))
+                    .getBytes(StandardCharsets.UTF_8);
+        };
+        if (!deflate) {
+            return frame.length;
+        }
+        deflater.setInput(frame);
+        // Permessage-deflate drops the trailing 00 00 ff ff of each sync flush
+        return deflater.deflate(deflated, 0, deflated.length, Deflater.SYNC_FLUSH) - 4;
+    }
+
+    private static String content(Random random) {
+        StringBuilder content = new StringBuilder();
+        for (int words = 3 + random.nextInt(20); words > 0; words--) {
+            content.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return content.append(random.nextInt(10_000)).toString();
+    }
+
+    private static Message<byte[]> message(byte[] payload, boolean cbor) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        accessor.setDestination("/topic/chat/42");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setMessageId("5f2c1d3e-0");
+        accessor.setContentType(cbor ? PayloadEncodings.CBOR : MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    /**
+     * Bytes written to the socket, counted per iteration and reported by JMH as a secondary result.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Wire {
+        private long bytes;
+        private long messages;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            messages = 0;
+        }
+
+        public double bytesPerMessage() {
+            return messages == 0 ? 0 : (double) bytes / messages;
+        }
+    }
+}
@@ -3,28 +3,94 @@ package com.soika.chat.client;
 import com.soika.chat.dto.ValidateTokenRequest;
 
 import com.soika.chat.dto.ValidateTokenResponse;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 @Component
 public class AuthClient {
     private final RestTemplate restTemplate;
     private final String authServiceUrl;
+    private final LocalTokenVerifier localTokenVerifier;
+    private final TokenValidationCache tokenValidationCache;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
 
-    public AuthClient(RestTemplate restTemplate, @Value("${auth.service.url}") String authServiceUrl) {
+    public AuthClient(
+            RestTemplate restTemplate,
+            @Value("${auth.service.url}") String authServiceUrl,
+            LocalTokenVerifier localTokenVerifier,
+            TokenValidationCache tokenValidationCache,
+            CircuitBreaker authCircuitBreaker,
+            Bulkhead authBulkhead
+    ) {
         this.restTemplate = restTemplate;
         this.authServiceUrl = authServiceUrl;
+        this.localTokenVerifier = localTokenVerifier;
+        this.tokenValidationCache = tokenValidationCache;
+        this.circuitBreaker = authCircuitBreaker;
+        this.bulkhead = authBulkhead;
     }
 
     public ValidateTokenResponse validateToken(String token) {
+        if (token == null || token.isBlank()) {
+            ValidateTokenResponse response = new ValidateTokenResponse();
+            response.setValid(false);
+            response.setError("Token is missing");
+            return response;
+        }
+
+        return tokenValidationCache.get(token, this::doValidate);
+    }
+
+    private ValidateTokenResponse doValidate(String token) {
+        ValidateTokenResponse localResponse = localTokenVerifier.verify(token);
+        if (localResponse != null) {
+            return localResponse;
+        }
+
+        return validateRemotely(token);
+    }
+
+    private ValidateTokenResponse validateRemotely(String token) {
+        try {
+            return circuitBreaker.executeSupplier(
+                    Bulkhead.decorateSupplier(bulkhead, () -> callValidate(token))
+            );
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode().value() == 429) {
+                throw new AuthServiceUnavailableException("Auth service is unavailable: " + e.getMessage(), e);
+            }
+            // The service is up and refused this request, so the token is rejected rather than unverifiable
+            ValidateTokenResponse response = new ValidateTokenResponse();
+            response.setValid(false);
+            response.setError("Rejected by auth service: " + e.getStatusCode().value());
+            return response;
+        } catch (CallNotPermittedException | BulkheadFullException | RestClientException e) {
+            throw new AuthServiceUnavailableException("Auth service is unavailable: " + e.getMessage(), e);
+        }
+    }
+
+    private ValidateTokenResponse callValidate(String token) {
         ValidateTokenRequest request = new ValidateTokenRequest();
         request.setToken(token);
         
-        return restTemplate.postForObject(
+        ValidateTokenResponse response = restTemplate.postForObject(
                 authServiceUrl + "/api/auth/validate",
                 request,
                 ValidateTokenResponse.class
         );
+        if (response == null) {
+            response = new ValidateTokenResponse();
+            response.setValid(false);
+            response.setError("Empty response from auth service");
+        }
+        return response;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,7 @@
+package com.soika.chat.client;
+
+public class AuthServiceUnavailableException extends RuntimeException {
+    public AuthServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
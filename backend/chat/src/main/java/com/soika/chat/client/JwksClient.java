@@ -0,0 +1,95 @@
+package com.soika.chat.client;
+
+import com.soika.chat.dto.Jwk;
+import com.soika.chat.dto.JwkSetResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@Slf4j
+public class JwksClient {
+    private final RestTemplate restTemplate;
+    private final String jwksUrl;
+    private final long ttlMillis;
+    private final long minRefreshIntervalMillis;
+
+    private volatile Map<String, PublicKey> keys = Map.of();
+    private volatile long fetchedAt;
+    private long lastAttemptAt;
+
+    public JwksClient(
+            RestTemplate restTemplate,
+            @Value("${auth.service.url}") String authServiceUrl,
+            @Value("${auth.jwks.path:/api/auth/jwks}") String jwksPath,
+            @Value("${auth.jwks.ttl:1h}") Duration ttl,
+            @Value("${auth.jwks.min-refresh-interval:30s}") Duration minRefreshInterval
+    ) {
+        this.restTemplate = restTemplate;
+        this.jwksUrl = authServiceUrl + jwksPath;
+        this.ttlMillis = ttl.toMillis();
+        this.minRefreshIntervalMillis = minRefreshInterval.toMillis();
+    }
+
+    public PublicKey getKey(String kid) {
+        PublicKey key = keys.get(kid);
+        if (key != null && System.currentTimeMillis() - fetchedAt < ttlMillis) {
+            return key;
+        }
+        // Unknown kid usually means auth_provider has rotated its key
+        if (refresh()) {
+            return keys.get(kid);
+        }
+        return key;
+    }
+
+    private synchronized boolean refresh() {
+        long now = System.currentTimeMillis();
+        if (now - lastAttemptAt < minRefreshIntervalMillis) {
+            return false;
+        }
+        lastAttemptAt = now;
+
+        try {
+            JwkSetResponse response = restTemplate.getForObject(jwksUrl, JwkSetResponse.class);
+            if (response == null || response.getKeys() == null) {
+                return false;
+            }
+
+            Map<String, PublicKey> loaded = new HashMap<>();
+            for (Jwk jwk : response.getKeys()) {
+                if ("RSA".equals(jwk.getKty()) && jwk.getKid() != null) {
+                    loaded.put(jwk.getKid(), toPublicKey(jwk));
+                }
+            }
+            keys = Map.copyOf(loaded);
+            fetchedAt = now;
+            log.debug("Loaded {} signing keys from {}", loaded.size(), jwksUrl);
+            return true;
+        } catch (RestClientException | GeneralSecurityException | IllegalArgumentException e) {
+            log.warn("Failed to fetch signing keys from {}: {}", jwksUrl, e.getMessage());
+            return false;
+        }
+    }
+
+    private static PublicKey toPublicKey(Jwk jwk) throws GeneralSecurityException {
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        RSAPublicKeySpec spec = new RSAPublicKeySpec(
+                new BigInteger(1, decoder.decode(jwk.getN())),
+                new BigInteger(1, decoder.decode(jwk.getE()))
+        );
+        return KeyFactory.getInstance("RSA").generatePublic(spec);
+    }
+}
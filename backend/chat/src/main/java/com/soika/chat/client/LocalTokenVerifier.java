@@ -0,0 +1,84 @@
+package com.soika.chat.client;
+
+import com.soika.chat.dto.ValidateTokenResponse;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Header;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.ProtectedHeader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.Key;
+import java.security.PublicKey;
+
+@Component
+@Slf4j
+public class LocalTokenVerifier {
+    private final JwksClient jwksClient;
+    private final TokenRevocationFilter revocationFilter;
+    private final boolean enabled;
+    private final JwtParser parser;
+
+    public LocalTokenVerifier(
+            JwksClient jwksClient,
+            TokenRevocationFilter revocationFilter,
+            @Value("${auth.jwks.enabled:true}") boolean enabled
+    ) {
+        this.jwksClient = jwksClient;
+        this.revocationFilter = revocationFilter;
+        this.enabled = enabled;
+        this.parser = Jwts.parser()
+                .keyLocator(this::locateKey)
+                .build();
+    }
+
+    /**
+     * Returns {@code null} when the token cannot be verified in-process
+     * (no kid, unknown key, keys unavailable or possibly revoked) and auth_provider has to decide.
+     */
+    public ValidateTokenResponse verify(String token) {
+        if (!enabled) {
+            return null;
+        }
+
+        ValidateTokenResponse response = new ValidateTokenResponse();
+        try {
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            if (revocationFilter.mightBeRevoked(claims.getId())) {
+                return null;
+            }
+            response.setValid(true);
+            response.setUsername(claims.getSubject());
+            response.setId(claims.get("id", Long.class));
+            response.setExpiresAt(claims.getExpiration() != null ? claims.getExpiration().getTime() : null);
+            response.setJti(claims.getId());
+        } catch (KeyUnavailableException e) {
+            return null;
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Local token verification failed: {}", e.getMessage());
+            response.setValid(false);
+            response.setError(e.getMessage());
+        }
+        return response;
+    }
+
+    private Key locateKey(Header header) {
+        if (!(header instanceof ProtectedHeader protectedHeader) || protectedHeader.getKeyId() == null) {
+            throw new KeyUnavailableException();
+        }
+        PublicKey key = jwksClient.getKey(protectedHeader.getKeyId());
+        if (key == null) {
+            throw new KeyUnavailableException();
+        }
+        return key;
+    }
+
+    private static class KeyUnavailableException extends JwtException {
+        KeyUnavailableException() {
+            super("Signing key is not available locally");
+        }
+    }
+}
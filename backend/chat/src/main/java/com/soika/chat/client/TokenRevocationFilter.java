@@ -0,0 +1,114 @@
+package com.soika.chat.client;
+
+import com.soika.chat.dto.RevocationsResponse;
+import com.soika.chat.dto.RevokedToken;
+import lombok.extern.slf4j.Slf4j;
+import org.soika.auth_provider.service.RevocationBloomFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+@Component
+@Slf4j
+public class TokenRevocationFilter {
+    private final RestTemplate restTemplate;
+    private final String revocationsUrl;
+    private final TokenValidationCache tokenValidationCache;
+    private final int expectedInsertions;
+    private final double falsePositiveRate;
+    private final long syncOverlap;
+
+    private volatile RevocationBloomFilter filter;
+    private long lastSeenId;
+    // Ids already loaded within the overlap below lastSeenId, so a re-read one is not invalidated again
+    private final NavigableSet<Long> recentIds = new TreeSet<>();
+
+    public TokenRevocationFilter(
+            RestTemplate restTemplate,
+            @Value("${auth.service.url}") String authServiceUrl,
+            @Value("${auth.revocations.path:/api/auth/revocations}") String revocationsPath,
+            TokenValidationCache tokenValidationCache,
+            @Value("${auth.revocations.expected-insertions:100000}") int expectedInsertions,
+            @Value("${auth.revocations.false-positive-rate:0.01}") double falsePositiveRate,
+            @Value("${auth.revocations.sync-overlap:100}") long syncOverlap
+    ) {
+        this.restTemplate = restTemplate;
+        this.revocationsUrl = authServiceUrl + revocationsPath;
+        this.tokenValidationCache = tokenValidationCache;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.syncOverlap = syncOverlap;
+        this.filter = new RevocationBloomFilter(expectedInsertions, falsePositiveRate);
+    }
+
+    public boolean mightBeRevoked(String jti) {
+        return jti != null && filter.mightContain(jti);
+    }
+
+    // Ids are drawn at insert but committed in any order, so the last sync-overlap ids are fetched
+    // again: a revocation committed after a higher id was seen arrives on the next sync instead of
+    // at the rebuild
+    @Scheduled(fixedDelayString = "${auth.revocations.sync-interval:PT5S}")
+    public synchronized void sync() {
+        Set<String> added = new HashSet<>();
+        try {
+            lastSeenId = Math.max(lastSeenId, load(filter, Math.max(0, lastSeenId - syncOverlap), added));
+            recentIds.headSet(lastSeenId - syncOverlap).clear();
+        } catch (RestClientException e) {
+            log.warn("Failed to sync token revocations from {}: {}", revocationsUrl, e.getMessage());
+        }
+        if (!added.isEmpty()) {
+            // Tokens validated before their revocation arrived must not be served from the cache
+            tokenValidationCache.invalidateRevoked(added);
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${auth.revocations.rebuild-interval:PT1H}",
+            fixedDelayString = "${auth.revocations.rebuild-interval:PT1H}"
+    )
+    public synchronized void rebuild() {
+        List<String> live = new ArrayList<>();
+        try {
+            long lastId = load(null, 0, live);
+            RevocationBloomFilter rebuilt = new RevocationBloomFilter(
+                    Math.max(expectedInsertions, live.size() * 2), falsePositiveRate);
+            live.forEach(rebuilt::put);
+            filter = rebuilt;
+            lastSeenId = lastId;
+            recentIds.headSet(lastSeenId - syncOverlap).clear();
+            log.debug("Rebuilt token revocation filter with {} entries", live.size());
+        } catch (RestClientException e) {
+            log.warn("Failed to rebuild token revocation filter from {}: {}", revocationsUrl, e.getMessage());
+        }
+    }
+
+    private long load(RevocationBloomFilter target, long afterId, Collection<String> loaded) {
+        while (true) {
+            RevocationsResponse response = restTemplate.getForObject(
+                    revocationsUrl + "?after={after}", RevocationsResponse.class, afterId);
+            if (response == null || response.getRevocations() == null || response.getRevocations().isEmpty()) {
+                return afterId;
+            }
+            for (RevokedToken revoked : response.getRevocations()) {
+                if (target != null) {
+                    target.put(revoked.getJti());
+                }
+                if (recentIds.add(revoked.getId()) || target == null) {
+                    loaded.add(revoked.getJti());
+                }
+                afterId = Math.max(afterId, revoked.getId());
+            }
+        }
+    }
+}
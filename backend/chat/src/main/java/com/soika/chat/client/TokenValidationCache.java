@@ -0,0 +1,96 @@
+package com.soika.chat.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.soika.chat.dto.ValidateTokenResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Set;
+import java.util.function.Function;
+
+@Component
+public class TokenValidationCache {
+    private final Cache<String, ValidateTokenResponse> cache;
+
+    @Autowired
+    public TokenValidationCache(
+            @Value("${auth.token-cache.maximum-size:10000}") long maximumSize,
+            @Value("${auth.token-cache.ttl:5m}") Duration ttl,
+            @Value("${auth.token-cache.negative-ttl:5s}") Duration negativeTtl,
+            MeterRegistry meterRegistry
+    ) {
+        this(maximumSize, ttl, negativeTtl, meterRegistry, Ticker.systemTicker());
+    }
+
+    TokenValidationCache(long maximumSize, Duration ttl, Duration negativeTtl, MeterRegistry meterRegistry, Ticker ticker) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .ticker(ticker)
+                .expireAfter(new ValidationExpiry(ttl.toNanos(), negativeTtl.toNanos()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "auth.token-validation");
+    }
+
+    public ValidateTokenResponse get(String token, Function<String, ValidateTokenResponse> loader) {
+        return cache.get(digest(token), key -> loader.apply(token));
+    }
+
+    public void invalidate(String token) {
+        cache.invalidate(digest(token));
+    }
+
+    public void invalidateRevoked(Set<String> jtis) {
+        cache.asMap().values().removeIf(response -> response.getJti() != null && jtis.contains(response.getJti()));
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record ValidationExpiry(long ttlNanos, long negativeTtlNanos) implements Expiry<String, ValidateTokenResponse> {
+
+        @Override
+        public long expireAfterCreate(String key, ValidateTokenResponse value, long currentTime) {
+            if (!value.isValid()) {
+                return negativeTtlNanos;
+            }
+            if (value.getExpiresAt() == null) {
+                return ttlNanos;
+            }
+            long untilExpiry = Duration.ofMillis(value.getExpiresAt() - System.currentTimeMillis()).toNanos();
+            return Math.max(0, Math.min(ttlNanos, untilExpiry));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, ValidateTokenResponse value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, ValidateTokenResponse value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
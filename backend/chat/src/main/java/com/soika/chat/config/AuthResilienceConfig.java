@@ -0,0 +1,76 @@
+package com.soika.chat.config;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+
+@Configuration
+public class AuthResilienceConfig {
+
+    public static final String AUTH_SERVICE = "auth-provider";
+
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry(
+            @Value("${auth.client.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+            @Value("${auth.client.circuit-breaker.slow-call-duration:1s}") Duration slowCallDuration,
+            @Value("${auth.client.circuit-breaker.sliding-window-size:20}") int slidingWindowSize,
+            @Value("${auth.client.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${auth.client.circuit-breaker.open-duration:10s}") Duration openDuration
+    ) {
+        return CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(slowCallDuration)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .waitDurationInOpenState(openDuration)
+                .permittedNumberOfCallsInHalfOpenState(3)
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                // a 4xx answers for the request, e.g. a bad token, not for the health of the service
+                .ignoreExceptions(HttpClientErrorException.class)
+                .build());
+    }
+
+    @Bean
+    public BulkheadRegistry bulkheadRegistry(
+            @Value("${auth.client.bulkhead.max-concurrent-calls:50}") int maxConcurrentCalls,
+            @Value("${auth.client.bulkhead.max-wait:0ms}") Duration maxWait
+    ) {
+        return BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(maxWait)
+                .build());
+    }
+
+    @Bean
+    public CircuitBreaker authCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry) {
+        return circuitBreakerRegistry.circuitBreaker(AUTH_SERVICE);
+    }
+
+    @Bean
+    public Bulkhead authBulkhead(BulkheadRegistry bulkheadRegistry) {
+        return bulkheadRegistry.bulkhead(AUTH_SERVICE);
+    }
+
+    @Bean
+    public MeterBinder circuitBreakerMetrics(CircuitBreakerRegistry circuitBreakerRegistry) {
+        return TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry);
+    }
+
+    @Bean
+    public MeterBinder bulkheadMetrics(BulkheadRegistry bulkheadRegistry) {
+        return TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry);
+    }
+}
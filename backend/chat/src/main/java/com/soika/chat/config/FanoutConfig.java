@@ -0,0 +1,53 @@
+package com.soika.chat.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soika.chat.fanout.ChatFanout;
+import com.soika.chat.fanout.LocalChatFanout;
+import com.soika.chat.fanout.PostgresChatFanout;
+import com.soika.chat.service.ChatMessageBroadcaster;
+import com.soika.chat.service.MessageService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.DriverManager;
+import java.time.Duration;
+
+@Configuration
+public class FanoutConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(name = "chat.fanout.mode", havingValue = "postgres")
+    public PostgresChatFanout postgresChatFanout(
+            JdbcTemplate jdbcTemplate,
+            DataSourceProperties dataSourceProperties,
+            ObjectMapper objectMapper,
+            @Lazy ChatMessageBroadcaster broadcaster,
+            @Lazy MessageService messageService,
+            @Value("${chat.fanout.postgres.poll-interval:250ms}") Duration pollInterval,
+            @Value("${chat.fanout.postgres.reconnect-delay:5s}") Duration reconnectDelay
+    ) {
+        return new PostgresChatFanout(
+                jdbcTemplate,
+                () -> DriverManager.getConnection(
+                        dataSourceProperties.determineUrl(),
+                        dataSourceProperties.determineUsername(),
+                        dataSourceProperties.determinePassword()),
+                objectMapper,
+                broadcaster::broadcastRelayed,
+                messageService::getMessage,
+                pollInterval,
+                reconnectDelay
+        );
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "chat.fanout.mode", havingValue = "local", matchIfMissing = true)
+    public ChatFanout localChatFanout() {
+        return new LocalChatFanout();
+    }
+}
@@ -1,14 +1,78 @@
 package com.soika.chat.config;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
 @Configuration
 public class RestTemplateConfig {
 
+    @Value("${auth.client.max-connections-per-route:50}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${auth.client.max-connections-total:100}")
+    private int maxConnectionsTotal;
+
+    @Value("${auth.client.connect-timeout:1s}")
+    private Duration connectTimeout;
+
+    @Value("${auth.client.read-timeout:2s}")
+    private Duration readTimeout;
+
+    @Value("${auth.client.pool-acquire-timeout:500ms}")
+    private Duration poolAcquireTimeout;
+
+    @Value("${auth.client.keep-alive:30s}")
+    private Duration keepAlive;
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager authConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setMaxConnTotal(maxConnectionsTotal)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(5))
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient authHttpClient(PoolingHttpClientConnectionManager authConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(authConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(poolAcquireTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> TimeValue.of(keepAlive))
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(keepAlive))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(CloseableHttpClient authHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(authHttpClient));
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public MeterBinder authConnectionPoolMetrics(PoolingHttpClientConnectionManager authConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(authConnectionManager, "auth-provider");
     }
-} 
\ No newline at end of file
+}
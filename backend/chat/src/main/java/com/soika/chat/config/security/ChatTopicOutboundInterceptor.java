@@ -0,0 +1,34 @@
+package com.soika.chat.config.security;
+
+import com.soika.chat.config.ws_security.ChatAccessControl;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stops chat messages to sessions that lost access after subscribing,
+ * since the simple broker keeps their subscriptions until they leave.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatTopicOutboundInterceptor implements ChannelInterceptor {
+
+    private final ChatAccessControl accessControl;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        Long chatId = ChatAccessControl.topicChatId(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+        if (chatId == null) {
+            return message;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        return accessControl.canAccess(sessionId, chatId) ? message : null;
+    }
+}
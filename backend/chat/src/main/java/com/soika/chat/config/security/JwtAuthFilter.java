@@ -1,6 +1,7 @@
 package com.soika.chat.config.security;
 
 import com.soika.chat.client.AuthClient;
+import com.soika.chat.client.AuthServiceUnavailableException;
 import com.soika.chat.dto.ValidateTokenResponse;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -43,7 +44,14 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         }
 
         jwt = authHeader.substring(7);
-        ValidateTokenResponse validationResponse = authClient.validateToken(jwt);
+        ValidateTokenResponse validationResponse;
+        try {
+            validationResponse = authClient.validateToken(jwt);
+        } catch (AuthServiceUnavailableException e) {
+            log.warn("Token validation unavailable: {}", e.getMessage());
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
         log.debug("Validation response: {}", validationResponse);
         if (!validationResponse.isValid()) {
             log.debug("Token validation failed");
@@ -1,52 +1,92 @@
 package com.soika.chat.config.security;
 
 import com.soika.chat.client.AuthClient;
+import com.soika.chat.config.ws_security.ChatAccessControl;
+import com.soika.chat.config.ws_security.PayloadEncodings;
+import com.soika.chat.config.ws_security.SlowConsumerHandlerDecoratorFactory;
 import com.soika.chat.config.ws_security.WebSocketAuthContext;
 import com.soika.chat.dto.ValidateTokenResponse;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Component;
-import java.util.Collections;
 
 @Component
 @Slf4j
-@RequiredArgsConstructor
 public class JwtWebSocketInterceptor implements ChannelInterceptor {
 
     private final WebSocketAuthContext authContext;
     private final AuthClient authClient;
+    private final ChatAccessControl accessControl;
+    private final MessageChannel clientOutboundChannel;
+
+    public JwtWebSocketInterceptor(
+            WebSocketAuthContext authContext,
+            AuthClient authClient,
+            ChatAccessControl accessControl,
+            @Lazy @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel
+    ) {
+        this.authContext = authContext;
+        this.authClient = authClient;
+        this.accessControl = accessControl;
+        this.clientOutboundChannel = clientOutboundChannel;
+    }
 
     @Override
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
         StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        StompCommand command = accessor.getCommand();
+        String sessionId = accessor.getSessionId();
 
-        if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+        if (StompCommand.CONNECT.equals(command)) {
             String token = extractToken(accessor);
             ValidateTokenResponse response = authClient.validateToken(token);
+            if (!response.isValid() || response.getId() == null) {
+                rejectConnect(sessionId, response.getError());
+                return null;
+            }
+            authContext.register(sessionId, response.getId(), response.getUsername(), PayloadEncodings.negotiate(accessor));
+            SlowConsumerHandlerDecoratorFactory.negotiateBatching(accessor);
+            return message;
+        }
 
-            UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(
-                    response.getUsername(),
-                    null,
-                    Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))
-            );
-
-            authContext.register(accessor.getSessionId(), auth);
-            authContext.setUserId(accessor.getSessionId(), response.getId());
-        } else if (StompCommand.DISCONNECT.equals(accessor.getCommand())) {
-            authContext.remove(accessor.getSessionId());
-            authContext.removeUserId(accessor.getSessionId());
+        // Any inbound frame, heartbeats included, proves the session is alive
+        authContext.touch(sessionId);
+
+        if (StompCommand.SUBSCRIBE.equals(command) || StompCommand.SEND.equals(command)) {
+            String destination = accessor.getDestination();
+            Long chatId = StompCommand.SUBSCRIBE.equals(command)
+                    ? ChatAccessControl.topicChatId(destination)
+                    : ChatAccessControl.sendChatId(destination);
+            boolean allowed = chatId != null
+                    ? accessControl.canAccess(sessionId, chatId)
+                    : authContext.get(sessionId) != null;
+            if (!allowed) {
+                // Dropped rather than answered with ERROR, which would close the whole connection
+                log.debug("Denied {} to {} for session {}", command, destination, sessionId);
+                return null;
+            }
         }
 
         return message;
     }
 
+    // Thrown exceptions are only logged once frames are dispatched in per-session order, so the
+    // ERROR frame is sent explicitly; the connection is closed after it is written
+    private void rejectConnect(String sessionId, String error) {
+        log.debug("Rejected WebSocket CONNECT for session {}: {}", sessionId, error);
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.ERROR);
+        accessor.setMessage("Invalid token");
+        accessor.setSessionId(sessionId);
+        clientOutboundChannel.send(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
     private String extractToken(StompHeaderAccessor accessor) {
         String authHeader = accessor.getFirstNativeHeader("Authorization");
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
@@ -54,4 +94,4 @@ public class JwtWebSocketInterceptor implements ChannelInterceptor {
         }
         return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,72 @@
+package com.soika.chat.config.ws_security;
+
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executors for the STOMP channels, read from {@code chat.ws.channels.<channel>.*}.
+ * In {@code virtual} mode every message runs on its own virtual thread, so frames
+ * blocked on JDBC or the auth service do not hold a pooled thread; this needs a Java 21 runtime.
+ */
+public final class ChannelExecutors {
+
+    public static final String PLATFORM = "platform";
+    public static final String VIRTUAL = "virtual";
+
+    private ChannelExecutors() {
+    }
+
+    public static TaskExecutor fromEnvironment(Environment environment, String channel, int defaultPoolSize) {
+        String prefix = "chat.ws.channels.";
+        String mode = environment.getProperty(prefix + "mode", PLATFORM);
+        String channelPrefix = prefix + channel + ".";
+        if (VIRTUAL.equals(mode)) {
+            return virtual(channel + "-", environment.getProperty(channelPrefix + "max-concurrency", Integer.class, 1000));
+        }
+        if (!PLATFORM.equals(mode)) {
+            throw new IllegalStateException("Unknown chat.ws.channels.mode: " + mode);
+        }
+        return platform(
+                channel + "-",
+                environment.getProperty(channelPrefix + "pool-size", Integer.class, defaultPoolSize),
+                environment.getProperty(channelPrefix + "queue-capacity", Integer.class, 10_000)
+        );
+    }
+
+    // Channel executors are initialized by the container, which registers them as the channel's executor bean
+    public static void initialize(TaskExecutor executor) {
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            pool.initialize();
+        }
+    }
+
+    public static void shutdown(TaskExecutor executor) {
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            pool.shutdown();
+        }
+    }
+
+    public static ThreadPoolTaskExecutor platform(String threadNamePrefix, int poolSize, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setAllowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static SimpleAsyncTaskExecutor virtual(String threadNamePrefix, int maxConcurrency) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        try {
+            executor.setVirtualThreads(true);
+        } catch (UnsupportedOperationException e) {
+            throw new IllegalStateException("chat.ws.channels.mode=virtual requires Java 21 or newer", e);
+        }
+        // Bounds concurrent JDBC and HTTP calls; excess submitters wait instead of piling up threads
+        executor.setConcurrencyLimit(maxConcurrency);
+        return executor;
+    }
+}
@@ -0,0 +1,93 @@
+package com.soika.chat.config.ws_security;
+
+import com.soika.chat.service.ChatMembershipChangedEvent;
+import com.soika.chat.service.ChatMembershipIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Decides whether a STOMP session may subscribe to or send into a chat.
+ * Decisions are cached on the session, so repeated frames cost a map lookup;
+ * membership changes evict the affected entries and the TTL bounds staleness
+ * for changes made on other instances.
+ */
+@Component
+public class ChatAccessControl {
+
+    private static final String CHAT_APP_PREFIX = "/app/chat/";
+    private static final String CHAT_TOPIC_PREFIX = "/topic/chat/";
+
+    private final WebSocketAuthContext authContext;
+    private final ChatMembershipIndex membershipIndex;
+    private final long ttlMillis;
+
+    public ChatAccessControl(
+            WebSocketAuthContext authContext,
+            ChatMembershipIndex membershipIndex,
+            @Value("${chat.ws.acl.ttl:30s}") Duration ttl
+    ) {
+        this.authContext = authContext;
+        this.membershipIndex = membershipIndex;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    public boolean canAccess(String sessionId, Long chatId) {
+        SessionRecord session = authContext.get(sessionId);
+        if (session == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        Boolean cached = session.cachedAccess(chatId, now);
+        if (cached != null) {
+            return cached;
+        }
+        boolean allowed = membershipIndex.isMember(chatId, session.getUserId());
+        session.cacheAccess(chatId, allowed, now + ttlMillis);
+        return allowed;
+    }
+
+    @EventListener
+    public void onMembershipChanged(ChatMembershipChangedEvent event) {
+        if (event.userId() == null) {
+            authContext.forEachSession(session -> session.evictAccess(event.chatId()));
+            return;
+        }
+        for (String sessionId : authContext.getSessions(event.userId())) {
+            SessionRecord session = authContext.get(sessionId);
+            if (session != null) {
+                session.evictAccess(event.chatId());
+            }
+        }
+    }
+
+    public static Long sendChatId(String destination) {
+        return chatId(CHAT_APP_PREFIX, destination);
+    }
+
+    /**
+     * Chat id of {@code /topic/chat/{id}} and of the per-chat topics below it, such as presence.
+     */
+    public static Long topicChatId(String destination) {
+        return chatId(CHAT_TOPIC_PREFIX, destination);
+    }
+
+    private static Long chatId(String prefix, String destination) {
+        if (destination == null || !destination.startsWith(prefix)) {
+            return null;
+        }
+        String rest = destination.substring(prefix.length());
+        int slash = rest.indexOf('/');
+        return parseId(slash >= 0 ? rest.substring(0, slash) : rest);
+    }
+
+    private static Long parseId(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.soika.chat.config.ws_security;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Subscriptions of STOMP sessions to a chat's topics: {@code /topic/chat/{id}} and the ones below
+ * it, such as {@code /topic/chat/{id}/presence}. A consumer registers a {@link Listener} for one
+ * topic suffix and hears of every subscription to it and of the last one of a chat going away.
+ * The subscribe event is published for a SUBSCRIBE the ACL dropped as well, so only subscriptions
+ * {@link ChatAccessControl} allows are counted; its decision is cached on the session by then.
+ */
+@Component
+public class ChatSubscriptionTracker {
+
+    private static final String CHAT_TOPIC_PREFIX = "/topic/chat/";
+
+    private final ChatAccessControl accessControl;
+    private final Map<String, Listener> listeners = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private final Map<String, Map<String, Topic>> subscriptionsBySession = new HashMap<>();
+    private final Map<Topic, Integer> subscriberCounts = new HashMap<>();
+
+    public ChatSubscriptionTracker(ChatAccessControl accessControl) {
+        this.accessControl = accessControl;
+    }
+
+    /**
+     * Called under the tracker's lock, so a chat's calls arrive in order.
+     */
+    public interface Listener {
+
+        void subscribed(Long chatId, boolean first);
+
+        void lastUnsubscribed(Long chatId);
+    }
+
+    /**
+     * Tracks subscriptions to {@code /topic/chat/{id}} followed by {@code suffix}, e.g.
+     * {@code ""} or {@code "/presence"}.
+     */
+    public void register(String suffix, Listener listener) {
+        if (listeners.putIfAbsent(suffix, listener) != null) {
+            throw new IllegalStateException("Chat topic suffix '" + suffix + "' is already tracked");
+        }
+    }
+
+    public synchronized boolean hasSubscribers(Long chatId, String suffix) {
+        return subscriberCounts.containsKey(new Topic(chatId, suffix));
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        Long chatId = ChatAccessControl.topicChatId(destination);
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        if (chatId == null || sessionId == null || subscriptionId == null) {
+            return;
+        }
+        String suffix = suffix(destination);
+        if (listeners.containsKey(suffix) && accessControl.canAccess(sessionId, chatId)) {
+            subscribe(sessionId, subscriptionId, chatId, suffix);
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        unsubscribe(accessor.getSessionId(), accessor.getSubscriptionId());
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        removeSession(event.getSessionId());
+    }
+
+    synchronized void subscribe(String sessionId, String subscriptionId, Long chatId, String suffix) {
+        Topic topic = new Topic(chatId, suffix);
+        Topic previous = subscriptionsBySession
+                .computeIfAbsent(sessionId, id -> new HashMap<>())
+                .put(subscriptionId, topic);
+        if (previous != null) {
+            release(previous);
+        }
+        boolean first = subscriberCounts.merge(topic, 1, Integer::sum) == 1;
+        listeners.get(suffix).subscribed(chatId, first);
+    }
+
+    synchronized void unsubscribe(String sessionId, String subscriptionId) {
+        Map<String, Topic> subscriptions = subscriptionsBySession.get(sessionId);
+        if (subscriptions == null) {
+            return;
+        }
+        Topic topic = subscriptions.remove(subscriptionId);
+        if (topic != null) {
+            release(topic);
+        }
+        if (subscriptions.isEmpty()) {
+            subscriptionsBySession.remove(sessionId);
+        }
+    }
+
+    synchronized void removeSession(String sessionId) {
+        Map<String, Topic> subscriptions = subscriptionsBySession.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    private void release(Topic topic) {
+        if (subscriberCounts.merge(topic, -1, Integer::sum) <= 0) {
+            subscriberCounts.remove(topic);
+            listeners.get(topic.suffix()).lastUnsubscribed(topic.chatId());
+        }
+    }
+
+    private static String suffix(String destination) {
+        int slash = destination.indexOf('/', CHAT_TOPIC_PREFIX.length());
+        return slash >= 0 ? destination.substring(slash) : "";
+    }
+
+    private record Topic(Long chatId, String suffix) {
+    }
+}
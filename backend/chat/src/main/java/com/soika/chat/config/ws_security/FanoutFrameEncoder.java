@@ -0,0 +1,179 @@
+package com.soika.chat.config.ws_security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.soika.chat.fanout.ChatSubscriptionRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes chat topic messages to sessions without Spring's per-session STOMP encoding. The simple
+ * broker hands every subscriber the same payload array, so the frame is built once per broadcast
+ * and cached by identity; only the subscription and message-id headers are encoded per subscriber.
+ * Runs on the outbound channel right before the WebSocket handler, so per-session order holds.
+ */
+@Component
+@Slf4j
+public class FanoutFrameEncoder implements ExecutorChannelInterceptor {
+
+    private static final String SUBSCRIPTION = StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER + ":";
+    private static final String MESSAGE_ID = StompHeaderAccessor.STOMP_MESSAGE_ID_HEADER + ":";
+    private static final Set<String> PER_FRAME_HEADERS = Set.of(
+            StompHeaderAccessor.STOMP_DESTINATION_HEADER, StompHeaderAccessor.STOMP_CONTENT_TYPE_HEADER,
+            StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER, StompHeaderAccessor.STOMP_MESSAGE_ID_HEADER,
+            StompHeaderAccessor.STOMP_CONTENT_LENGTH_HEADER);
+
+    private final SlowConsumerHandlerDecoratorFactory sessions;
+    // Weak keys are compared by identity and go away once the broker drops the payload
+    private final Cache<byte[], Frame> frames = Caffeine.newBuilder().weakKeys().maximumSize(1024).build();
+    private final AtomicLong messageIdCounter = new AtomicLong();
+
+    public FanoutFrameEncoder(SlowConsumerHandlerDecoratorFactory sessions) {
+        this.sessions = sessions;
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        if (!(handler instanceof SubProtocolWebSocketHandler)) {
+            return message;
+        }
+        WebSocketSession session = sessions.session(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+        WebSocketMessage<?> frame = session != null ? encode(message) : null;
+        if (frame == null) {
+            return message;
+        }
+        try {
+            session.sendMessage(frame);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Failed to send chat message to WebSocket session {}: {}", session.getId(), e.getMessage());
+        } finally {
+            // With ordered publishing the session's next frame waits for this one, which
+            // StompSubProtocolHandler would otherwise release
+            Runnable nextMessageTask = OrderedMessageChannelDecorator.getNextMessageTask(message);
+            if (nextMessageTask != null) {
+                nextMessageTask.run();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the wire frame for a chat topic MESSAGE, or null for anything else.
+     */
+    public WebSocketMessage<?> encode(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || !(message.getPayload() instanceof byte[] payload)
+                || ChatSubscriptionRegistry.chatId(destination) == null) {
+            return null;
+        }
+        Frame frame = frames.get(payload, p -> Frame.of(headers, p));
+        if (!frame.destination().equals(destination)) {
+            frame = Frame.of(headers, payload);
+        }
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+        String messageId = SimpMessageHeaderAccessor.getSessionId(headers) + "-" + messageIdCounter.getAndIncrement();
+        String perSubscriber = (subscriptionId != null ? SUBSCRIPTION + escape(subscriptionId) + "\n" : "")
+                + MESSAGE_ID + escape(messageId) + "\n";
+        if (frame.binary()) {
+            byte[] middle = perSubscriber.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.allocate(frame.head().length + middle.length + frame.tail().length);
+            buffer.put(frame.head()).put(middle).put(frame.tail()).flip();
+            return new BinaryMessage(buffer);
+        }
+        return new TextMessage(frame.headText() + perSubscriber + frame.tailText());
+    }
+
+    // Same escaping as Spring's StompEncoder for frames other than CONNECT and CONNECTED
+    private static String escape(String value) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement = switch (c) {
+                case '\\' -> "\\\\";
+                case ':' -> "\\c";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                default -> null;
+            };
+            if (replacement != null && escaped == null) {
+                escaped = new StringBuilder(value.length() + 8).append(value, 0, i);
+            }
+            if (escaped != null) {
+                if (replacement != null) {
+                    escaped.append(replacement);
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped != null ? escaped.toString() : value;
+    }
+
+    /**
+     * Everything of a broadcast frame but the subscription and message-id headers: the command
+     * and shared headers before them, content-length, body and terminator after them.
+     * Binary frames keep bytes, text frames keep strings.
+     */
+    private record Frame(String destination, boolean binary, byte[] head, byte[] tail, String headText, String tailText) {
+
+        @SuppressWarnings("unchecked")
+        static Frame of(MessageHeaders headers, byte[] payload) {
+            String destination = SimpMessageHeaderAccessor.getDestination(headers);
+            Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+            StringBuilder head = new StringBuilder(256).append("MESSAGE\n");
+            Map<String, List<String>> nativeHeaders =
+                    (Map<String, List<String>>) headers.get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+            if (nativeHeaders != null) {
+                for (Map.Entry<String, List<String>> entry : nativeHeaders.entrySet()) {
+                    if (PER_FRAME_HEADERS.contains(entry.getKey())) {
+                        continue;
+                    }
+                    for (String value : entry.getValue()) {
+                        head.append(escape(entry.getKey())).append(':').append(escape(value)).append('\n');
+                    }
+                }
+            }
+            head.append(StompHeaderAccessor.STOMP_DESTINATION_HEADER).append(':').append(escape(destination)).append('\n');
+            if (contentType != null) {
+                head.append(StompHeaderAccessor.STOMP_CONTENT_TYPE_HEADER).append(':')
+                        .append(escape(contentType.toString())).append('\n');
+            }
+            byte[] tail = ("content-length:" + payload.length + "\n\n").getBytes(StandardCharsets.UTF_8);
+            tail = Arrays.copyOf(tail, tail.length + payload.length + 1);
+            System.arraycopy(payload, 0, tail, tail.length - payload.length - 1, payload.length);
+
+            boolean binary = contentType != null && PayloadEncodings.CBOR.equalsTypeAndSubtype(
+                    contentType instanceof MimeType mimeType ? mimeType : MimeType.valueOf(contentType.toString()));
+            return binary
+                    ? new Frame(destination, true, head.toString().getBytes(StandardCharsets.UTF_8), tail, null, null)
+                    : new Frame(destination, false, null, null, head.toString(), new String(tail, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.soika.chat.config.ws_security;
+
+public enum OutboundOverflowPolicy {
+    // Oldest queued frames other than chat messages are discarded until the queue fits its limits
+    DROP_OLDEST,
+    // Only the newest queued frame per presence topic is kept, then as DROP_OLDEST
+    COALESCE,
+    // The session is closed with a reason and the client reconnects and resumes
+    DISCONNECT
+}
@@ -0,0 +1,46 @@
+package com.soika.chat.config.ws_security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Re-encodes JSON message bodies as CBOR for sessions that negotiated it on CONNECT. A broadcast
+ * is transcoded once: subscribers of one chat share the payload array, and so the result.
+ */
+@Component
+@RequiredArgsConstructor
+public class PayloadEncodingInterceptor implements ChannelInterceptor {
+
+    private final WebSocketAuthContext authContext;
+    private final Cache<byte[], byte[]> transcoded = Caffeine.newBuilder().weakKeys().maximumSize(1024).build();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+        MimeType contentType = accessor.getContentType();
+        if (contentType == null || !MimeTypeUtils.APPLICATION_JSON.equalsTypeAndSubtype(contentType)) {
+            return message;
+        }
+        SessionRecord session = authContext.get(accessor.getSessionId());
+        if (session == null || !PayloadEncodings.CBOR.equals(session.getPayloadContentType())) {
+            return message;
+        }
+        SimpMessageHeaderAccessor encoded = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        encoded.copyHeaders(message.getHeaders());
+        encoded.setContentType(PayloadEncodings.CBOR);
+        return MessageBuilder.createMessage(transcoded.get(payload, PayloadEncodings::jsonToCbor), encoded.getMessageHeaders());
+    }
+}
@@ -0,0 +1,60 @@
+package com.soika.chat.config.ws_security;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * Per-connection payload encoding. A client connected to the native endpoint may send
+ * {@code accept-content-type:application/cbor} on CONNECT to receive CBOR bodies in binary
+ * frames instead of JSON text; SockJS connections always get JSON.
+ */
+public final class PayloadEncodings {
+
+    public static final MimeType CBOR = MimeType.valueOf("application/cbor");
+    public static final String ACCEPT_CONTENT_TYPE_HEADER = "accept-content-type";
+    public static final String NATIVE_TRANSPORT_ATTRIBUTE = "chat.nativeTransport";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final CBORFactory CBOR_FACTORY = new CBORFactory();
+
+    private PayloadEncodings() {
+    }
+
+    public static MimeType negotiate(StompHeaderAccessor connect) {
+        Map<String, Object> attributes = connect.getSessionAttributes();
+        String accept = connect.getFirstNativeHeader(ACCEPT_CONTENT_TYPE_HEADER);
+        if (accept == null || attributes == null || !Boolean.TRUE.equals(attributes.get(NATIVE_TRANSPORT_ATTRIBUTE))) {
+            return MimeTypeUtils.APPLICATION_JSON;
+        }
+        for (MimeType accepted : MimeTypeUtils.parseMimeTypes(accept)) {
+            if (CBOR.equalsTypeAndSubtype(accepted)) {
+                return CBOR;
+            }
+        }
+        return MimeTypeUtils.APPLICATION_JSON;
+    }
+
+    // Streams tokens straight across, without building a tree or binding to a type
+    public static byte[] jsonToCbor(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = JSON_FACTORY.createParser(json);
+             JsonGenerator generator = CBOR_FACTORY.createGenerator(out)) {
+            while (parser.nextToken() != null) {
+                generator.copyCurrentEvent(parser);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,54 @@
+package com.soika.chat.config.ws_security;
+
+import lombok.Getter;
+import org.springframework.util.MimeType;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Getter
+public class SessionRecord {
+    // A session probing many chat ids starts over instead of growing without bound
+    private static final int MAX_CACHED_CHATS = 1024;
+
+    private final String sessionId;
+    private final Long userId;
+    private final String username;
+    private final MimeType payloadContentType;
+    private final long connectedAt;
+    private volatile long lastActivityAt;
+    @Getter(lombok.AccessLevel.NONE)
+    private final ConcurrentMap<Long, ChatAccess> chatAccess = new ConcurrentHashMap<>();
+
+    public SessionRecord(String sessionId, Long userId, String username, MimeType payloadContentType) {
+        this.sessionId = sessionId;
+        this.userId = userId;
+        this.username = username;
+        this.payloadContentType = payloadContentType;
+        this.connectedAt = System.currentTimeMillis();
+        this.lastActivityAt = connectedAt;
+    }
+
+    void touch(long now) {
+        lastActivityAt = now;
+    }
+
+    Boolean cachedAccess(Long chatId, long now) {
+        ChatAccess access = chatAccess.get(chatId);
+        return access != null && access.expiresAt() > now ? access.allowed() : null;
+    }
+
+    void cacheAccess(Long chatId, boolean allowed, long expiresAt) {
+        if (chatAccess.size() >= MAX_CACHED_CHATS) {
+            chatAccess.clear();
+        }
+        chatAccess.put(chatId, new ChatAccess(allowed, expiresAt));
+    }
+
+    void evictAccess(Long chatId) {
+        chatAccess.remove(chatId);
+    }
+
+    private record ChatAccess(boolean allowed, long expiresAt) {
+    }
+}
@@ -0,0 +1,169 @@
+package com.soika.chat.config.ws_security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps every WebSocket session in a {@link SlowConsumerSession} with the limits from {@code chat.ws.outbound}.
+ */
+@Component
+@Getter
+public class SlowConsumerHandlerDecoratorFactory implements WebSocketHandlerDecoratorFactory, DisposableBean {
+
+    public static final String BATCH_HEADER = "accept-batch";
+    public static final String BATCH_ATTRIBUTE = "chat.batchedDelivery";
+
+    private final int maxQueuedMessages;
+    private final long maxQueuedBytes;
+    private final long sendTimeLimitNanos;
+    private final OutboundOverflowPolicy overflowPolicy;
+    private final long batchWindowNanos;
+    private final long batchMaxBytes;
+    @Getter(lombok.AccessLevel.NONE)
+    private final TaskExecutor drainExecutor;
+    @Getter(lombok.AccessLevel.NONE)
+    private final ThreadPoolTaskScheduler batchScheduler;
+    @Getter(lombok.AccessLevel.NONE)
+    private final MeterRegistry meterRegistry;
+    @Getter(lombok.AccessLevel.NONE)
+    private final DistributionSummary batchSize;
+    @Getter(lombok.AccessLevel.NONE)
+    private final AtomicLong queueDepth = new AtomicLong();
+    @Getter(lombok.AccessLevel.NONE)
+    private final Map<OutboundOverflowPolicy, Counter> dropped = new EnumMap<>(OutboundOverflowPolicy.class);
+    @Getter(lombok.AccessLevel.NONE)
+    private final Map<String, SlowConsumerSession> sessions = new ConcurrentHashMap<>();
+
+    public SlowConsumerHandlerDecoratorFactory(
+            MeterRegistry meterRegistry,
+            Environment environment,
+            @Value("${chat.ws.outbound.max-queued-messages:1000}") int maxQueuedMessages,
+            @Value("${chat.ws.outbound.max-queued-bytes:1MB}") DataSize maxQueuedBytes,
+            @Value("${chat.ws.outbound.send-time-limit:10s}") Duration sendTimeLimit,
+            @Value("${chat.ws.outbound.overflow:disconnect}") OutboundOverflowPolicy overflowPolicy,
+            @Value("${chat.ws.outbound.batch-window:5ms}") Duration batchWindow,
+            @Value("${chat.ws.outbound.batch-max-bytes:64KB}") DataSize batchMaxBytes
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.maxQueuedMessages = maxQueuedMessages;
+        this.maxQueuedBytes = maxQueuedBytes.toBytes();
+        this.sendTimeLimitNanos = sendTimeLimit.toNanos();
+        this.overflowPolicy = overflowPolicy;
+        this.batchWindowNanos = batchWindow.toNanos();
+        this.batchMaxBytes = batchMaxBytes.toBytes();
+        this.batchScheduler = new ThreadPoolTaskScheduler();
+        batchScheduler.setThreadNamePrefix("batch-");
+        batchScheduler.initialize();
+        // Socket writes block, so slow clients hold drain threads rather than the outbound channel's
+        this.drainExecutor = ChannelExecutors.fromEnvironment(environment, "drain", 32);
+        ChannelExecutors.initialize(drainExecutor);
+        Gauge.builder("chat.ws.outbound.queue.depth", queueDepth, AtomicLong::get)
+                .description("Frames queued for WebSocket sessions and not yet written")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("chat.ws.outbound.batch.size")
+                .description("Frames written together in one WebSocket message to a batching session")
+                .register(meterRegistry);
+        for (OutboundOverflowPolicy policy : OutboundOverflowPolicy.values()) {
+            if (policy != OutboundOverflowPolicy.DISCONNECT) {
+                dropped.put(policy, Counter.builder("chat.ws.outbound.dropped")
+                        .description("Frames discarded because a session's outbound queue was full")
+                        .tag("policy", policy.name().toLowerCase())
+                        .register(meterRegistry));
+            }
+        }
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                SlowConsumerSession decorated = new SlowConsumerSession(session, SlowConsumerHandlerDecoratorFactory.this, drainExecutor);
+                sessions.put(session.getId(), decorated);
+                super.afterConnectionEstablished(decorated);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                SlowConsumerSession decorated = sessions.remove(session.getId());
+                if (decorated != null) {
+                    decorated.discard();
+                }
+                super.afterConnectionClosed(decorated != null ? decorated : session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Enables batched delivery for a session whose CONNECT frame carries {@code accept-batch}.
+     */
+    public static void negotiateBatching(StompHeaderAccessor connect) {
+        Map<String, Object> attributes = connect.getSessionAttributes();
+        if (attributes != null && connect.getFirstNativeHeader(BATCH_HEADER) != null) {
+            attributes.put(BATCH_ATTRIBUTE, true);
+        }
+    }
+
+    public WebSocketSession session(String sessionId) {
+        return sessionId != null ? sessions.get(sessionId) : null;
+    }
+
+    void schedule(Runnable task, long delayNanos) {
+        try {
+            batchScheduler.schedule(task, Instant.now().plusNanos(delayNanos));
+        } catch (TaskRejectedException e) {
+            task.run();
+        }
+    }
+
+    void onBatch(int frames) {
+        batchSize.record(frames);
+    }
+
+    void onQueued() {
+        queueDepth.incrementAndGet();
+    }
+
+    void onDequeued(int count) {
+        queueDepth.addAndGet(-count);
+    }
+
+    void onDropped(OutboundOverflowPolicy policy) {
+        queueDepth.decrementAndGet();
+        dropped.get(policy).increment();
+    }
+
+    void onDisconnected(String reason) {
+        meterRegistry.counter("chat.ws.outbound.disconnects", "reason", reason).increment();
+    }
+
+    @Override
+    public void destroy() {
+        batchScheduler.shutdown();
+        ChannelExecutors.shutdown(drainExecutor);
+    }
+}
@@ -0,0 +1,325 @@
+package com.soika.chat.config.ws_security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Queues outbound frames per session and writes them on a drain executor, so the thread that
+ * publishes to a chat never blocks on a slow socket. Queue limits are enforced on every send
+ * with the configured {@link OutboundOverflowPolicy}. Frames of a chat's message topic are never
+ * dropped or coalesced: the client would not learn of the hole and so never resume. When only
+ * they are left over the limit, the session is closed instead and the client resumes on reconnect.
+ * <p>
+ * Sessions that sent {@code accept-batch} on CONNECT are written at most once per batch window:
+ * frames queued in the meantime go out together, concatenated into one WebSocket message.
+ * An idle session is still written at once.
+ */
+@Slf4j
+class SlowConsumerSession extends WebSocketSessionDecorator {
+
+    private static final String CHAT_TOPIC_PREFIX = "/topic/chat/";
+    private static final String PRESENCE_SUFFIX = "/presence";
+
+    private final SlowConsumerHandlerDecoratorFactory factory;
+    private final Executor drainExecutor;
+    private final Deque<WebSocketMessage<?>> queue = new ArrayDeque<>();
+    private long queuedBytes;
+    private boolean draining;
+    private long nextWriteAt = System.nanoTime();
+    private volatile long sendStartedAt;
+    private volatile boolean closed;
+
+    SlowConsumerSession(WebSocketSession delegate, SlowConsumerHandlerDecoratorFactory factory, Executor drainExecutor) {
+        super(delegate);
+        this.factory = factory;
+        this.drainExecutor = drainExecutor;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (closed) {
+            return;
+        }
+        CloseStatus disconnect = null;
+        boolean startDrain = false;
+        synchronized (this) {
+            long started = sendStartedAt;
+            if (started != 0 && System.nanoTime() - started > factory.getSendTimeLimitNanos()) {
+                disconnect = CloseStatus.SESSION_NOT_RELIABLE.withReason("Send time limit exceeded");
+            } else {
+                enqueue(message);
+                if (overLimit() && !applyOverflow()) {
+                    disconnect = CloseStatus.SESSION_NOT_RELIABLE.withReason("Outbound queue limit exceeded");
+                } else if (!draining) {
+                    draining = true;
+                    startDrain = true;
+                }
+            }
+        }
+        if (disconnect != null) {
+            disconnect(disconnect);
+        } else if (startDrain) {
+            startDrain();
+        }
+    }
+
+    synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    void discard() {
+        closed = true;
+        synchronized (this) {
+            factory.onDequeued(queue.size());
+            queue.clear();
+            queuedBytes = 0;
+        }
+    }
+
+    private void startDrain() {
+        long wait = batching() ? nextWriteAt - System.nanoTime() : 0;
+        if (wait > 0) {
+            factory.schedule(this::drainNow, wait);
+        } else {
+            drainNow();
+        }
+    }
+
+    private void drainNow() {
+        try {
+            drainExecutor.execute(this::drain);
+        } catch (TaskRejectedException e) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        boolean batching = batching();
+        while (true) {
+            WebSocketMessage<?> next;
+            synchronized (this) {
+                next = closed ? null : poll(batching);
+                if (next == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            sendStartedAt = System.nanoTime();
+            try {
+                getDelegate().sendMessage(next);
+            } catch (IOException | RuntimeException e) {
+                log.debug("Failed to write to WebSocket session {}: {}", getId(), e.getMessage());
+                synchronized (this) {
+                    draining = false;
+                }
+                discard();
+                return;
+            } finally {
+                nextWriteAt = sendStartedAt + factory.getBatchWindowNanos();
+                sendStartedAt = 0;
+            }
+            if (batching) {
+                synchronized (this) {
+                    if (queue.isEmpty() || closed) {
+                        draining = false;
+                        return;
+                    }
+                }
+                // Still draining: frames arriving until the window ends join the next write
+                long wait = nextWriteAt - System.nanoTime();
+                if (wait > 0) {
+                    factory.schedule(this::drainNow, wait);
+                    return;
+                }
+            }
+        }
+    }
+
+    // The oldest frame, or with batching every queued frame of the same kind that fits the batch limit
+    private WebSocketMessage<?> poll(boolean batching) {
+        WebSocketMessage<?> first = queue.peekFirst();
+        if (first == null) {
+            return null;
+        }
+        int length = dequeue();
+        first = toWire(first);
+        if (!batching || queue.isEmpty()) {
+            return first;
+        }
+        List<WebSocketMessage<?>> batch = new ArrayList<>();
+        batch.add(first);
+        while (!queue.isEmpty()) {
+            WebSocketMessage<?> candidate = toWire(queue.peekFirst());
+            int candidateLength = candidate.getPayloadLength();
+            if (candidate.getClass() != first.getClass() || length + candidateLength > factory.getBatchMaxBytes()) {
+                break;
+            }
+            dequeue();
+            batch.add(candidate);
+            length += candidateLength;
+        }
+        factory.onBatch(batch.size());
+        return batch.size() == 1 ? first : concat(batch, length);
+    }
+
+    private int dequeue() {
+        int length = queue.pollFirst().getPayloadLength();
+        queuedBytes -= length;
+        factory.onDequeued(1);
+        return length;
+    }
+
+    // STOMP allows several frames in one WebSocket message, each ending with its NUL octet
+    private static WebSocketMessage<?> concat(List<WebSocketMessage<?>> batch, int length) {
+        if (batch.get(0) instanceof BinaryMessage) {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            for (WebSocketMessage<?> message : batch) {
+                buffer.put(((BinaryMessage) message).getPayload().duplicate());
+            }
+            return new BinaryMessage(buffer.flip());
+        }
+        StringBuilder text = new StringBuilder(length);
+        for (WebSocketMessage<?> message : batch) {
+            text.append(((TextMessage) message).getPayload());
+        }
+        return new TextMessage(text);
+    }
+
+    private boolean batching() {
+        Map<String, Object> attributes = getAttributes();
+        return attributes != null && Boolean.TRUE.equals(attributes.get(SlowConsumerHandlerDecoratorFactory.BATCH_ATTRIBUTE));
+    }
+
+    private void enqueue(WebSocketMessage<?> message) {
+        queue.addLast(message);
+        queuedBytes += message.getPayloadLength();
+        factory.onQueued();
+    }
+
+    private boolean overLimit() {
+        return queue.size() > factory.getMaxQueuedMessages() || queuedBytes > factory.getMaxQueuedBytes();
+    }
+
+    // False when the queue is still over its limits and the session has to be closed
+    private boolean applyOverflow() {
+        switch (factory.getOverflowPolicy()) {
+            case DISCONNECT:
+                return false;
+            case COALESCE:
+                coalesce();
+                return dropOldest();
+            default:
+                return dropOldest();
+        }
+    }
+
+    // Walks from the newest frame and removes older presence frames sent to a destination already seen
+    private void coalesce() {
+        Set<String> destinations = new HashSet<>();
+        Iterator<WebSocketMessage<?>> iterator = queue.descendingIterator();
+        while (iterator.hasNext()) {
+            WebSocketMessage<?> message = iterator.next();
+            String destination = destination(message);
+            if (destination != null && destination.endsWith(PRESENCE_SUFFIX) && !destinations.add(destination)) {
+                iterator.remove();
+                queuedBytes -= message.getPayloadLength();
+                factory.onDropped(OutboundOverflowPolicy.COALESCE);
+            }
+        }
+    }
+
+    // Skips chat messages; the newest frame always stays, even if it exceeds the byte limit on its own
+    private boolean dropOldest() {
+        Iterator<WebSocketMessage<?>> iterator = queue.iterator();
+        while (overLimit() && queue.size() > 1 && iterator.hasNext()) {
+            WebSocketMessage<?> message = iterator.next();
+            if (message == queue.peekLast()) {
+                break;
+            }
+            if (!chatMessage(destination(message))) {
+                iterator.remove();
+                queuedBytes -= message.getPayloadLength();
+                factory.onDropped(OutboundOverflowPolicy.DROP_OLDEST);
+            }
+        }
+        return !overLimit() || queue.size() == 1;
+    }
+
+    // A chat's own topic, not one below it such as /presence
+    private static boolean chatMessage(String destination) {
+        return destination != null && destination.startsWith(CHAT_TOPIC_PREFIX)
+                && destination.indexOf('/', CHAT_TOPIC_PREFIX.length()) < 0;
+    }
+
+    private void disconnect(CloseStatus status) {
+        log.info("Closing slow WebSocket session {}: {}", getId(), status.getReason());
+        factory.onDisconnected(status.getReason());
+        discard();
+        try {
+            getDelegate().close(status);
+        } catch (IOException e) {
+            log.debug("Failed to close WebSocket session {}", getId(), e);
+        }
+    }
+
+    // Spring writes binary frames only for application/octet-stream bodies
+    private WebSocketMessage<?> toWire(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage text && !(getDelegate() instanceof SockJsSession)
+                && PayloadEncodings.CBOR.toString().equals(header(text.getPayload(), "content-type"))) {
+            return new BinaryMessage(text.asBytes());
+        }
+        return message;
+    }
+
+    static String destination(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage text) {
+            return header(text.getPayload(), "destination");
+        }
+        return message instanceof BinaryMessage binary ? header(headers(binary.getPayload()), "destination") : null;
+    }
+
+    // Header block of a binary frame, up to the blank line before the body
+    private static String headers(ByteBuffer frame) {
+        ByteBuffer buffer = frame.duplicate();
+        int start = buffer.position();
+        for (int i = start; i + 1 < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n' && buffer.get(i + 1) == '\n') {
+                byte[] headers = new byte[i - start];
+                buffer.get(headers);
+                return new String(headers, StandardCharsets.UTF_8);
+            }
+        }
+        return "";
+    }
+
+    private static String header(String frame, String name) {
+        int headersEnd = frame.indexOf("\n\n");
+        int start = frame.indexOf("\n" + name + ":");
+        if (start < 0 || (headersEnd >= 0 && start > headersEnd)) {
+            return null;
+        }
+        start += name.length() + 2;
+        int end = frame.indexOf('\n', start);
+        return end < 0 ? frame.substring(start) : frame.substring(start, end);
+    }
+}
@@ -0,0 +1,8 @@
+package com.soika.chat.config.ws_security;
+
+/**
+ * Published when a session of the user is registered or removed; the user may or may not have
+ * gone online or offline, {@link WebSocketAuthContext#isOnline} tells.
+ */
+public record UserSessionsChangedEvent(Long userId) {
+}
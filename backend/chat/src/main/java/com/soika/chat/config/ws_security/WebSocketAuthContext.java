@@ -1,38 +1,162 @@
 package com.soika.chat.config.ws_security;
 
-import org.springframework.security.core.Authentication;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
 
 @Component
+@Slf4j
 public class WebSocketAuthContext {
-    private final ConcurrentMap<String, Authentication> sessions = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, Long> users = new ConcurrentHashMap<>();
+    // Rough per-entry cost of the record, its map entries and the user index entry
+    private static final int ENTRY_OVERHEAD_BYTES = 200;
 
-    public void register(String sessionId, Authentication auth) {
-        sessions.put(sessionId, auth);
+    private final ConcurrentMap<String, SessionRecord> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+    private final ApplicationEventPublisher eventPublisher;
+    private final SlowConsumerHandlerDecoratorFactory webSocketSessions;
+    private final long idleTimeoutMillis;
+
+    public WebSocketAuthContext(
+            ApplicationEventPublisher eventPublisher,
+            SlowConsumerHandlerDecoratorFactory webSocketSessions,
+            MeterRegistry meterRegistry,
+            @Value("${chat.ws.session.idle-timeout:30m}") Duration idleTimeout
+    ) {
+        this.eventPublisher = eventPublisher;
+        this.webSocketSessions = webSocketSessions;
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        Gauge.builder("chat.ws.sessions", sessions, ConcurrentMap::size)
+                .description("Live WebSocket sessions in the registry")
+                .register(meterRegistry);
+        Gauge.builder("chat.ws.users", sessionsByUser, ConcurrentMap::size)
+                .description("Users with at least one live WebSocket session")
+                .register(meterRegistry);
+        Gauge.builder("chat.ws.registry.memory", this, WebSocketAuthContext::estimatedMemoryBytes)
+                .description("Estimated heap used by the session registry")
+                .baseUnit("bytes")
+                .register(meterRegistry);
     }
 
-    public Authentication get(String sessionId) {
-        return sessions.get(sessionId);
+    public void register(String sessionId, Long userId, String username) {
+        register(sessionId, userId, username, MimeTypeUtils.APPLICATION_JSON);
     }
 
-    public void remove(String sessionId) {
-        sessions.remove(sessionId);
+    public void register(String sessionId, Long userId, String username, MimeType payloadContentType) {
+        SessionRecord previous = sessions.put(sessionId, new SessionRecord(sessionId, userId, username, payloadContentType));
+        if (previous != null) {
+            unindex(previous);
+        }
+        sessionsByUser.compute(userId, (id, userSessions) -> {
+            Set<String> updated = userSessions != null ? userSessions : ConcurrentHashMap.newKeySet();
+            updated.add(sessionId);
+            return updated;
+        });
+        eventPublisher.publishEvent(new UserSessionsChangedEvent(userId));
     }
 
-    public void setUserId(String sessionId, Long userId) {
-        users.put(sessionId, userId);
+    public SessionRecord get(String sessionId) {
+        return sessionId != null ? sessions.get(sessionId) : null;
     }
 
     public Long getUserId(String sessionId) {
-        return users.get(sessionId);
+        SessionRecord record = get(sessionId);
+        return record != null ? record.getUserId() : null;
+    }
+
+    public Set<String> getSessions(Long userId) {
+        Set<String> userSessions = sessionsByUser.get(userId);
+        return userSessions != null ? Set.copyOf(userSessions) : Set.of();
+    }
+
+    public boolean isOnline(Long userId) {
+        return userId != null && sessionsByUser.containsKey(userId);
+    }
+
+    public void touch(String sessionId) {
+        SessionRecord record = get(sessionId);
+        if (record != null) {
+            record.touch(System.currentTimeMillis());
+        }
+    }
+
+    public void remove(String sessionId) {
+        SessionRecord record = sessions.remove(sessionId);
+        if (record != null) {
+            unindex(record);
+        }
     }
 
-    public void removeUserId(String sessionId) {
-        users.remove(sessionId);
+    public void forEachSession(Consumer<SessionRecord> action) {
+        sessions.values().forEach(action);
     }
 
-}
\ No newline at end of file
+    public int size() {
+        return sessions.size();
+    }
+
+    // Fired for explicit DISCONNECT frames as well as transport closes and heartbeat timeouts
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        remove(event.getSessionId());
+    }
+
+    // The socket is closed too, so a client that went silent without a close frame reconnects
+    // and authenticates again instead of keeping a connection nobody tracks
+    @Scheduled(fixedDelayString = "${chat.ws.session.sweep-interval:PT1M}")
+    public void sweepIdleSessions() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        sessions.values().stream()
+                .filter(record -> record.getLastActivityAt() < cutoff)
+                .forEach(record -> {
+                    log.debug("Evicting idle WebSocket session {} of user {}", record.getSessionId(), record.getUserId());
+                    remove(record.getSessionId());
+                    close(record.getSessionId());
+                });
+    }
+
+    private void close(String sessionId) {
+        WebSocketSession session = webSocketSessions.session(sessionId);
+        if (session == null) {
+            return;
+        }
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE.withReason("Idle timeout"));
+        } catch (IOException e) {
+            log.debug("Failed to close idle WebSocket session {}", sessionId, e);
+        }
+    }
+
+    private void unindex(SessionRecord record) {
+        sessionsByUser.computeIfPresent(record.getUserId(), (id, userSessions) -> {
+            userSessions.remove(record.getSessionId());
+            return userSessions.isEmpty() ? null : userSessions;
+        });
+        eventPublisher.publishEvent(new UserSessionsChangedEvent(record.getUserId()));
+    }
+
+    private double estimatedMemoryBytes() {
+        long bytes = 0;
+        for (SessionRecord record : sessions.values()) {
+            bytes += ENTRY_OVERHEAD_BYTES + 2L * record.getSessionId().length()
+                    + (record.getUsername() != null ? 2L * record.getUsername().length() : 0);
+        }
+        return bytes;
+    }
+}
@@ -1,36 +1,143 @@
 package com.soika.chat.config.ws_security;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.soika.chat.config.security.ChatTopicOutboundInterceptor;
 import com.soika.chat.config.security.JwtWebSocketInterceptor;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableWebSocketMessageBroker
-@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final JwtWebSocketInterceptor jwtInterceptor;
+    private final ChatTopicOutboundInterceptor outboundInterceptor;
+    private final PayloadEncodingInterceptor payloadEncodingInterceptor;
+    private final FanoutFrameEncoder fanoutFrameEncoder;
+    private final SlowConsumerHandlerDecoratorFactory slowConsumerDecoratorFactory;
+    private final TaskScheduler messageBrokerTaskScheduler;
+    private final long heartbeatMillis;
+    private final Environment environment;
+    private final boolean preserveOrder;
+
+    // The scheduler is created by the broker configuration itself, hence @Lazy
+    public WebSocketConfig(
+            JwtWebSocketInterceptor jwtInterceptor,
+            ChatTopicOutboundInterceptor outboundInterceptor,
+            PayloadEncodingInterceptor payloadEncodingInterceptor,
+            FanoutFrameEncoder fanoutFrameEncoder,
+            SlowConsumerHandlerDecoratorFactory slowConsumerDecoratorFactory,
+            @Lazy TaskScheduler messageBrokerTaskScheduler,
+            @Value("${chat.ws.heartbeat:10s}") Duration heartbeat,
+            @Value("${chat.ws.channels.preserve-order:true}") boolean preserveOrder,
+            Environment environment
+    ) {
+        this.jwtInterceptor = jwtInterceptor;
+        this.outboundInterceptor = outboundInterceptor;
+        this.payloadEncodingInterceptor = payloadEncodingInterceptor;
+        this.fanoutFrameEncoder = fanoutFrameEncoder;
+        this.slowConsumerDecoratorFactory = slowConsumerDecoratorFactory;
+        this.messageBrokerTaskScheduler = messageBrokerTaskScheduler;
+        this.heartbeatMillis = heartbeat.toMillis();
+        this.preserveOrder = preserveOrder;
+        this.environment = environment;
+    }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        config.enableSimpleBroker("/topic")
+                .setHeartbeatValue(new long[]{heartbeatMillis, heartbeatMillis})
+                .setTaskScheduler(messageBrokerTaskScheduler);
         config.setApplicationDestinationPrefixes("/app");
+        config.setPreservePublishOrder(preserveOrder);
+        // Synchronous by default: broadcaster stripes publish in per-chat order and a pool would reorder them
+        int brokerPoolSize = environment.getProperty("chat.ws.channels.broker.pool-size", Integer.class, 0);
+        if (brokerPoolSize > 0) {
+            config.configureBrokerChannel().executor(ChannelExecutors.platform(
+                    "broker-", brokerPoolSize,
+                    environment.getProperty("chat.ws.channels.broker.queue-capacity", Integer.class, 10_000)));
+        }
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // Plain WebSocket without SockJS framing; permessage-deflate is negotiated by the container
+        registry.addEndpoint("/ws-native")
+                .setAllowedOrigins("http://51.250.44.113:3000")
+                .addInterceptors(new NativeTransportInterceptor());
         registry.addEndpoint("/ws")
                 .setAllowedOrigins("http://51.250.44.113:3000")
                 .withSockJS();
+        // Frames of one session are handed to the inbound executor one at a time
+        registry.setPreserveReceiveOrder(preserveOrder);
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(jwtInterceptor);
+        // Inbound frames block on JPA and, for CONNECT, on the auth service
+        registration.executor(ChannelExecutors.fromEnvironment(environment, "inbound", 4 * processors()))
+                .interceptors(jwtInterceptor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.executor(ChannelExecutors.fromEnvironment(environment, "outbound", 2 * processors()))
+                .interceptors(outboundInterceptor, payloadEncodingInterceptor, fanoutFrameEncoder);
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // Only for frames that declare application/cbor; everything else keeps the JSON default
+        MappingJackson2MessageConverter cbor = new MappingJackson2MessageConverter(PayloadEncodings.CBOR);
+        cbor.setObjectMapper(new ObjectMapper(new CBORFactory()).findAndRegisterModules());
+        cbor.setStrictContentTypeMatch(true);
+        messageConverters.add(cbor);
+        return true;
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Per-session queues and overflow policies live in SlowConsumerSession; Spring's own
+        // send buffer only sees writes that return immediately
+        registration.addDecoratorFactory(slowConsumerDecoratorFactory);
+    }
+
+    private static int processors() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private static class NativeTransportInterceptor implements HandshakeInterceptor {
+
+        @Override
+        public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Map<String, Object> attributes) {
+            attributes.put(PayloadEncodings.NATIVE_TRANSPORT_ATTRIBUTE, true);
+            return true;
+        }
+
+        @Override
+        public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Exception exception) {
+        }
     }
-}
\ No newline at end of file
+}
@@ -4,8 +4,12 @@ import com.soika.chat.model.ChatRole;
 import com.soika.chat.model.dto.ChatDto;
 import com.soika.chat.model.dto.ChatMessageDto;
 import com.soika.chat.model.dto.PersonalChatDto;
+import com.soika.chat.model.dto.ReadCursorDto;
+import com.soika.chat.model.dto.ResumeDto;
 import com.soika.chat.model.dto.UserDto;
 import com.soika.chat.service.ChatService;
+import com.soika.chat.service.ReadCursorService;
+import com.soika.chat.service.ResumeService;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +27,8 @@ public class ChatController {
 
     private static final Logger log = LoggerFactory.getLogger(ChatController.class);
     private final ChatService chatService;
+    private final ReadCursorService readCursorService;
+    private final ResumeService resumeService;
 
     @PostMapping
     public ResponseEntity<ChatDto> createChat(@RequestBody ChatDto chatDto, Authentication authentication) {
@@ -58,6 +64,9 @@ public class ChatController {
     @GetMapping("/{chatId}/messages")
     public ResponseEntity<List<ChatMessageDto>> getChatMessages(
             @PathVariable Long chatId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "" + ChatService.DEFAULT_PAGE_SIZE) int limit,
             Authentication authentication
     ) {
         Long userId = Long.parseLong(authentication.getName());
@@ -65,11 +74,28 @@ public class ChatController {
         if (!chatService.isUserInChat(userId, chatId)) {
             return ResponseEntity.status(403).build();
         }
+        if (before != null && after != null) {
+            return ResponseEntity.badRequest().build();
+        }
 
-        List<ChatMessageDto> messages = chatService.getChatHistory(chatId);
+        List<ChatMessageDto> messages = chatService.getChatHistory(chatId, before, after, limit);
         return ResponseEntity.ok(messages);
     }
 
+    @GetMapping("/{chatId}/resume")
+    public ResponseEntity<ResumeDto> resume(
+            @PathVariable Long chatId,
+            @RequestParam long after,
+            Authentication authentication
+    ) {
+        Long userId = Long.parseLong(authentication.getName());
+        if (!chatService.isUserInChat(userId, chatId)) {
+            return ResponseEntity.status(403).build();
+        }
+
+        return ResponseEntity.ok(resumeService.resume(chatId, after));
+    }
+
     @PostMapping("/{chatId}/messages")
     public ResponseEntity<ChatMessageDto> sendMessage(
             @PathVariable Long chatId,
@@ -83,12 +109,25 @@ public class ChatController {
 
         ChatMessageDto sentMessage = chatService.sendMessage(
                 chatId,
-                authentication.getName(),
+                userId,
                 messageDto.getContent()
         );
         return ResponseEntity.ok(sentMessage);
     }
 
+    @GetMapping("/{chatId}/read-cursors")
+    public ResponseEntity<List<ReadCursorDto>> getReadCursors(
+            @PathVariable Long chatId,
+            Authentication authentication
+    ) {
+        Long userId = Long.parseLong(authentication.getName());
+        if (!chatService.isUserInChat(userId, chatId)) {
+            return ResponseEntity.status(403).build();
+        }
+
+        return ResponseEntity.ok(readCursorService.getReadCursors(chatId));
+    }
+
     @GetMapping("/{chatId}/members")
     public ResponseEntity<List<UserDto>> getChatMembers(
             @PathVariable Long chatId,
@@ -1,8 +1,13 @@
 package com.soika.chat.controller;
 
+import com.soika.chat.config.ws_security.SessionRecord;
 import com.soika.chat.config.ws_security.WebSocketAuthContext;
 import com.soika.chat.model.dto.ChatMessageDto;
+import com.soika.chat.model.dto.ReadCursorDto;
+import com.soika.chat.model.dto.TypingDto;
 import com.soika.chat.service.MessageService;
+import com.soika.chat.service.PresenceService;
+import com.soika.chat.service.ReadCursorService;
 import com.soika.chat.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -10,22 +15,24 @@ import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
-import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
 import org.springframework.messaging.simp.annotation.SendToUser;
 
+import java.util.Optional;
+
 @Controller
 @Slf4j
 @RequiredArgsConstructor
 public class WebSocketController {
 
-    private final SimpMessagingTemplate messagingTemplate;
     private final MessageService messageService;
     private final WebSocketAuthContext authContext;
     private final UserService userService;
+    // absent when chat.presence.enabled is false; typing events are then ignored
+    private final Optional<PresenceService> presenceService;
+    private final ReadCursorService readCursorService;
 
     @MessageMapping("/chat/{chatId}/sendMessage")
     public void sendMessage(
@@ -34,9 +41,9 @@ public class WebSocketController {
             SimpMessageHeaderAccessor headerAccessor) {
 
         String sessionId = headerAccessor.getSessionId();
-        Authentication auth = authContext.get(sessionId);
+        SessionRecord session = authContext.get(sessionId);
 
-        if (auth == null) {
+        if (session == null) {
             throw new AuthenticationCredentialsNotFoundException("Not authenticated");
         }
 
@@ -47,15 +54,12 @@ public class WebSocketController {
 
         try {
             log.info("Processing message in MessageService");
-            ChatMessageDto response = messageService.sendMessage(
+            // Broadcast happens after commit on the broadcaster's executor
+            messageService.sendMessage(
                 chatId,
                 messageDto.getContent(),
-                authContext.getUserId(sessionId),
-                auth.getName()
+                session.getUserId()
             );
-            
-            log.info("Sending response to /topic/chat/{}", chatId);
-            messagingTemplate.convertAndSend("/topic/chat/" + chatId, response);
             log.info("Message sent successfully");
         } catch (Exception e) {
             log.error("Error sending message: {}", e.getMessage(), e);
@@ -63,6 +67,38 @@ public class WebSocketController {
         }
     }
 
+    // Never reaches MessageService or the database; an empty body means the user is typing
+    @MessageMapping("/chat/{chatId}/typing")
+    public void typing(
+            @DestinationVariable Long chatId,
+            @Payload(required = false) TypingDto typingDto,
+            SimpMessageHeaderAccessor headerAccessor) {
+
+        SessionRecord session = authContext.get(headerAccessor.getSessionId());
+        if (session == null) {
+            throw new AuthenticationCredentialsNotFoundException("Not authenticated");
+        }
+        boolean typing = typingDto == null || typingDto.isTyping();
+        presenceService.ifPresent(presence -> presence.typing(chatId, session.getUserId(), typing));
+    }
+
+    // Coalesced in memory and written in batches, so it is fine to send on every scroll
+    @MessageMapping("/chat/{chatId}/read")
+    public void markRead(
+            @DestinationVariable Long chatId,
+            @Payload ReadCursorDto cursorDto,
+            SimpMessageHeaderAccessor headerAccessor) {
+
+        SessionRecord session = authContext.get(headerAccessor.getSessionId());
+        if (session == null) {
+            throw new AuthenticationCredentialsNotFoundException("Not authenticated");
+        }
+        if (cursorDto.getLastReadMessageId() == null) {
+            throw new IllegalArgumentException("lastReadMessageId is required");
+        }
+        readCursorService.markRead(chatId, session.getUserId(), cursorDto.getLastReadMessageId());
+    }
+
     @MessageExceptionHandler
     @SendToUser("/queue/errors")
     public String handleException(Throwable exception) {
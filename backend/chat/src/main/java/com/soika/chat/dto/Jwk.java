@@ -0,0 +1,13 @@
+package com.soika.chat.dto;
+
+import lombok.Data;
+
+@Data
+public class Jwk {
+    private String kty;
+    private String kid;
+    private String use;
+    private String alg;
+    private String n;
+    private String e;
+}
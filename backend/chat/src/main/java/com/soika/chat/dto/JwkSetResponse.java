@@ -0,0 +1,10 @@
+package com.soika.chat.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class JwkSetResponse {
+    private List<Jwk> keys;
+}
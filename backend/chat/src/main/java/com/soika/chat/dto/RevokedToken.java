@@ -0,0 +1,10 @@
+package com.soika.chat.dto;
+
+import lombok.Data;
+
+@Data
+public class RevokedToken {
+    private Long id;
+    private String jti;
+    private Long expiresAt;
+}
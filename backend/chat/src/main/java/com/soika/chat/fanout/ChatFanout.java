@@ -0,0 +1,18 @@
+package com.soika.chat.fanout;
+
+import com.soika.chat.model.dto.ChatMessageDto;
+
+public interface ChatFanout {
+
+    void publish(ChatMessageDto message);
+
+    void listen(Long chatId);
+
+    void unlisten(Long chatId);
+
+    /**
+     * -1 unless every message of the chat committed on any instance now reaches this one;
+     * otherwise a value that changes whenever that stops and starts again.
+     */
+    long listenEpoch(Long chatId);
+}
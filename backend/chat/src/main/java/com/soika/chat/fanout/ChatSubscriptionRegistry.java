@@ -0,0 +1,49 @@
+package com.soika.chat.fanout;
+
+import com.soika.chat.config.ws_security.ChatSubscriptionTracker;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the fan-out listening on a chat while this instance has subscribers to {@code /topic/chat/{id}}.
+ */
+@Component
+public class ChatSubscriptionRegistry implements ChatSubscriptionTracker.Listener {
+
+    private static final String CHAT_TOPIC_PREFIX = "/topic/chat/";
+
+    private final ChatFanout chatFanout;
+    private final ChatSubscriptionTracker subscriptions;
+
+    public ChatSubscriptionRegistry(ChatFanout chatFanout, ChatSubscriptionTracker subscriptions) {
+        this.chatFanout = chatFanout;
+        this.subscriptions = subscriptions;
+        subscriptions.register("", this);
+    }
+
+    public boolean hasSubscribers(Long chatId) {
+        return subscriptions.hasSubscribers(chatId, "");
+    }
+
+    @Override
+    public void subscribed(Long chatId, boolean first) {
+        if (first) {
+            chatFanout.listen(chatId);
+        }
+    }
+
+    @Override
+    public void lastUnsubscribed(Long chatId) {
+        chatFanout.unlisten(chatId);
+    }
+
+    public static Long chatId(String destination) {
+        if (destination == null || !destination.startsWith(CHAT_TOPIC_PREFIX)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(destination.substring(CHAT_TOPIC_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
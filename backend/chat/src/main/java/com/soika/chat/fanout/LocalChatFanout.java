@@ -0,0 +1,24 @@
+package com.soika.chat.fanout;
+
+import com.soika.chat.model.dto.ChatMessageDto;
+
+public class LocalChatFanout implements ChatFanout {
+
+    @Override
+    public void publish(ChatMessageDto message) {
+    }
+
+    @Override
+    public void listen(Long chatId) {
+    }
+
+    @Override
+    public void unlisten(Long chatId) {
+    }
+
+    // A single instance commits, and so sees, every message
+    @Override
+    public long listenEpoch(Long chatId) {
+        return 0;
+    }
+}
@@ -0,0 +1,205 @@
+package com.soika.chat.fanout;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.soika.chat.model.dto.ChatMessageDto;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Relays chat messages between instances over Postgres LISTEN/NOTIFY, one channel per chat.
+ * A node LISTENs on a chat channel only while it has local subscribers, so Postgres
+ * delivers each notification only to the nodes that need it.
+ */
+@Slf4j
+public class PostgresChatFanout implements ChatFanout, AutoCloseable {
+
+    // NOTIFY rejects payloads of 8000 bytes or more; larger messages are sent by id
+    static final int MAX_PAYLOAD_BYTES = 7900;
+    private static final String CHANNEL_PREFIX = "chat_";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Callable<Connection> listenerConnectionFactory;
+    private final ObjectMapper objectMapper;
+    private final Consumer<ChatMessageDto> localDelivery;
+    private final LongFunction<ChatMessageDto> messageLoader;
+    private final int pollMillis;
+    private final long reconnectDelayMillis;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Set<Long> wanted = ConcurrentHashMap.newKeySet();
+    // Chat id to the LISTEN that made it active; a reconnect or re-LISTEN gets a new one
+    private final Map<Long, Long> active = new ConcurrentHashMap<>();
+    private final AtomicLong listens = new AtomicLong();
+    private final Queue<Long> pending = new ConcurrentLinkedQueue<>();
+    private final Thread listenerThread;
+    private volatile boolean running;
+
+    public PostgresChatFanout(
+            JdbcTemplate jdbcTemplate,
+            Callable<Connection> listenerConnectionFactory,
+            ObjectMapper objectMapper,
+            Consumer<ChatMessageDto> localDelivery,
+            LongFunction<ChatMessageDto> messageLoader,
+            Duration pollInterval,
+            Duration reconnectDelay
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.listenerConnectionFactory = listenerConnectionFactory;
+        this.objectMapper = objectMapper;
+        this.localDelivery = localDelivery;
+        this.messageLoader = messageLoader;
+        this.pollMillis = (int) pollInterval.toMillis();
+        this.reconnectDelayMillis = reconnectDelay.toMillis();
+        this.listenerThread = new Thread(this::listenLoop, "chat-fanout-listener");
+        this.listenerThread.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        listenerThread.start();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        listenerThread.interrupt();
+    }
+
+    @Override
+    public void publish(ChatMessageDto message) {
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, channel(message.getChatId()), encode(message));
+    }
+
+    @Override
+    public void listen(Long chatId) {
+        if (wanted.add(chatId)) {
+            pending.add(chatId);
+        }
+    }
+
+    @Override
+    public void unlisten(Long chatId) {
+        if (wanted.remove(chatId)) {
+            pending.add(chatId);
+        }
+    }
+
+    public boolean isListening(Long chatId) {
+        return active.containsKey(chatId);
+    }
+
+    @Override
+    public long listenEpoch(Long chatId) {
+        return active.getOrDefault(chatId, -1L);
+    }
+
+    private String encode(ChatMessageDto message) {
+        ObjectNode envelope = objectMapper.createObjectNode();
+        envelope.put("o", nodeId);
+        envelope.set("p", objectMapper.valueToTree(message));
+        String payload = envelope.toString();
+        if (payload.getBytes(StandardCharsets.UTF_8).length <= MAX_PAYLOAD_BYTES) {
+            return payload;
+        }
+
+        envelope.remove("p");
+        envelope.put("m", message.getId());
+        return envelope.toString();
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = listenerConnectionFactory.call()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                active.clear();
+                pending.clear();
+                for (Long chatId : wanted) {
+                    pending.add(chatId);
+                }
+
+                while (running) {
+                    applyPending(connection);
+                    PGNotification[] notifications = pgConnection.getNotifications(pollMillis);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            handle(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Chat fan-out listener failed, reconnecting in {} ms: {}", reconnectDelayMillis, e.getMessage());
+                active.clear();
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    private void applyPending(Connection connection) throws SQLException {
+        Long chatId;
+        while ((chatId = pending.poll()) != null) {
+            try (Statement statement = connection.createStatement()) {
+                if (wanted.contains(chatId)) {
+                    statement.execute("LISTEN " + channel(chatId));
+                    active.computeIfAbsent(chatId, id -> listens.incrementAndGet());
+                } else {
+                    statement.execute("UNLISTEN " + channel(chatId));
+                    active.remove(chatId);
+                }
+            }
+        }
+    }
+
+    private void handle(String payload) {
+        try {
+            JsonNode envelope = objectMapper.readTree(payload);
+            if (nodeId.equals(envelope.path("o").asText())) {
+                return;
+            }
+
+            ChatMessageDto message = envelope.has("p")
+                    ? objectMapper.treeToValue(envelope.get("p"), ChatMessageDto.class)
+                    : messageLoader.apply(envelope.path("m").asLong());
+            if (message != null) {
+                localDelivery.accept(message);
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Dropping fan-out notification: {}", e.getMessage());
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(reconnectDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String channel(Long chatId) {
+        return CHANNEL_PREFIX + chatId;
+    }
+}
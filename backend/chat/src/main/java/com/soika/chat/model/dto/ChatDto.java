@@ -11,4 +11,5 @@ public class ChatDto {
     @JsonProperty("personal")
     private boolean isPersonal;
     private Long interlocutorId;
+    private Integer unreadCount;
 } 
\ No newline at end of file
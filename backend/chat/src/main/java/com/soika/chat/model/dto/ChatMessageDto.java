@@ -12,6 +12,7 @@ public class ChatMessageDto {
     private String content;
     private LocalDateTime timestamp;
     private String email;
+    private Long senderId;
 
     public static ChatMessageDto fromEntity(ChatMessage entity) {
         ChatMessageDto dto = new ChatMessageDto();
@@ -20,6 +21,10 @@ public class ChatMessageDto {
         dto.setSender(entity.getSender());
         dto.setContent(entity.getContent());
         dto.setTimestamp(entity.getTimestamp());
+        if (entity.getUser() != null) {
+            dto.setEmail(entity.getUser().getEmail());
+            dto.setSenderId(entity.getUser().getId());
+        }
         return dto;
     }
 } 
\ No newline at end of file
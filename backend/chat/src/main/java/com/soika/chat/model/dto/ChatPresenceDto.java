@@ -0,0 +1,23 @@
+package com.soika.chat.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Changes since the previous update of the chat's presence topic. A snapshot lists every online
+ * member and everyone typing, and replaces whatever the client had.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatPresenceDto {
+    private Long chatId;
+    private boolean snapshot;
+    private List<Long> online;
+    private List<Long> offline;
+    private List<Long> typing;
+    private List<Long> stoppedTyping;
+}
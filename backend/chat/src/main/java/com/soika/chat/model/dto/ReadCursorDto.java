@@ -0,0 +1,13 @@
+package com.soika.chat.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReadCursorDto {
+    private Long userId;
+    private Long lastReadMessageId;
+}
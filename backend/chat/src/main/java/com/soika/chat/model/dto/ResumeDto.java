@@ -0,0 +1,28 @@
+package com.soika.chat.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Messages of a chat after the last one the client has seen, in id order, led by a few it may
+ * already have. A reset carries no messages: the gap was too large to replay and the client
+ * reloads the history instead.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumeDto {
+    private boolean reset;
+    private List<ChatMessageDto> messages;
+
+    public static ResumeDto replay(List<ChatMessageDto> messages) {
+        return new ResumeDto(false, messages);
+    }
+
+    public static ResumeDto reset() {
+        return new ResumeDto(true, List.of());
+    }
+}
@@ -0,0 +1,8 @@
+package com.soika.chat.model.dto;
+
+import lombok.Data;
+
+@Data
+public class TypingDto {
+    private boolean typing = true;
+}
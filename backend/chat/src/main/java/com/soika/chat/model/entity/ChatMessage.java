@@ -17,8 +17,12 @@ import java.util.Objects;
 @Entity
 @Table(name = "chat_messages")
 public class ChatMessage {
+    // Step 1, so ids are drawn in the order messages are sent whichever instance takes them, though
+    // they may still commit out of that order; the group-commit writer draws a batch's ids in one
+    // query through ChatMessageBatchRepository
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_messages_id_seq")
+    @SequenceGenerator(name = "chat_messages_id_seq", sequenceName = "chat_messages_id_seq", allocationSize = 1)
     private Long id;
 
     @ManyToOne
@@ -0,0 +1,43 @@
+package com.soika.chat.repository;
+
+import com.soika.chat.model.entity.ChatMessage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Inserts of many chat messages at once with ids assigned up front. Through JPA, a preset id makes
+ * the insert a merge, which reads every row first.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ChatMessageBatchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Draws {@code count} ids from the message sequence in one round-trip, in ascending order.
+     */
+    public List<Long> reserveIds(int count) {
+        return jdbcTemplate.queryForList(
+                "SELECT nextval('chat_messages_id_seq') FROM generate_series(1, ?) ORDER BY 1", Long.class, count);
+    }
+
+    /**
+     * Inserts messages whose ids are already set, as one JDBC batch.
+     */
+    public void insertAll(List<ChatMessage> messages) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO chat_messages (id, chat_id, sender, user_id, content, timestamp) VALUES (?, ?, ?, ?, ?, ?)",
+                messages, messages.size(), (statement, message) -> {
+                    statement.setLong(1, message.getId());
+                    statement.setLong(2, message.getChat().getId());
+                    statement.setString(3, message.getSender());
+                    statement.setLong(4, message.getUser().getId());
+                    statement.setString(5, message.getContent());
+                    statement.setObject(6, message.getTimestamp());
+                });
+    }
+}
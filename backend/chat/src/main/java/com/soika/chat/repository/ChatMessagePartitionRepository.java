@@ -0,0 +1,25 @@
+package com.soika.chat.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Range partitions of {@code chat_messages} by id, created by the database function from the
+ * migrations so that every instance and every deploy computes them the same way.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ChatMessagePartitionRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates the partitions missing up to {@code ahead} past the highest id in use and returns
+     * how many it created.
+     */
+    public int createPartitions(int ahead) {
+        Integer created = jdbcTemplate.queryForObject("SELECT chat_messages_create_partitions(?)", Integer.class, ahead);
+        return created != null ? created : 0;
+    }
+}
@@ -1,12 +1,29 @@
 package com.soika.chat.repository;
 
 import com.soika.chat.model.entity.ChatMessage;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
-    List<ChatMessage> findTop100ByChatIdOrderByTimestampAsc(Long chatId);
-}
\ No newline at end of file
+    // Seeks on (chat_id, id), so a page deep into a long chat costs what the newest one does;
+    // sender and chat come in the same query
+    @EntityGraph(attributePaths = {"chat", "user"})
+    List<ChatMessage> findByChatIdOrderByIdDesc(Long chatId, Limit limit);
+
+    @EntityGraph(attributePaths = {"chat", "user"})
+    List<ChatMessage> findByChatIdAndIdGreaterThanOrderByIdAsc(Long chatId, Long id, Limit limit);
+
+    @EntityGraph(attributePaths = {"chat", "user"})
+    List<ChatMessage> findByChatIdAndIdLessThanOrderByIdDesc(Long chatId, Long id, Limit limit);
+
+    // One backward step on (chat_id, id) per partition
+    @Query("select max(m.id) from ChatMessage m where m.chat.id = :chatId")
+    Long findLastMessageId(@Param("chatId") Long chatId);
+}
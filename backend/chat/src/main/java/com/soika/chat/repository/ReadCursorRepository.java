@@ -0,0 +1,40 @@
+package com.soika.chat.repository;
+
+import com.soika.chat.model.dto.ReadCursorDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Plain JDBC over {@code chat_read_cursors}: the upsert only ever moves a cursor forward,
+ * so batches from several instances can be applied in any order.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReadCursorRepository {
+
+    private static final String ADVANCE = """
+            INSERT INTO chat_read_cursors (chat_id, user_id, last_read_message_id) VALUES (?, ?, ?)
+            ON CONFLICT (chat_id, user_id) DO UPDATE
+            SET last_read_message_id = EXCLUDED.last_read_message_id
+            WHERE chat_read_cursors.last_read_message_id < EXCLUDED.last_read_message_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Rows are {chat id, user id, last read message id}; one batch, one round-trip.
+     */
+    public void advance(List<Object[]> cursors) {
+        jdbcTemplate.batchUpdate(ADVANCE, cursors);
+    }
+
+    public List<ReadCursorDto> findByChatId(Long chatId) {
+        return jdbcTemplate.query(
+                "SELECT user_id, last_read_message_id FROM chat_read_cursors WHERE chat_id = ?",
+                (rs, rowNum) -> new ReadCursorDto(rs.getLong(1), rs.getLong(2)),
+                chatId);
+    }
+}
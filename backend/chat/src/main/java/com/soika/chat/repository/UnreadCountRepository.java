@@ -0,0 +1,54 @@
+package com.soika.chat.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.util.List;
+
+/**
+ * Counts a member's unread messages from the stored read cursor. Each count is a range scan on
+ * {@code (chat_id, id)} that stops after {@code limit} rows, so it costs the same for a chat
+ * of any size.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UnreadCountRepository {
+
+    private static final String COUNT_UNREAD = """
+            SELECT c.chat_id, r.cursor,
+                   (SELECT max(m.id) FROM chat_messages m WHERE m.chat_id = c.chat_id) AS last_message_id,
+                   (SELECT count(*) FROM (
+                        SELECT 1 FROM chat_messages m
+                        WHERE m.chat_id = c.chat_id AND m.id > r.cursor AND m.user_id <> ?
+                        LIMIT ?) unread) AS unread
+            FROM unnest(?, ?) AS c(chat_id, cursor)
+            LEFT JOIN chat_read_cursors rc ON rc.chat_id = c.chat_id AND rc.user_id = ?
+            CROSS JOIN LATERAL (SELECT GREATEST(c.cursor, COALESCE(rc.last_read_message_id, 0)) AS cursor) r
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * {@code cursors} are the caller's known cursors, 0 if none; the stored one wins if it is
+     * further. Counts stop at {@code limit}.
+     */
+    public List<UnreadCount> countUnread(Long userId, Long[] chatIds, Long[] cursors, int limit) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(COUNT_UNREAD);
+            Array chatIdArray = connection.createArrayOf("bigint", chatIds);
+            Array cursorArray = connection.createArrayOf("bigint", cursors);
+            statement.setLong(1, userId);
+            statement.setInt(2, limit);
+            statement.setArray(3, chatIdArray);
+            statement.setArray(4, cursorArray);
+            statement.setLong(5, userId);
+            return statement;
+        }, (rs, rowNum) -> new UnreadCount(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getInt(4)));
+    }
+
+    public record UnreadCount(long chatId, long cursor, long lastMessageId, int unread) {
+    }
+}
@@ -4,14 +4,17 @@ import com.soika.chat.model.ChatRole;
 import com.soika.chat.model.entity.Chat;
 import com.soika.chat.model.entity.User;
 import com.soika.chat.model.entity.UserChat;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserChatRepository extends JpaRepository<UserChat, Long> {
@@ -39,4 +42,22 @@ public interface UserChatRepository extends JpaRepository<UserChat, Long> {
             @Param("userId2") Long userId2
     );
 
+    long countByChatId(Long chatId);
+
+    @Query("SELECT uc.role FROM UserChat uc WHERE uc.chat.id = :chatId AND uc.user.id = :userId")
+    Optional<ChatRole> findRole(@Param("chatId") Long chatId, @Param("userId") Long userId);
+
+    @Query("SELECT uc.chat.id AS chatId, uc.user.id AS userId, uc.role AS role FROM UserChat uc WHERE uc.chat.id = :chatId")
+    List<MembershipView> findMemberships(@Param("chatId") Long chatId);
+
+    @Query("SELECT uc.chat.id AS chatId, uc.user.id AS userId, uc.role AS role FROM UserChat uc ORDER BY uc.chat.id")
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    Stream<MembershipView> streamAllMemberships();
+
+    interface MembershipView {
+        Long getChatId();
+        Long getUserId();
+        ChatRole getRole();
+    }
+
 }
\ No newline at end of file
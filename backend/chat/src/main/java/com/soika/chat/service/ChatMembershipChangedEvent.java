@@ -0,0 +1,7 @@
+package com.soika.chat.service;
+
+/**
+ * Published after commit when a membership changes; {@code userId} is null when the whole chat changed.
+ */
+public record ChatMembershipChangedEvent(Long chatId, Long userId) {
+}
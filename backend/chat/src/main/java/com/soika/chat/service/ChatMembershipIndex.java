@@ -0,0 +1,253 @@
+package com.soika.chat.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.soika.chat.model.ChatRole;
+import com.soika.chat.repository.UserChatRepository;
+import com.soika.chat.repository.UserChatRepository.MembershipView;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Chat id to sorted member ids and roles, so authorization checks do not hit Postgres.
+ * Membership changes made through {@link ChatService} are applied after commit;
+ * the periodic refresh picks up changes made by other instances.
+ * Chats larger than {@code chat.membership.max-chat-size} are not kept in memory
+ * and are checked with a single indexed query instead.
+ */
+@Component
+@Slf4j
+public class ChatMembershipIndex {
+
+    private static final ChatRole[] ROLES = ChatRole.values();
+
+    private final UserChatRepository userChatRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate readOnlyTransaction;
+    private final LoadingCache<Long, Members> cache;
+    private final int maxChatSize;
+    private final long maximumWeight;
+    private final boolean warmOnStartup;
+
+    public ChatMembershipIndex(
+            UserChatRepository userChatRepository,
+            ApplicationEventPublisher eventPublisher,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${chat.membership.maximum-members:2000000}") long maximumMembers,
+            @Value("${chat.membership.max-chat-size:50000}") int maxChatSize,
+            @Value("${chat.membership.refresh-interval:30s}") Duration refreshInterval,
+            @Value("${chat.membership.warm-on-startup:true}") boolean warmOnStartup
+    ) {
+        this.userChatRepository = userChatRepository;
+        this.eventPublisher = eventPublisher;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxChatSize = maxChatSize;
+        this.maximumWeight = maximumMembers;
+        this.warmOnStartup = warmOnStartup;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumMembers)
+                .weigher((Long chatId, Members members) -> members.weight())
+                .refreshAfterWrite(refreshInterval)
+                .recordStats()
+                .build(this::load);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "chat.membership");
+    }
+
+    public boolean isMember(Long chatId, Long userId) {
+        return getRole(chatId, userId) != null;
+    }
+
+    public ChatRole getRole(Long chatId, Long userId) {
+        if (chatId == null || userId == null) {
+            return null;
+        }
+        Members members = cache.get(chatId);
+        if (members.tooLarge()) {
+            return userChatRepository.findRole(chatId, userId).orElse(null);
+        }
+        return members.role(userId);
+    }
+
+    /**
+     * Sorted member ids, or null for chats above {@code chat.membership.max-chat-size}.
+     */
+    public long[] memberIds(Long chatId) {
+        Members members = cache.get(chatId);
+        return members.tooLarge() ? null : members.userIds().clone();
+    }
+
+    public void onJoined(Long chatId, Long userId, ChatRole role) {
+        afterCommit(() -> {
+            cache.asMap().computeIfPresent(chatId, (id, members) -> members.with(userId, role));
+            eventPublisher.publishEvent(new ChatMembershipChangedEvent(chatId, userId));
+        });
+    }
+
+    public void onRoleChanged(Long chatId, Long userId, ChatRole role) {
+        onJoined(chatId, userId, role);
+    }
+
+    public void onLeft(Long chatId, Long userId) {
+        afterCommit(() -> {
+            cache.asMap().computeIfPresent(chatId, (id, members) -> members.without(userId));
+            eventPublisher.publishEvent(new ChatMembershipChangedEvent(chatId, userId));
+        });
+    }
+
+    public void invalidate(Long chatId) {
+        afterCommit(() -> {
+            cache.invalidate(chatId);
+            eventPublisher.publishEvent(new ChatMembershipChangedEvent(chatId, null));
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        if (!warmOnStartup) {
+            return;
+        }
+        long started = System.nanoTime();
+        int chats = readOnlyTransaction.execute(status -> {
+            try (Stream<MembershipView> rows = userChatRepository.streamAllMemberships()) {
+                return warm(rows);
+            }
+        });
+        log.info("Warmed chat membership index with {} chats in {} ms",
+                chats, Duration.ofNanos(System.nanoTime() - started).toMillis());
+    }
+
+    private int warm(Stream<MembershipView> rows) {
+        List<MembershipView> chat = new ArrayList<>();
+        long loaded = 0;
+        int chats = 0;
+        for (MembershipView row : (Iterable<MembershipView>) rows::iterator) {
+            if (!chat.isEmpty() && !chat.get(0).getChatId().equals(row.getChatId())) {
+                loaded += put(chat);
+                chats++;
+                chat.clear();
+                if (loaded >= maximumWeight) {
+                    return chats;
+                }
+            }
+            chat.add(row);
+        }
+        if (!chat.isEmpty()) {
+            put(chat);
+            chats++;
+        }
+        return chats;
+    }
+
+    private int put(List<MembershipView> rows) {
+        Members members = rows.size() > maxChatSize ? Members.TOO_LARGE : Members.of(rows);
+        cache.asMap().putIfAbsent(rows.get(0).getChatId(), members);
+        return members.weight();
+    }
+
+    private Members load(Long chatId) {
+        if (userChatRepository.countByChatId(chatId) > maxChatSize) {
+            return Members.TOO_LARGE;
+        }
+        return Members.of(userChatRepository.findMemberships(chatId));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // Immutable; updates copy the arrays, which is cheap next to the queries they replace
+    private record Members(long[] userIds, byte[] roles) {
+        static final Members TOO_LARGE = new Members(null, null);
+
+        static Members of(List<MembershipView> rows) {
+            long[] userIds = new long[rows.size()];
+            byte[] roles = new byte[rows.size()];
+            List<MembershipView> sorted = new ArrayList<>(rows);
+            sorted.sort((a, b) -> Long.compare(a.getUserId(), b.getUserId()));
+            for (int i = 0; i < sorted.size(); i++) {
+                userIds[i] = sorted.get(i).getUserId();
+                roles[i] = (byte) sorted.get(i).getRole().ordinal();
+            }
+            return new Members(userIds, roles);
+        }
+
+        boolean tooLarge() {
+            return userIds == null;
+        }
+
+        int weight() {
+            return tooLarge() ? 1 : userIds.length + 1;
+        }
+
+        ChatRole role(long userId) {
+            int index = Arrays.binarySearch(userIds, userId);
+            return index >= 0 ? ROLES[roles[index]] : null;
+        }
+
+        Members with(long userId, ChatRole role) {
+            if (tooLarge()) {
+                return this;
+            }
+            int index = Arrays.binarySearch(userIds, userId);
+            if (index >= 0) {
+                byte[] updatedRoles = roles.clone();
+                updatedRoles[index] = (byte) role.ordinal();
+                return new Members(userIds, updatedRoles);
+            }
+            int insertAt = -index - 1;
+            long[] updatedIds = new long[userIds.length + 1];
+            byte[] updatedRoles = new byte[roles.length + 1];
+            System.arraycopy(userIds, 0, updatedIds, 0, insertAt);
+            System.arraycopy(roles, 0, updatedRoles, 0, insertAt);
+            updatedIds[insertAt] = userId;
+            updatedRoles[insertAt] = (byte) role.ordinal();
+            System.arraycopy(userIds, insertAt, updatedIds, insertAt + 1, userIds.length - insertAt);
+            System.arraycopy(roles, insertAt, updatedRoles, insertAt + 1, roles.length - insertAt);
+            return new Members(updatedIds, updatedRoles);
+        }
+
+        Members without(long userId) {
+            if (tooLarge()) {
+                return this;
+            }
+            int index = Arrays.binarySearch(userIds, userId);
+            if (index < 0) {
+                return this;
+            }
+            long[] updatedIds = new long[userIds.length - 1];
+            byte[] updatedRoles = new byte[roles.length - 1];
+            System.arraycopy(userIds, 0, updatedIds, 0, index);
+            System.arraycopy(roles, 0, updatedRoles, 0, index);
+            System.arraycopy(userIds, index + 1, updatedIds, index, userIds.length - index - 1);
+            System.arraycopy(roles, index + 1, updatedRoles, index, roles.length - index - 1);
+            return new Members(updatedIds, updatedRoles);
+        }
+    }
+}
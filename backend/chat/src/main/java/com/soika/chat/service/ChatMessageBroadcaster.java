@@ -0,0 +1,147 @@
+package com.soika.chat.service;
+
+import com.soika.chat.fanout.ChatFanout;
+import com.soika.chat.model.dto.ChatMessageDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Slf4j
+public class ChatMessageBroadcaster implements DisposableBean {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ChatFanout chatFanout;
+    private final UnreadCounterService unreadCounters;
+    private final HotTailCache hotTail;
+    // One single-threaded executor per stripe: a chat always maps to the same stripe, which keeps its messages in order
+    private final ThreadPoolExecutor[] stripes;
+    private final Timer deliveryTimer;
+    private final Counter rejectedCounter;
+
+    public ChatMessageBroadcaster(
+            SimpMessagingTemplate messagingTemplate,
+            ChatFanout chatFanout,
+            UnreadCounterService unreadCounters,
+            HotTailCache hotTail,
+            MeterRegistry meterRegistry,
+            @Value("${chat.broadcast.stripes:4}") int stripeCount,
+            @Value("${chat.broadcast.queue-capacity:10000}") int queueCapacity
+    ) {
+        this.messagingTemplate = messagingTemplate;
+        this.chatFanout = chatFanout;
+        this.unreadCounters = unreadCounters;
+        this.hotTail = hotTail;
+        this.stripes = new ThreadPoolExecutor[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ThreadPoolExecutor(
+                    1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity),
+                    new CustomizableThreadFactory("chat-broadcast-" + i + "-")
+            );
+        }
+
+        Gauge.builder("chat.broadcast.queue.depth", this, ChatMessageBroadcaster::queueDepth)
+                .description("Messages committed but not yet handed to the broker")
+                .register(meterRegistry);
+        this.deliveryTimer = Timer.builder("chat.broadcast.delivery")
+                .description("Time from transaction commit, or receipt from another instance, to hand-off to the broker and fan-out")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("chat.broadcast.rejected")
+                .description("Messages not broadcast because the stripe queue was full")
+                .register(meterRegistry);
+    }
+
+    public static String topic(Long chatId) {
+        return "/topic/chat/" + chatId;
+    }
+
+    public void broadcastAfterCommit(ChatMessageDto message) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            submit(message);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                submit(message);
+            }
+        });
+    }
+
+    /**
+     * Delivers a message another instance relayed to this one's subscribers. It goes through the
+     * chat's stripe like a local one, so the two stay in order, and is not relayed again.
+     */
+    public void broadcastRelayed(ChatMessageDto message) {
+        submit(message, false);
+    }
+
+    private void submit(ChatMessageDto message) {
+        submit(message, true);
+    }
+
+    private void submit(ChatMessageDto message, boolean relay) {
+        long committedAt = System.nanoTime();
+        unreadCounters.onMessage(message);
+        hotTail.onMessage(message);
+        try {
+            stripes[Math.floorMod(message.getChatId().hashCode(), stripes.length)]
+                    .execute(() -> deliver(message, relay, committedAt));
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            log.error("Broadcast queue is full, message {} of chat {} was not broadcast", message.getId(), message.getChatId());
+        }
+    }
+
+    private void deliver(ChatMessageDto message, boolean relay, long committedAt) {
+        try {
+            messagingTemplate.convertAndSend(topic(message.getChatId()), message);
+        } catch (MessagingException e) {
+            log.error("Failed to broadcast message {} of chat {}", message.getId(), message.getChatId(), e);
+        }
+        if (relay) {
+            try {
+                chatFanout.publish(message);
+            } catch (DataAccessException e) {
+                log.error("Failed to relay message {} of chat {} to other instances", message.getId(), message.getChatId(), e);
+            }
+        }
+        deliveryTimer.record(System.nanoTime() - committedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private double queueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor stripe : stripes) {
+            depth += stripe.getQueue().size();
+        }
+        return depth;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
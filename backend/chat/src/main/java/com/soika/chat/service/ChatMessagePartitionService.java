@@ -0,0 +1,49 @@
+package com.soika.chat.service;
+
+import com.soika.chat.repository.ChatMessagePartitionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps {@code ahead} empty partitions of {@code chat_messages} above the ids in use, so an insert
+ * never finds its id out of range. The first check runs at startup; a failed one is retried on the
+ * next, and the partitions ahead cover far more than one interval of messages.
+ */
+@Service
+@Slf4j
+public class ChatMessagePartitionService {
+
+    private final ChatMessagePartitionRepository partitionRepository;
+    private final int ahead;
+    private final Counter created;
+
+    public ChatMessagePartitionService(
+            ChatMessagePartitionRepository partitionRepository,
+            MeterRegistry meterRegistry,
+            @Value("${chat.messages.partitions.ahead:4}") int ahead
+    ) {
+        this.partitionRepository = partitionRepository;
+        this.ahead = ahead;
+        this.created = Counter.builder("chat.messages.partitions.created")
+                .description("Partitions of chat_messages created ahead of the ids in use")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.messages.partitions.check-interval:PT1H}")
+    public void createPartitions() {
+        try {
+            int count = partitionRepository.createPartitions(ahead);
+            if (count > 0) {
+                created.increment(count);
+                log.info("Created {} partitions of chat_messages", count);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to create partitions of chat_messages, retrying on the next check: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.soika.chat.service;
+
+import com.soika.chat.model.dto.ChatMessageDto;
+import com.soika.chat.model.entity.ChatMessage;
+
+public interface ChatMessageWriter {
+
+    /**
+     * Persists the message and schedules its broadcast; returns once the insert is committed.
+     */
+    ChatMessageDto write(ChatMessage message);
+}
@@ -9,22 +9,25 @@ import com.soika.chat.model.entity.Chat;
 import com.soika.chat.model.entity.ChatMessage;
 import com.soika.chat.model.entity.User;
 import com.soika.chat.model.entity.UserChat;
-import com.soika.chat.repository.ChatRepository;
 import com.soika.chat.repository.ChatMessageRepository;
+import com.soika.chat.repository.ChatRepository;
 import com.soika.chat.repository.UserChatRepository;
 import com.soika.chat.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.HttpClientErrorException;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,11 +35,17 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ChatService {
 
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 200;
+
     private final ChatRepository chatRepository;
     private final UserRepository userRepository;
     private final UserChatRepository userChatRepository;
+    private final MessageService messageService;
+    private final ChatMembershipIndex membershipIndex;
     private final ChatMessageRepository chatMessageRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final UnreadCounterService unreadCounterService;
+    private final HotTailCache hotTailCache;
 
     @Transactional
     public void addUserToChat(Long chatId, Long userId) {
@@ -52,6 +61,7 @@ public class ChatService {
 
         UserChat userChat = new UserChat(user, chat, ChatRole.MEMBER);
         userChatRepository.save(userChat);
+        membershipIndex.onJoined(chatId, userId, ChatRole.MEMBER);
     }
 
     @Transactional
@@ -71,6 +81,7 @@ public class ChatService {
         }
 
         userChatRepository.delete(userChat);
+        membershipIndex.onLeft(chatId, selfId);
     }
     @Transactional
     public void deleteUserFromChat(Long chatId, Long userId) {
@@ -88,6 +99,7 @@ public class ChatService {
         }
 
         userChatRepository.delete(userChat);
+        membershipIndex.onLeft(chatId, userId);
     }
 
     @Transactional
@@ -104,6 +116,7 @@ public class ChatService {
         userChat.setRole(ChatRole.ADMIN);
 
         userChatRepository.save(userChat);
+        membershipIndex.onRoleChanged(chatId, userId, ChatRole.ADMIN);
     }
 
     @Transactional
@@ -120,6 +133,7 @@ public class ChatService {
         userChat.setRole(ChatRole.MEMBER);
 
         userChatRepository.save(userChat);
+        membershipIndex.onRoleChanged(chatId, userId, ChatRole.MEMBER);
     }
 
     @Transactional(readOnly = true)
@@ -127,7 +141,7 @@ public class ChatService {
         User user = userRepository.findById(userId).orElseThrow(() -> new EntityNotFoundException("User not found"));
         List<UserChat> userChats = userChatRepository.findByUserId(userId);
 
-        return userChats.stream()
+        List<ChatDto> chats = userChats.stream()
                 .map(userChat -> {
                     Chat chat = userChat.getChat();
                     ChatDto dto = new ChatDto();
@@ -146,28 +160,23 @@ public class ChatService {
                     return dto;
                 })
                 .toList();
+
+        Map<Long, Integer> unreadCounts = unreadCounterService.getUnreadCounts(
+                userId, chats.stream().map(ChatDto::getId).toList());
+        chats.forEach(dto -> dto.setUnreadCount(unreadCounts.getOrDefault(dto.getId(), 0)));
+        return chats;
     }
 
-    @Transactional(readOnly = true)
     public boolean isUserInChat(Long userId, Long chatId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        Chat chat = chatRepository.findById(chatId)
-                .orElseThrow(() -> new EntityNotFoundException("Chat not found"));
-
-        return userChatRepository.existsByUserAndChat(user, chat);
+        return membershipIndex.isMember(chatId, userId);
     }
 
-    @Transactional(readOnly = true)
     public ChatRole getUserRoleInChat(Long userId, Long chatId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        Chat chat = chatRepository.findById(chatId)
-                .orElseThrow(() -> new EntityNotFoundException("Chat not found"));
-
-        return userChatRepository.findByUserAndChat(user, chat)
-                .map(UserChat::getRole)
-                .orElseThrow(() -> new EntityNotFoundException("User is not a member of this chat"));
+        ChatRole role = membershipIndex.getRole(chatId, userId);
+        if (role == null) {
+            throw new EntityNotFoundException("User is not a member of this chat");
+        }
+        return role;
     }
 
     public ChatDto createChat(ChatDto chatDto, Long userId) {
@@ -175,6 +184,7 @@ public class ChatService {
         chat = chatRepository.save(chat);
         User user = userRepository.findById(userId).orElseThrow(() -> new EntityNotFoundException("User not found"));
         userChatRepository.save(new UserChat(user, chat, ChatRole.ADMIN));
+        membershipIndex.invalidate(chat.getId());
         return convertToDto(chat);
     }
 
@@ -209,33 +219,51 @@ public class ChatService {
 
         userChatRepository.save(new UserChat(creator, chat, ChatRole.ADMIN));
         userChatRepository.save(new UserChat(target, chat, ChatRole.ADMIN));
+        membershipIndex.onJoined(chat.getId(), creator.getId(), ChatRole.ADMIN);
+        membershipIndex.onJoined(chat.getId(), target.getId(), ChatRole.ADMIN);
 
         return convertToDto(chat);
     }
 
-    public ChatMessageDto sendMessage(Long chatId, String sender, String content) {
-        Chat chat = chatRepository.findById(chatId)
-                .orElseThrow(() -> new RuntimeException("Chat not found"));
-
-        ChatMessage message = new ChatMessage();
-        message.setChat(chat);
-        message.setSender(sender);
-        message.setContent(content);
-        message = chatMessageRepository.save(message);
-
-        messagingTemplate.convertAndSend("/topic/chat/" + chatId, convertToMessageDto(message));
-
-        return convertToMessageDto(message);
+    public ChatMessageDto sendMessage(Long chatId, Long senderId, String content) {
+        return messageService.sendMessage(chatId, content, senderId);
     }
 
-    public List<ChatMessageDto> getChatHistory(Long chatId) {
-        if (!chatRepository.existsById(chatId)) {
-            throw new RuntimeException("Chat not found");
+    /**
+     * One page of the chat's messages in id order: the newest ones, the ones just before
+     * {@code before} or the ones just after {@code after}, led by the overlap at or below
+     * {@code after} that may have committed late. The hot tail answers when it covers the page,
+     * otherwise one seek on (chat_id, id) does.
+     */
+    public List<ChatMessageDto> getChatHistory(Long chatId, Long before, Long after, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        if (before != null) {
+            List<ChatMessageDto> cached = hotTailCache.before(chatId, before, size);
+            if (cached != null) {
+                return cached;
+            }
+            List<ChatMessageDto> page = toDtos(chatMessageRepository
+                    .findByChatIdAndIdLessThanOrderByIdDesc(chatId, before, Limit.of(size)));
+            Collections.reverse(page);
+            return page;
+        }
+        if (after != null) {
+            List<ChatMessageDto> page = new ArrayList<>(hotTailCache.overlap(chatId, after));
+            List<ChatMessageDto> cached = hotTailCache.after(chatId, after);
+            if (cached != null) {
+                page.addAll(cached.subList(0, Math.min(size, cached.size())));
+            } else {
+                page.addAll(toDtos(chatMessageRepository
+                        .findByChatIdAndIdGreaterThanOrderByIdAsc(chatId, after, Limit.of(size))));
+            }
+            return page;
         }
 
-        return chatMessageRepository.findTop100ByChatIdOrderByTimestampAsc(chatId).stream()
-                .map(this::convertToMessageDto)
-                .collect(Collectors.toList());
+        List<ChatMessageDto> history = hotTailCache.newest(chatId, size);
+        if (history.isEmpty() && !chatRepository.existsById(chatId)) {
+            throw new RuntimeException("Chat not found");
+        }
+        return history;
     }
 
     public List<UserDto> getChatMembers(Long chatId) {
@@ -254,6 +282,12 @@ public class ChatService {
        ).toList();
     }
 
+    private static List<ChatMessageDto> toDtos(List<ChatMessage> messages) {
+        return messages.stream()
+                .map(ChatMessageDto::fromEntity)
+                .collect(Collectors.toList());
+    }
+
     private ChatDto convertToDto(Chat chat) {
         ChatDto dto = new ChatDto();
         dto.setId(chat.getId());
@@ -262,10 +296,4 @@ public class ChatService {
         dto.setPersonal(chat.getIsPersonal());
         return dto;
     }
-
-    private ChatMessageDto convertToMessageDto(ChatMessage message) {
-        ChatMessageDto dto = ChatMessageDto.fromEntity(message);
-        dto.setEmail(message.getUser().getEmail());
-        return dto;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.soika.chat.service;
+
+import com.soika.chat.model.dto.ChatMessageDto;
+import com.soika.chat.model.entity.ChatMessage;
+import com.soika.chat.repository.ChatMessageRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+@Component
+@ConditionalOnProperty(name = "chat.messages.group-commit.enabled", havingValue = "false", matchIfMissing = true)
+@RequiredArgsConstructor
+public class DirectChatMessageWriter implements ChatMessageWriter {
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatMessageBroadcaster broadcaster;
+
+    @Override
+    @Transactional
+    public ChatMessageDto write(ChatMessage message) {
+        ChatMessageDto dto = ChatMessageDto.fromEntity(chatMessageRepository.save(message));
+        broadcaster.broadcastAfterCommit(dto);
+        return dto;
+    }
+}
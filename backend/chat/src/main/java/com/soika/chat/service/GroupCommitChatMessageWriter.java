@@ -0,0 +1,175 @@
+package com.soika.chat.service;
+
+import com.soika.chat.model.dto.ChatMessageDto;
+import com.soika.chat.model.entity.ChatMessage;
+import com.soika.chat.repository.ChatMessageBatchRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Collects messages arriving within a short window and inserts them in one transaction,
+ * so a burst costs one query for its ids, one batched insert and one commit instead of
+ * one of each per message.
+ * A single writer thread flushes batches in arrival order, which keeps per-chat order.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.messages.group-commit.enabled", havingValue = "true")
+@Slf4j
+public class GroupCommitChatMessageWriter implements ChatMessageWriter, DisposableBean {
+
+    private final ChatMessageBatchRepository batchRepository;
+    private final ChatMessageBroadcaster broadcaster;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingMessage> queue;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Duration writeTimeout;
+    private final DistributionSummary batchSizes;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    public GroupCommitChatMessageWriter(
+            ChatMessageBatchRepository batchRepository,
+            ChatMessageBroadcaster broadcaster,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${chat.messages.group-commit.window:2ms}") Duration window,
+            @Value("${chat.messages.group-commit.max-batch-size:50}") int maxBatchSize,
+            @Value("${chat.messages.group-commit.queue-capacity:10000}") int queueCapacity,
+            @Value("${chat.messages.group-commit.write-timeout:5s}") Duration writeTimeout
+    ) {
+        this.batchRepository = batchRepository;
+        this.broadcaster = broadcaster;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.writeTimeout = writeTimeout;
+        this.batchSizes = DistributionSummary.builder("chat.messages.group-commit.batch.size")
+                .description("Messages inserted per group commit")
+                .register(meterRegistry);
+        this.writerThread = new Thread(this::writeLoop, "chat-message-writer");
+        this.writerThread.start();
+    }
+
+    // Bounded, so a writer stalled on a hung connection fails the inbound STOMP or HTTP thread
+    // instead of holding it; the message may still be committed once the writer recovers
+    @Override
+    public ChatMessageDto write(ChatMessage message) {
+        PendingMessage pending = new PendingMessage(message, new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            throw new RejectedExecutionException("Message write queue is full");
+        }
+        try {
+            return pending.future().get(writeTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Message write did not complete within " + writeTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while writing the message");
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingMessage next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (RuntimeException e) {
+                log.error("Unexpected error in message writer", e);
+                batch.forEach(pending -> pending.future().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingMessage> batch) {
+        batchSizes.record(batch.size());
+        try {
+            List<ChatMessageDto> saved = transactionTemplate.execute(status -> {
+                List<ChatMessage> messages = batch.stream().map(PendingMessage::message).toList();
+                List<Long> ids = batchRepository.reserveIds(messages.size());
+                for (int i = 0; i < messages.size(); i++) {
+                    messages.get(i).setId(ids.get(i));
+                }
+                batchRepository.insertAll(messages);
+                List<ChatMessageDto> dtos = new ArrayList<>(batch.size());
+                for (ChatMessage message : messages) {
+                    ChatMessageDto dto = ChatMessageDto.fromEntity(message);
+                    broadcaster.broadcastAfterCommit(dto);
+                    dtos.add(dto);
+                }
+                return dtos;
+            });
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future().complete(saved.get(i));
+            }
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future().completeExceptionally(e);
+                return;
+            }
+            // One bad message must not fail its neighbours: retry them one by one
+            log.warn("Group commit of {} messages failed, retrying individually: {}", batch.size(), e.getMessage());
+            for (PendingMessage pending : batch) {
+                flush(List.of(pending));
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        // Left behind when the writer is stuck or gave up: fail them rather than leave their callers waiting
+        RejectedExecutionException stopped = new RejectedExecutionException("Message writer stopped");
+        PendingMessage pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future().completeExceptionally(stopped);
+        }
+    }
+
+    private record PendingMessage(ChatMessage message, CompletableFuture<ChatMessageDto> future) {
+    }
+}
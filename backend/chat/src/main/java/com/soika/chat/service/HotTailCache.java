@@ -0,0 +1,265 @@
+package com.soika.chat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.soika.chat.fanout.ChatFanout;
+import com.soika.chat.model.dto.ChatMessageDto;
+import com.soika.chat.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The newest {@code messages} of recently read chats, so opening an active chat or resuming
+ * one runs no SQL. A chat's tail is loaded on the first read that misses and then kept up by
+ * every committed message, from this instance after commit or from others through the fan-out.
+ * It is trusted only while the fan-out delivers every message of the chat here, which with
+ * several instances means while the chat has local subscribers; a read after that stopped, even
+ * for a moment, reloads the tail. Whole chats are evicted once the tails together exceed
+ * {@code max-memory}, least recently read first.
+ */
+@Service
+public class HotTailCache {
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatFanout chatFanout;
+    private final int capacity;
+    private final int overlap;
+    private final Cache<Long, ChatTail> chats;
+    private final Counter hits;
+    private final Counter misses;
+
+    public HotTailCache(
+            ChatMessageRepository chatMessageRepository,
+            ChatFanout chatFanout,
+            MeterRegistry meterRegistry,
+            @Value("${chat.history.hot-tail.messages:100}") int capacity,
+            @Value("${chat.history.hot-tail.max-memory:64MB}") DataSize maxMemory,
+            @Value("${chat.history.overlap:20}") int overlap
+    ) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.chatFanout = chatFanout;
+        this.capacity = capacity;
+        this.overlap = overlap;
+        Counter evictions = Counter.builder("chat.history.hot-tail.evictions")
+                .description("Chat tails dropped to stay within max-memory")
+                .register(meterRegistry);
+        this.chats = Caffeine.newBuilder()
+                .maximumWeight(maxMemory.toBytes())
+                .weigher((Long chatId, ChatTail tail) -> tail.weight)
+                .removalListener((Long chatId, ChatTail tail, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        evictions.increment();
+                    }
+                })
+                .build();
+        this.hits = Counter.builder("chat.history.hot-tail.requests")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("chat.history.hot-tail.requests")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("chat.history.hot-tail.chats", chats, Cache::estimatedSize)
+                .description("Chats whose newest messages are held in memory")
+                .register(meterRegistry);
+        Gauge.builder("chat.history.hot-tail.bytes", chats, HotTailCache::weightedSize)
+                .description("Estimated memory held by the cached messages")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The chat's newest {@code limit} messages, oldest first; from memory when the tail is
+     * there and long enough, otherwise with one query that also loads the tail.
+     */
+    public List<ChatMessageDto> newest(Long chatId, int limit) {
+        ChatTail tail = usableTail(chatId);
+        if (tail != null) {
+            List<ChatMessageDto> cached = null;
+            synchronized (tail) {
+                if (tail.ring.isComplete() || tail.ring.size() >= limit) {
+                    cached = tail.ring.newest(limit);
+                }
+            }
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        misses.increment();
+        return load(chatId, limit);
+    }
+
+    /**
+     * Messages of the chat with ids above {@code afterId}, oldest first, or null when the
+     * cached tail cannot tell. Never queries.
+     */
+    public List<ChatMessageDto> after(Long chatId, long afterId) {
+        ChatTail tail = usableTail(chatId);
+        List<ChatMessageDto> cached = null;
+        if (tail != null) {
+            synchronized (tail) {
+                cached = tail.ring.after(afterId);
+            }
+        }
+        (cached != null ? hits : misses).increment();
+        return cached;
+    }
+
+    /**
+     * The last {@code limit} messages of the chat with ids below {@code beforeId}, oldest
+     * first, or null when the cached tail cannot tell. Never queries.
+     */
+    public List<ChatMessageDto> before(Long chatId, long beforeId, int limit) {
+        ChatTail tail = usableTail(chatId);
+        List<ChatMessageDto> cached = null;
+        if (tail != null) {
+            synchronized (tail) {
+                cached = tail.ring.before(beforeId, limit);
+            }
+        }
+        (cached != null ? hits : misses).increment();
+        return cached;
+    }
+
+    /**
+     * The last {@code overlap} messages of the chat with ids up to {@code id}, oldest first. Ids
+     * are drawn before the insert but become visible at commit, so a message below an id a client
+     * has seen can still appear after it; a cursor is read back this far and the client drops the
+     * ids it already has. From the tail when it reaches back that far, otherwise with one query.
+     */
+    public List<ChatMessageDto> overlap(Long chatId, long id) {
+        if (overlap <= 0 || id <= 0) {
+            return List.of();
+        }
+        List<ChatMessageDto> cached = before(chatId, id + 1, overlap);
+        if (cached != null) {
+            return cached;
+        }
+        List<ChatMessageDto> loaded = new ArrayList<>(chatMessageRepository
+                .findByChatIdAndIdLessThanOrderByIdDesc(chatId, id + 1, Limit.of(overlap))
+                .stream()
+                .map(ChatMessageDto::fromEntity)
+                .toList());
+        Collections.reverse(loaded);
+        return loaded;
+    }
+
+    /**
+     * The chat's highest message id, 0 when it has none; from the tail when it is usable,
+     * otherwise with one index lookup.
+     */
+    public long lastMessageId(Long chatId) {
+        ChatTail tail = usableTail(chatId);
+        if (tail != null) {
+            synchronized (tail) {
+                return tail.ring.size() > 0 ? tail.ring.newestId() : 0;
+            }
+        }
+        Long lastId = chatMessageRepository.findLastMessageId(chatId);
+        return lastId != null ? lastId : 0;
+    }
+
+    /**
+     * Called once per committed message, on this or another instance.
+     */
+    public void onMessage(ChatMessageDto message) {
+        if (message.getChatId() == null || message.getId() == null) {
+            return;
+        }
+        // compute rather than get, so the cache re-weighs the tail
+        chats.asMap().computeIfPresent(message.getChatId(), (chatId, tail) -> {
+            synchronized (tail) {
+                tail.ring.add(message);
+                tail.updateWeight();
+            }
+            return tail;
+        });
+    }
+
+    private ChatTail usableTail(Long chatId) {
+        ChatTail tail = chats.getIfPresent(chatId);
+        if (tail == null) {
+            return null;
+        }
+        if (tail.epoch != chatFanout.listenEpoch(chatId)) {
+            // Messages may have been missed since; the next read of the chat loads it afresh
+            chats.asMap().remove(chatId, tail);
+            return null;
+        }
+        synchronized (tail) {
+            return tail.loaded ? tail : null;
+        }
+    }
+
+    private List<ChatMessageDto> load(Long chatId, int limit) {
+        int rows = Math.max(limit, capacity);
+        long epoch = chatFanout.listenEpoch(chatId);
+        // Registered before the query, so a message committed while it runs lands in one or the other
+        ChatTail tail = epoch >= 0 ? new ChatTail(epoch, capacity) : null;
+        if (tail != null) {
+            chats.put(chatId, tail);
+        }
+
+        List<ChatMessageDto> loaded = new ArrayList<>(chatMessageRepository
+                .findByChatIdOrderByIdDesc(chatId, Limit.of(rows))
+                .stream()
+                .map(ChatMessageDto::fromEntity)
+                .toList());
+        Collections.reverse(loaded);
+
+        if (tail != null) {
+            chats.asMap().computeIfPresent(chatId, (id, current) -> {
+                if (current == tail) {
+                    synchronized (tail) {
+                        loaded.forEach(tail.ring::add);
+                        if (loaded.size() == rows) {
+                            tail.ring.markIncomplete();
+                        }
+                        tail.loaded = true;
+                        tail.updateWeight();
+                    }
+                }
+                return current;
+            });
+        }
+        return loaded.subList(Math.max(0, loaded.size() - limit), loaded.size());
+    }
+
+    private static long weightedSize(Cache<Long, ChatTail> chats) {
+        // Caffeine applies writes to its weights asynchronously; settle them so a scrape sees them
+        chats.cleanUp();
+        return chats.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0))
+                .orElse(0L);
+    }
+
+    /**
+     * A chat's ring and the fan-out epoch it was loaded in, guarded by its own monitor.
+     * Messages that arrive before the load completes are kept and merged with it.
+     */
+    private static class ChatTail {
+        final long epoch;
+        final MessageRing ring;
+        boolean loaded;
+        int weight;
+
+        ChatTail(long epoch, int capacity) {
+            this.epoch = epoch;
+            this.ring = new MessageRing(capacity);
+        }
+
+        void updateWeight() {
+            weight = (int) Math.min(Integer.MAX_VALUE, ring.bytes());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.soika.chat.service;
+
+import com.soika.chat.model.dto.ChatMessageDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The newest messages of one chat in id order, at most {@code capacity} of them, in a circular
+ * array: the common append of a new newest message overwrites the oldest without copying.
+ * While {@link #isComplete()} the ring holds every message of the chat; once one has fallen
+ * off, every message from {@link #oldestId()} on. Not thread-safe; {@link HotTailCache}
+ * guards it.
+ */
+final class MessageRing {
+
+    // Object headers, boxed ids, the timestamp and the string headers of one cached message
+    private static final int MESSAGE_OVERHEAD_BYTES = 256;
+
+    private final ChatMessageDto[] messages;
+    private int head;
+    private int size;
+    private boolean complete = true;
+    private long bytes;
+
+    MessageRing(int capacity) {
+        this.messages = new ChatMessageDto[Math.max(1, capacity)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    void markIncomplete() {
+        complete = false;
+    }
+
+    long bytes() {
+        return bytes;
+    }
+
+    long oldestId() {
+        return at(0).getId();
+    }
+
+    long newestId() {
+        return at(size - 1).getId();
+    }
+
+    /**
+     * Inserts the message in id order; a late message older than the whole of a full ring is
+     * dropped, and so is one already there.
+     */
+    void add(ChatMessageDto message) {
+        long id = message.getId();
+        int position = size;
+        while (position > 0 && at(position - 1).getId() > id) {
+            position--;
+        }
+        if (position > 0 && at(position - 1).getId() == id) {
+            return;
+        }
+        if (size == messages.length) {
+            complete = false;
+            if (position == 0) {
+                return;
+            }
+            bytes -= estimateBytes(at(0));
+            messages[head] = null;
+            head = (head + 1) % messages.length;
+            size--;
+            position--;
+        }
+        for (int i = size; i > position; i--) {
+            set(i, at(i - 1));
+        }
+        set(position, message);
+        size++;
+        bytes += estimateBytes(message);
+    }
+
+    /**
+     * The last {@code limit} messages, oldest first.
+     */
+    List<ChatMessageDto> newest(int limit) {
+        int count = Math.min(limit, size);
+        List<ChatMessageDto> result = new ArrayList<>(count);
+        for (int i = size - count; i < size; i++) {
+            result.add(at(i));
+        }
+        return result;
+    }
+
+    /**
+     * Messages with ids above {@code afterId}, oldest first, or null when some of them may
+     * have fallen off.
+     */
+    List<ChatMessageDto> after(long afterId) {
+        if (!complete && afterId < oldestId() - 1) {
+            return null;
+        }
+        int from = size;
+        while (from > 0 && at(from - 1).getId() > afterId) {
+            from--;
+        }
+        List<ChatMessageDto> result = new ArrayList<>(size - from);
+        for (int i = from; i < size; i++) {
+            result.add(at(i));
+        }
+        return result;
+    }
+
+    /**
+     * The last {@code limit} messages with ids below {@code beforeId}, oldest first, or null
+     * when some of them may have fallen off.
+     */
+    List<ChatMessageDto> before(long beforeId, int limit) {
+        int to = size;
+        while (to > 0 && at(to - 1).getId() >= beforeId) {
+            to--;
+        }
+        int from = Math.max(0, to - limit);
+        if (!complete && to - from < limit) {
+            return null;
+        }
+        List<ChatMessageDto> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            result.add(at(i));
+        }
+        return result;
+    }
+
+    private ChatMessageDto at(int index) {
+        return messages[(head + index) % messages.length];
+    }
+
+    private void set(int index, ChatMessageDto message) {
+        messages[(head + index) % messages.length] = message;
+    }
+
+    static long estimateBytes(ChatMessageDto message) {
+        return MESSAGE_OVERHEAD_BYTES + 2L * (length(message.getContent()) + length(message.getSender()) + length(message.getEmail()));
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+}
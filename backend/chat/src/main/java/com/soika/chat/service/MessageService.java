@@ -22,9 +22,9 @@ public class MessageService {
     private final ChatRepository chatRepository;
     private final UserRepository userRepository;
     private final UserService userService;
+    private final ChatMessageWriter chatMessageWriter;
 
-    @Transactional
-    public ChatMessageDto sendMessage(Long chatId, String content, Long senderId, String email) {
+    public ChatMessageDto sendMessage(Long chatId, String content, Long senderId) {
         log.info("Looking for chat with id: {}", chatId);
         User user = userService.getUserById(senderId);
 
@@ -43,11 +43,13 @@ public class MessageService {
         message.setUser(user);
 
         log.info("Saving message to database");
-        message = chatMessageRepository.save(message);
-        
-        log.info("Converting message to DTO");
-        ChatMessageDto chatMessageDto = ChatMessageDto.fromEntity(message);
-        chatMessageDto.setEmail(email);
-        return chatMessageDto;
+        return chatMessageWriter.write(message);
+    }
+
+    @Transactional(readOnly = true)
+    public ChatMessageDto getMessage(Long messageId) {
+        return chatMessageRepository.findById(messageId)
+                .map(ChatMessageDto::fromEntity)
+                .orElse(null);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,262 @@
+package com.soika.chat.service;
+
+import com.soika.chat.config.ws_security.ChatSubscriptionTracker;
+import com.soika.chat.config.ws_security.UserSessionsChangedEvent;
+import com.soika.chat.config.ws_security.WebSocketAuthContext;
+import com.soika.chat.fanout.ChatSubscriptionRegistry;
+import com.soika.chat.model.dto.ChatPresenceDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Online and typing state of chat members, kept in memory only and published to
+ * {@code /topic/chat/{id}/presence}. State exists only for chats someone watches, so a flush
+ * costs O(watched chats x users whose sessions changed since the last one); session changes and
+ * typing events just mark state and are coalesced until then. Typing events of a user in a
+ * chat are accepted at most once per {@code typing-interval} and expire after
+ * {@code typing-timeout} without a refresh.
+ * Online state is not tracked for chats above {@code chat.membership.max-chat-size}, whose
+ * membership is not held in memory.
+ * <p>
+ * State is local to this instance and is not relayed over the fanout: with several instances a
+ * member connected elsewhere shows as offline, their typing is never seen, and each instance
+ * publishes its own snapshot. Enable it ({@code chat.presence.enabled}) only where all members of
+ * a chat reach one instance, i.e. {@code chat.fanout.mode: local} or sticky routing per chat.
+ */
+@Service
+@ConditionalOnProperty(name = "chat.presence.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class PresenceService implements ChatSubscriptionTracker.Listener {
+
+    private static final String TOPIC_SUFFIX = "/presence";
+
+    private final WebSocketAuthContext authContext;
+    private final ChatMembershipIndex membershipIndex;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final long typingIntervalMillis;
+    private final long typingTimeoutMillis;
+    private final Counter typingAccepted;
+    private final Counter typingCoalesced;
+
+    private final ConcurrentMap<Long, ChatPresence> chats = new ConcurrentHashMap<>();
+    private final Set<Long> changedUsers = ConcurrentHashMap.newKeySet();
+
+    public PresenceService(
+            WebSocketAuthContext authContext,
+            ChatMembershipIndex membershipIndex,
+            ChatSubscriptionTracker subscriptions,
+            SimpMessagingTemplate messagingTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${chat.presence.typing-interval:1s}") Duration typingInterval,
+            @Value("${chat.presence.typing-timeout:5s}") Duration typingTimeout
+    ) {
+        this.authContext = authContext;
+        this.membershipIndex = membershipIndex;
+        this.messagingTemplate = messagingTemplate;
+        this.typingIntervalMillis = typingInterval.toMillis();
+        this.typingTimeoutMillis = typingTimeout.toMillis();
+        Gauge.builder("chat.presence.chats", chats, Map::size)
+                .description("Chats with presence subscribers")
+                .register(meterRegistry);
+        this.typingAccepted = Counter.builder("chat.presence.typing")
+                .tag("result", "accepted")
+                .register(meterRegistry);
+        this.typingCoalesced = Counter.builder("chat.presence.typing")
+                .tag("result", "coalesced")
+                .register(meterRegistry);
+        subscriptions.register(TOPIC_SUFFIX, this);
+    }
+
+    public static String topic(Long chatId) {
+        return "/topic/chat/" + chatId + TOPIC_SUFFIX;
+    }
+
+    public static Long chatId(String destination) {
+        if (destination == null || !destination.endsWith(TOPIC_SUFFIX)) {
+            return null;
+        }
+        return ChatSubscriptionRegistry.chatId(destination.substring(0, destination.length() - TOPIC_SUFFIX.length()));
+    }
+
+    /**
+     * Records that the user started or stopped typing; dropped if nobody watches the chat.
+     */
+    public void typing(Long chatId, Long userId, boolean typing) {
+        ChatPresence chat = chats.get(chatId);
+        if (chat == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        boolean accepted;
+        synchronized (chat) {
+            accepted = chat.typing(userId, typing, now, typingIntervalMillis, typingTimeoutMillis);
+        }
+        (accepted ? typingAccepted : typingCoalesced).increment();
+    }
+
+    @EventListener
+    public void onUserSessionsChanged(UserSessionsChangedEvent event) {
+        changedUsers.add(event.userId());
+    }
+
+    @EventListener
+    public void onMembershipChanged(ChatMembershipChangedEvent event) {
+        ChatPresence chat = chats.get(event.chatId());
+        if (chat != null) {
+            synchronized (chat) {
+                chat.snapshotDue = true;
+            }
+        }
+    }
+
+    @Override
+    public void subscribed(Long chatId, boolean first) {
+        ChatPresence chat = chats.computeIfAbsent(chatId, id -> new ChatPresence());
+        synchronized (chat) {
+            // The new subscriber has nothing to apply diffs to
+            chat.snapshotDue = true;
+        }
+    }
+
+    @Override
+    public void lastUnsubscribed(Long chatId) {
+        chats.remove(chatId);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.presence.flush-interval:PT1S}")
+    public void flush() {
+        List<Long> users = new ArrayList<>(changedUsers);
+        changedUsers.removeAll(users);
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, ChatPresence> entry : chats.entrySet()) {
+            ChatPresenceDto update;
+            ChatPresence chat = entry.getValue();
+            synchronized (chat) {
+                update = chat.snapshotDue ? snapshot(entry.getKey(), chat, now) : diff(entry.getKey(), chat, users, now);
+            }
+            if (update == null) {
+                continue;
+            }
+            try {
+                messagingTemplate.convertAndSend(topic(entry.getKey()), update);
+            } catch (MessagingException e) {
+                log.warn("Failed to publish presence of chat {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private ChatPresenceDto snapshot(Long chatId, ChatPresence chat, long now) {
+        chat.snapshotDue = false;
+        chat.online.clear();
+        long[] memberIds = membershipIndex.memberIds(chatId);
+        chat.tracksOnline = memberIds != null;
+        if (memberIds != null) {
+            for (long memberId : memberIds) {
+                if (authContext.isOnline(memberId)) {
+                    chat.online.add(memberId);
+                }
+            }
+        }
+        chat.announcedTyping.clear();
+        chat.announcedTyping.addAll(chat.currentTyping(now, authContext));
+        return new ChatPresenceDto(chatId, true, List.copyOf(chat.online), List.of(),
+                List.copyOf(chat.announcedTyping), List.of());
+    }
+
+    private ChatPresenceDto diff(Long chatId, ChatPresence chat, List<Long> users, long now) {
+        List<Long> online = new ArrayList<>();
+        List<Long> offline = new ArrayList<>();
+        if (chat.tracksOnline) {
+            for (Long userId : users) {
+                boolean isOnline = authContext.isOnline(userId);
+                if (isOnline == chat.online.contains(userId)) {
+                    continue;
+                }
+                if (!isOnline) {
+                    chat.online.remove(userId);
+                    offline.add(userId);
+                } else if (membershipIndex.isMember(chatId, userId)) {
+                    chat.online.add(userId);
+                    online.add(userId);
+                }
+            }
+        }
+        Set<Long> typing = chat.currentTyping(now, authContext);
+        List<Long> started = new ArrayList<>();
+        List<Long> stopped = new ArrayList<>();
+        for (Long userId : typing) {
+            if (!chat.announcedTyping.contains(userId)) {
+                started.add(userId);
+            }
+        }
+        for (Long userId : chat.announcedTyping) {
+            if (!typing.contains(userId)) {
+                stopped.add(userId);
+            }
+        }
+        chat.announcedTyping.clear();
+        chat.announcedTyping.addAll(typing);
+        if (online.isEmpty() && offline.isEmpty() && started.isEmpty() && stopped.isEmpty()) {
+            return null;
+        }
+        return new ChatPresenceDto(chatId, false, online, offline, started, stopped);
+    }
+
+    /**
+     * Per-chat state, guarded by its own monitor. {@code online} and {@code announcedTyping} are
+     * what subscribers were last told; {@code typing} is what users reported since.
+     */
+    private static class ChatPresence {
+        boolean snapshotDue;
+        boolean tracksOnline;
+        final Set<Long> online = new HashSet<>();
+        final Set<Long> announcedTyping = new HashSet<>();
+        // User id to {accepted at, expires at}
+        final Map<Long, long[]> typing = new HashMap<>();
+
+        boolean typing(Long userId, boolean typing, long now, long intervalMillis, long timeoutMillis) {
+            if (!typing) {
+                return this.typing.remove(userId) != null;
+            }
+            long[] state = this.typing.get(userId);
+            if (state != null && now - state[0] < intervalMillis) {
+                return false;
+            }
+            this.typing.put(userId, new long[]{now, now + timeoutMillis});
+            return true;
+        }
+
+        Set<Long> currentTyping(long now, WebSocketAuthContext authContext) {
+            Set<Long> current = new HashSet<>();
+            for (Iterator<Map.Entry<Long, long[]>> it = typing.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Long, long[]> entry = it.next();
+                if (entry.getValue()[1] <= now || !authContext.isOnline(entry.getKey())) {
+                    it.remove();
+                } else {
+                    current.add(entry.getKey());
+                }
+            }
+            return current;
+        }
+    }
+}
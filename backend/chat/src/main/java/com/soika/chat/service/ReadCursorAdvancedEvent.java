@@ -0,0 +1,7 @@
+package com.soika.chat.service;
+
+/**
+ * Published when a member's read cursor moves forward, before it is written.
+ */
+public record ReadCursorAdvancedEvent(Long chatId, Long userId, Long lastReadMessageId) {
+}
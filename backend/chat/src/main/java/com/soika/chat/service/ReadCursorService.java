@@ -0,0 +1,220 @@
+package com.soika.chat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.soika.chat.model.dto.ReadCursorDto;
+import com.soika.chat.repository.ReadCursorRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-member read cursors. An advance only moves the cursor forward and is coalesced in memory:
+ * the database sees at most one upsert per member and chat per {@code flush-interval}, and the
+ * chat's {@code /topic/chat/{id}/receipts} at most one update per {@code receipt-interval},
+ * however fast the member scrolls.
+ */
+@Service
+@Slf4j
+public class ReadCursorService implements DisposableBean {
+
+    private static final Comparator<Map.Entry<CursorKey, Long>> LOCK_ORDER = Comparator
+            .comparingLong((Map.Entry<CursorKey, Long> entry) -> entry.getKey().chatId())
+            .thenComparingLong(entry -> entry.getKey().userId());
+
+    private final ReadCursorRepository readCursorRepository;
+    private final HotTailCache hotTail;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    // Highest cursor seen per member, so stale and repeated advances stop here
+    private final Cache<CursorKey, Long> cursors;
+    private final ConcurrentMap<CursorKey, Long> unflushed = new ConcurrentHashMap<>();
+    // Chat id to user id to cursor, mutated only inside compute so a publish never misses an advance
+    private final ConcurrentMap<Long, Map<Long, Long>> unannounced = new ConcurrentHashMap<>();
+    private final Counter advanced;
+    private final Counter coalesced;
+    private final DistributionSummary flushSizes;
+
+    public ReadCursorService(
+            ReadCursorRepository readCursorRepository,
+            HotTailCache hotTail,
+            SimpMessagingTemplate messagingTemplate,
+            ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry,
+            @Value("${chat.read-cursors.maximum-size:100000}") long maximumSize,
+            @Value("${chat.read-cursors.batch-size:500}") int batchSize
+    ) {
+        this.readCursorRepository = readCursorRepository;
+        this.hotTail = hotTail;
+        this.messagingTemplate = messagingTemplate;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.cursors = Caffeine.newBuilder().maximumSize(maximumSize).build();
+        this.advanced = Counter.builder("chat.read-cursors.updates")
+                .tag("result", "advanced")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("chat.read-cursors.updates")
+                .tag("result", "coalesced")
+                .register(meterRegistry);
+        this.flushSizes = DistributionSummary.builder("chat.read-cursors.flush.size")
+                .description("Cursors written per flush")
+                .register(meterRegistry);
+        Gauge.builder("chat.read-cursors.unflushed", unflushed, Map::size)
+                .description("Cursors advanced in memory but not yet written")
+                .register(meterRegistry);
+    }
+
+    public static String topic(Long chatId) {
+        return "/topic/chat/" + chatId + "/receipts";
+    }
+
+    /**
+     * Moves the member's cursor to {@code requestedId} unless it is already there or beyond. An id
+     * past the chat's last message is clamped to it: a cursor ahead of the chat would leave the
+     * messages sent up to that id out of the member's unread count.
+     */
+    public void markRead(Long chatId, Long userId, Long requestedId) {
+        if (chatId == null || userId == null || requestedId == null) {
+            return;
+        }
+        CursorKey key = new CursorKey(chatId, userId);
+        Long known = cursors.getIfPresent(key);
+        if (known != null && known >= requestedId) {
+            coalesced.increment();
+            return;
+        }
+        long messageId = Math.min(requestedId, hotTail.lastMessageId(chatId));
+        if (messageId <= 0) {
+            return;
+        }
+        boolean[] moved = new boolean[1];
+        cursors.asMap().compute(key, (k, current) -> {
+            if (current != null && current >= messageId) {
+                return current;
+            }
+            moved[0] = true;
+            return messageId;
+        });
+        if (!moved[0]) {
+            coalesced.increment();
+            return;
+        }
+        advanced.increment();
+        unflushed.merge(key, messageId, Math::max);
+        unannounced.compute(chatId, (id, users) -> {
+            Map<Long, Long> updated = users != null ? users : new HashMap<>();
+            updated.merge(userId, messageId, Math::max);
+            return updated;
+        });
+        eventPublisher.publishEvent(new ReadCursorAdvancedEvent(chatId, userId, messageId));
+    }
+
+    /**
+     * The member's cursor if this instance has seen it, which may be ahead of the stored one.
+     */
+    public Long cachedCursor(Long chatId, Long userId) {
+        return cursors.getIfPresent(new CursorKey(chatId, userId));
+    }
+
+    /**
+     * Stored cursors of the chat's members, with advances not yet written applied on top.
+     */
+    public List<ReadCursorDto> getReadCursors(Long chatId) {
+        Map<Long, Long> byUser = new HashMap<>();
+        for (ReadCursorDto cursor : readCursorRepository.findByChatId(chatId)) {
+            byUser.put(cursor.getUserId(), cursor.getLastReadMessageId());
+        }
+        unflushed.forEach((key, messageId) -> {
+            if (key.chatId() == chatId) {
+                byUser.merge(key.userId(), messageId, Math::max);
+            }
+        });
+        return byUser.entrySet().stream()
+                .map(entry -> new ReadCursorDto(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    @Scheduled(fixedDelayString = "${chat.read-cursors.receipt-interval:PT1S}")
+    public void publishReceipts() {
+        for (Long chatId : unannounced.keySet()) {
+            Map<Long, Long> users = unannounced.remove(chatId);
+            if (users == null) {
+                continue;
+            }
+            List<ReadCursorDto> receipts = users.entrySet().stream()
+                    .map(entry -> new ReadCursorDto(entry.getKey(), entry.getValue()))
+                    .toList();
+            try {
+                messagingTemplate.convertAndSend(topic(chatId), receipts);
+            } catch (MessagingException e) {
+                log.warn("Failed to publish read receipts of chat {}: {}", chatId, e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.read-cursors.flush-interval:PT5S}")
+    public void flush() {
+        List<Map.Entry<CursorKey, Long>> batch = new ArrayList<>();
+        for (CursorKey key : unflushed.keySet()) {
+            Long messageId = unflushed.remove(key);
+            if (messageId != null) {
+                batch.add(Map.entry(key, messageId));
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        // The same order on every instance keeps concurrent upserts from deadlocking
+        batch.sort(LOCK_ORDER);
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            write(batch.subList(from, Math.min(from + batchSize, batch.size())));
+        }
+    }
+
+    private void write(List<Map.Entry<CursorKey, Long>> chunk) {
+        try {
+            readCursorRepository.advance(chunk.stream()
+                    .map(entry -> new Object[]{entry.getKey().chatId(), entry.getKey().userId(), entry.getValue()})
+                    .toList());
+            flushSizes.record(chunk.size());
+        } catch (DataIntegrityViolationException e) {
+            if (chunk.size() == 1) {
+                // The chat or the user is gone; the cursor has nothing left to point into
+                log.debug("Dropping read cursor {}: {}", chunk.get(0).getKey(), e.getMessage());
+                return;
+            }
+            chunk.forEach(entry -> write(List.of(entry)));
+        } catch (DataAccessException e) {
+            log.warn("Failed to write {} read cursors, retrying on the next flush: {}", chunk.size(), e.getMessage());
+            chunk.forEach(entry -> unflushed.merge(entry.getKey(), entry.getValue(), Math::max));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flush();
+    }
+
+    private record CursorKey(long chatId, long userId) {
+    }
+}
@@ -0,0 +1,184 @@
+package com.soika.chat.service;
+
+import com.soika.chat.config.ws_security.ChatAccessControl;
+import com.soika.chat.fanout.ChatSubscriptionRegistry;
+import com.soika.chat.model.dto.ChatMessageDto;
+import com.soika.chat.model.dto.ResumeDto;
+import com.soika.chat.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays what a reconnecting client missed instead of the whole history. The client names the
+ * highest message id it has seen, either in {@code GET /api/chats/{id}/resume?after=} or in a
+ * {@code resume-from} header on its SUBSCRIBE to {@code /topic/chat/{id}}; the gap comes from the
+ * chat's hot tail when that reaches back far enough, otherwise from one range scan of at most
+ * {@code max-messages} + 1 rows. The replay also repeats the few messages at or below that id
+ * that {@link HotTailCache#overlap} reads back, since one of them may have committed after the
+ * client saw a higher id; the client drops ids it has. A larger gap gets a reset, which is as cheap
+ * as an empty one, and the client reloads the history. Subscription replays run on their own
+ * bounded pool, so a reconnect storm queues here rather than on the inbound channel, and are
+ * sent to the subscription alone as one frame marked with a {@code resume} header.
+ */
+@Service
+@Slf4j
+public class ResumeService implements DisposableBean {
+
+    public static final String RESUME_FROM_HEADER = "resume-from";
+    public static final String RESUME_HEADER = "resume";
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final HotTailCache hotTail;
+    private final ChatAccessControl accessControl;
+    private final MessageChannel clientOutboundChannel;
+    private final MessageConverter messageConverter;
+    private final int maxMessages;
+    private final ThreadPoolExecutor executor;
+    private final Counter replays;
+    private final Counter resets;
+    private final Counter rejected;
+    private final DistributionSummary replayedMessages;
+
+    public ResumeService(
+            ChatMessageRepository chatMessageRepository,
+            HotTailCache hotTail,
+            ChatAccessControl accessControl,
+            @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+            SimpMessagingTemplate messagingTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${chat.resume.max-messages:200}") int maxMessages,
+            @Value("${chat.resume.pool-size:4}") int poolSize,
+            @Value("${chat.resume.queue-capacity:1000}") int queueCapacity
+    ) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.hotTail = hotTail;
+        this.accessControl = accessControl;
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.messageConverter = messagingTemplate.getMessageConverter();
+        this.maxMessages = maxMessages;
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("chat-resume-")
+        );
+        this.replays = Counter.builder("chat.resume")
+                .tag("result", "replayed")
+                .register(meterRegistry);
+        this.resets = Counter.builder("chat.resume")
+                .tag("result", "reset")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("chat.resume")
+                .tag("result", "rejected")
+                .register(meterRegistry);
+        this.replayedMessages = DistributionSummary.builder("chat.resume.messages")
+                .description("Messages replayed per resume")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Messages of the chat with ids above {@code lastSeenId} after the overlap at or below it,
+     * or a reset when there are more than {@code max-messages} above it.
+     */
+    public ResumeDto resume(Long chatId, long lastSeenId) {
+        List<ChatMessageDto> gap = hotTail.after(chatId, lastSeenId);
+        if (gap == null) {
+            gap = chatMessageRepository
+                    .findByChatIdAndIdGreaterThanOrderByIdAsc(chatId, lastSeenId, Limit.of(maxMessages + 1))
+                    .stream()
+                    .map(ChatMessageDto::fromEntity)
+                    .toList();
+        }
+        if (gap.size() > maxMessages) {
+            resets.increment();
+            return ResumeDto.reset();
+        }
+        replays.increment();
+        replayedMessages.record(gap.size());
+        List<ChatMessageDto> replay = new ArrayList<>(hotTail.overlap(chatId, lastSeenId));
+        replay.addAll(gap);
+        return ResumeDto.replay(replay);
+    }
+
+    // Published for a SUBSCRIBE the ACL dropped as well, so the decision, cached on the session by
+    // then, is checked again before any history is read
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String resumeFrom = accessor.getFirstNativeHeader(RESUME_FROM_HEADER);
+        String destination = accessor.getDestination();
+        Long chatId = ChatSubscriptionRegistry.chatId(destination);
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        if (resumeFrom == null || chatId == null || sessionId == null || subscriptionId == null
+                || !accessControl.canAccess(sessionId, chatId)) {
+            return;
+        }
+        long lastSeenId;
+        try {
+            lastSeenId = Long.parseLong(resumeFrom.trim());
+        } catch (NumberFormatException e) {
+            return;
+        }
+        try {
+            executor.execute(() -> send(sessionId, subscriptionId, destination, replay(chatId, lastSeenId)));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            send(sessionId, subscriptionId, destination, ResumeDto.reset());
+        }
+    }
+
+    private ResumeDto replay(Long chatId, long lastSeenId) {
+        try {
+            return resume(chatId, lastSeenId);
+        } catch (DataAccessException e) {
+            log.warn("Failed to replay chat {} after message {}: {}", chatId, lastSeenId, e.getMessage());
+            return ResumeDto.reset();
+        }
+    }
+
+    private void send(String sessionId, String subscriptionId, String destination, ResumeDto result) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        accessor.setNativeHeader(RESUME_HEADER, "true");
+        accessor.setLeaveMutable(true);
+        Message<?> message = messageConverter.toMessage(result, accessor.getMessageHeaders());
+        try {
+            clientOutboundChannel.send(message);
+        } catch (MessagingException e) {
+            log.debug("Failed to send resume of {} to session {}: {}", destination, sessionId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
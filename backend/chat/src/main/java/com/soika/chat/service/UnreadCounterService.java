@@ -0,0 +1,170 @@
+package com.soika.chat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.soika.chat.model.dto.ChatMessageDto;
+import com.soika.chat.repository.UnreadCountRepository;
+import com.soika.chat.repository.UnreadCountRepository.UnreadCount;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unread message counts per member and chat, kept up to date instead of counted per request.
+ * A committed message bumps the count of every loaded member of its chat whose cursor is
+ * behind it; a cursor moved to the end of the chat resets the count to zero, one moved
+ * part of the way drops it to be recounted. A count is loaded with a range scan of at most
+ * {@code max-count} rows from the stored cursor, so the counts themselves are never written:
+ * they follow from the persisted cursors and messages and are exact after a restart.
+ * Loaded counts are trusted for {@code refresh-interval}, which bounds how long messages
+ * committed on other instances of chats without local subscribers go unseen.
+ */
+@Service
+public class UnreadCounterService {
+
+    private final UnreadCountRepository unreadCountRepository;
+    private final ReadCursorService readCursorService;
+    private final Cache<Long, ChatUnread> chats;
+    private final int maxCount;
+    private final long refreshMillis;
+
+    public UnreadCounterService(
+            UnreadCountRepository unreadCountRepository,
+            ReadCursorService readCursorService,
+            MeterRegistry meterRegistry,
+            @Value("${chat.unread.max-count:999}") int maxCount,
+            @Value("${chat.unread.refresh-interval:30s}") Duration refreshInterval,
+            @Value("${chat.unread.maximum-chats:100000}") long maximumChats,
+            @Value("${chat.unread.idle-timeout:10m}") Duration idleTimeout
+    ) {
+        this.unreadCountRepository = unreadCountRepository;
+        this.readCursorService = readCursorService;
+        this.maxCount = maxCount;
+        this.refreshMillis = refreshInterval.toMillis();
+        this.chats = Caffeine.newBuilder()
+                .maximumSize(maximumChats)
+                .expireAfterAccess(idleTimeout)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, chats, "chat.unread");
+    }
+
+    /**
+     * Unread counts of the user's chats, capped at {@code max-count}. One query loads
+     * whatever is not in memory.
+     */
+    public Map<Long, Integer> getUnreadCounts(Long userId, List<Long> chatIds) {
+        Map<Long, Integer> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        List<ChatUnread> missingChats = new ArrayList<>();
+        List<Long> versions = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Long chatId : chatIds) {
+            ChatUnread chat = chats.get(chatId, id -> new ChatUnread());
+            synchronized (chat) {
+                int index = chat.table.indexOf(userId);
+                if (index >= 0 && now - chat.table.loadedAt(index) < refreshMillis) {
+                    result.put(chatId, chat.table.count(index));
+                    continue;
+                }
+                missing.add(chatId);
+                missingChats.add(chat);
+                versions.add(chat.version);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        Long[] cursors = new Long[missing.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            Long cursor = readCursorService.cachedCursor(missing.get(i), userId);
+            cursors[i] = cursor != null ? cursor : 0L;
+        }
+        Map<Long, UnreadCount> loaded = new HashMap<>();
+        for (UnreadCount count : unreadCountRepository.countUnread(userId, missing.toArray(Long[]::new), cursors, maxCount)) {
+            loaded.put(count.chatId(), count);
+        }
+        for (int i = 0; i < missing.size(); i++) {
+            Long chatId = missing.get(i);
+            UnreadCount count = loaded.get(chatId);
+            if (count == null) {
+                continue;
+            }
+            result.put(chatId, count.unread());
+            ChatUnread chat = missingChats.get(i);
+            synchronized (chat) {
+                chat.lastMessageId = Math.max(chat.lastMessageId, count.lastMessageId());
+                // A message committed while counting may or may not be in the count; leave it to the next load
+                if (chat.version == versions.get(i)) {
+                    chat.table.put(userId, count.cursor(), count.unread(), now);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Called once per committed message, on this or another instance.
+     */
+    public void onMessage(ChatMessageDto message) {
+        if (message.getChatId() == null || message.getId() == null) {
+            return;
+        }
+        ChatUnread chat = chats.getIfPresent(message.getChatId());
+        if (chat == null) {
+            return;
+        }
+        long messageId = message.getId();
+        long senderId = message.getSenderId() != null ? message.getSenderId() : 0L;
+        synchronized (chat) {
+            chat.version++;
+            chat.lastMessageId = Math.max(chat.lastMessageId, messageId);
+            UnreadTable table = chat.table;
+            for (int i = 0; i < table.capacity(); i++) {
+                long userId = table.userId(i);
+                if (userId != 0 && userId != senderId && messageId > table.cursor(i) && table.count(i) < maxCount) {
+                    table.setCount(i, table.count(i) + 1);
+                }
+            }
+        }
+    }
+
+    @EventListener
+    public void onReadCursorAdvanced(ReadCursorAdvancedEvent event) {
+        ChatUnread chat = chats.getIfPresent(event.chatId());
+        if (chat == null) {
+            return;
+        }
+        synchronized (chat) {
+            int index = chat.table.indexOf(event.userId());
+            if (index < 0 || event.lastReadMessageId() <= chat.table.cursor(index)) {
+                return;
+            }
+            if (event.lastReadMessageId() >= chat.lastMessageId) {
+                chat.table.setCursor(index, event.lastReadMessageId());
+                chat.table.setCount(index, 0);
+            } else {
+                chat.table.remove(event.userId());
+            }
+        }
+    }
+
+    /**
+     * Loaded members of one chat, guarded by its own monitor. {@code version} counts the
+     * messages seen, so a load that raced with one is not kept.
+     */
+    private static class ChatUnread {
+        final UnreadTable table = new UnreadTable();
+        long lastMessageId;
+        long version;
+    }
+}
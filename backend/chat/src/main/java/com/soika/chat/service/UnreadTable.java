@@ -0,0 +1,139 @@
+package com.soika.chat.service;
+
+/**
+ * Open-addressing map from user id to read cursor, unread count and load time for one chat,
+ * in parallel primitive arrays: no boxing, no entry objects, one probe sequence per lookup.
+ * User ids must be non-zero. Not thread-safe; {@link UnreadCounterService} guards it.
+ */
+final class UnreadTable {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] userIds;
+    private long[] cursors;
+    private int[] counts;
+    private long[] loadedAt;
+    private int size;
+
+    UnreadTable() {
+        allocate(MIN_CAPACITY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return userIds.length;
+    }
+
+    /**
+     * Slot of the user, or -1.
+     */
+    int indexOf(long userId) {
+        int mask = userIds.length - 1;
+        for (int i = slot(userId, mask); ; i = (i + 1) & mask) {
+            if (userIds[i] == userId) {
+                return i;
+            }
+            if (userIds[i] == 0) {
+                return -1;
+            }
+        }
+    }
+
+    void put(long userId, long cursor, int count, long now) {
+        int index = indexOf(userId);
+        if (index < 0) {
+            if ((size + 1) * 4 > userIds.length * 3) {
+                rehash(userIds.length * 2);
+            }
+            int mask = userIds.length - 1;
+            index = slot(userId, mask);
+            while (userIds[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            userIds[index] = userId;
+            size++;
+        }
+        cursors[index] = cursor;
+        counts[index] = count;
+        loadedAt[index] = now;
+    }
+
+    void remove(long userId) {
+        int index = indexOf(userId);
+        if (index < 0) {
+            return;
+        }
+        // Backward-shift deletion keeps probe sequences intact without tombstones
+        int mask = userIds.length - 1;
+        int gap = index;
+        for (int i = (gap + 1) & mask; userIds[i] != 0; i = (i + 1) & mask) {
+            int home = slot(userIds[i], mask);
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                move(i, gap);
+                gap = i;
+            }
+        }
+        userIds[gap] = 0;
+        size--;
+    }
+
+    long userId(int index) {
+        return userIds[index];
+    }
+
+    long cursor(int index) {
+        return cursors[index];
+    }
+
+    int count(int index) {
+        return counts[index];
+    }
+
+    long loadedAt(int index) {
+        return loadedAt[index];
+    }
+
+    void setCount(int index, int count) {
+        counts[index] = count;
+    }
+
+    void setCursor(int index, long cursor) {
+        cursors[index] = cursor;
+    }
+
+    private void move(int from, int to) {
+        userIds[to] = userIds[from];
+        cursors[to] = cursors[from];
+        counts[to] = counts[from];
+        loadedAt[to] = loadedAt[from];
+    }
+
+    private void rehash(int capacity) {
+        long[] oldUserIds = userIds;
+        long[] oldCursors = cursors;
+        int[] oldCounts = counts;
+        long[] oldLoadedAt = loadedAt;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldUserIds.length; i++) {
+            if (oldUserIds[i] != 0) {
+                put(oldUserIds[i], oldCursors[i], oldCounts[i], oldLoadedAt[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        userIds = new long[capacity];
+        cursors = new long[capacity];
+        counts = new int[capacity];
+        loadedAt = new long[capacity];
+    }
+
+    private static int slot(long userId, int mask) {
+        long hash = userId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,63 @@
+package com.soika.chat.client;
+
+import com.soika.chat.config.AuthResilienceConfig;
+import com.soika.chat.dto.ValidateTokenResponse;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AuthClientTest {
+
+    private final RestTemplate restTemplate = mock(RestTemplate.class);
+    private final TokenValidationCache tokenValidationCache = mock(TokenValidationCache.class);
+    private final CircuitBreaker circuitBreaker = new AuthResilienceConfig()
+            .circuitBreakerRegistry(50, Duration.ofSeconds(1), 20, 10, Duration.ofSeconds(10))
+            .circuitBreaker(AuthResilienceConfig.AUTH_SERVICE);
+    private final AuthClient client = new AuthClient(restTemplate, "http://auth", mock(LocalTokenVerifier.class),
+            tokenValidationCache, circuitBreaker, Bulkhead.ofDefaults(AuthResilienceConfig.AUTH_SERVICE));
+
+    @SuppressWarnings("unchecked")
+    AuthClientTest() {
+        when(tokenValidationCache.get(anyString(), any()))
+                .thenAnswer(invocation -> ((Function<String, ValidateTokenResponse>) invocation.getArgument(1))
+                        .apply(invocation.getArgument(0)));
+    }
+
+    @Test
+    void validateToken_ShouldRejectTokenWithoutOpeningBreakerOnClientErrors() {
+        when(restTemplate.postForObject(anyString(), any(), eq(ValidateTokenResponse.class)))
+                .thenThrow(new HttpClientErrorException(HttpStatus.UNAUTHORIZED));
+
+        for (int i = 0; i < 20; i++) {
+            assertFalse(client.validateToken("bad-" + i).isValid());
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void validateToken_ShouldOpenBreakerOnServerErrors() {
+        when(restTemplate.postForObject(anyString(), any(), eq(ValidateTokenResponse.class)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+
+        for (int i = 0; i < 10; i++) {
+            String token = "token-" + i;
+            assertThrows(AuthServiceUnavailableException.class, () -> client.validateToken(token));
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+}
@@ -0,0 +1,70 @@
+package com.soika.chat.client;
+
+import com.soika.chat.dto.RevocationsResponse;
+import com.soika.chat.dto.RevokedToken;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TokenRevocationFilterTest {
+
+    private final List<RevokedToken> committed = new ArrayList<>();
+    private final RestTemplate restTemplate = mock(RestTemplate.class);
+    private final TokenValidationCache tokenValidationCache = mock(TokenValidationCache.class);
+    private final TokenRevocationFilter filter = new TokenRevocationFilter(
+            restTemplate, "http://auth", "/api/auth/revocations", tokenValidationCache, 1000, 0.01, 100);
+
+    TokenRevocationFilterTest() {
+        when(restTemplate.getForObject(anyString(), eq(RevocationsResponse.class), any(Object[].class)))
+                .thenAnswer(invocation -> page((Long) invocation.getArgument(2)));
+    }
+
+    @Test
+    void sync_ShouldPickUpRevocationCommittedBelowSeenId() {
+        commit(2, "b");
+        filter.sync();
+        commit(1, "a");
+
+        filter.sync();
+
+        assertTrue(filter.mightBeRevoked("a"));
+        verify(tokenValidationCache).invalidateRevoked(Set.of("a"));
+    }
+
+    @Test
+    void sync_ShouldNotInvalidateRevocationsAlreadySeen() {
+        commit(1, "a");
+        filter.sync();
+
+        filter.sync();
+
+        verify(tokenValidationCache, times(1)).invalidateRevoked(any());
+    }
+
+    private void commit(long id, String jti) {
+        RevokedToken revoked = new RevokedToken();
+        revoked.setId(id);
+        revoked.setJti(jti);
+        revoked.setExpiresAt(System.currentTimeMillis() + 60_000);
+        committed.add(revoked);
+    }
+
+    private RevocationsResponse page(long after) {
+        RevocationsResponse response = new RevocationsResponse();
+        response.setRevocations(committed.stream()
+                .filter(revoked -> revoked.getId() > after)
+                .sorted(Comparator.comparing(RevokedToken::getId))
+                .toList());
+        return response;
+    }
+}
@@ -0,0 +1,116 @@
+package com.soika.chat.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.soika.chat.dto.ValidateTokenResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenValidationCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final TokenValidationCache cache = new TokenValidationCache(
+            100, Duration.ofMinutes(5), Duration.ofSeconds(5), new SimpleMeterRegistry(), nanos::get);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void get_ShouldLoadOncePerToken() {
+        cache.get("a", loader(valid(null)));
+        cache.get("a", loader(valid(null)));
+        cache.get("b", loader(valid(null)));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_ShouldKeepValidResultsNoLongerThanTheTokenLives() {
+        cache.get("a", loader(valid(System.currentTimeMillis() + 60_000)));
+
+        advance(Duration.ofSeconds(59));
+        cache.get("a", loader(valid(null)));
+        assertEquals(1, loads.get());
+
+        advance(Duration.ofSeconds(2));
+        cache.get("a", loader(valid(null)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_ShouldCapValidResultsAtTtl() {
+        cache.get("a", loader(valid(System.currentTimeMillis() + 3_600_000)));
+
+        advance(Duration.ofMinutes(5).plusSeconds(1));
+        cache.get("a", loader(valid(null)));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_ShouldKeepRejectionsForNegativeTtlOnly() {
+        ValidateTokenResponse rejected = new ValidateTokenResponse();
+        rejected.setValid(false);
+        cache.get("a", loader(rejected));
+
+        advance(Duration.ofSeconds(4));
+        assertFalse(cache.get("a", loader(valid(null))).isValid());
+
+        advance(Duration.ofSeconds(2));
+        assertTrue(cache.get("a", loader(valid(null))).isValid());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void get_ShouldKeyBySha256OfTheToken() throws Exception {
+        cache.get("secret-token", loader(valid(null)));
+
+        Cache<String, ValidateTokenResponse> entries = (Cache<String, ValidateTokenResponse>) ReflectionTestUtils.getField(cache, "cache");
+        String expected = Base64.getEncoder().encodeToString(
+                MessageDigest.getInstance("SHA-256").digest("secret-token".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Set.of(expected), entries.asMap().keySet());
+    }
+
+    @Test
+    void invalidateRevoked_ShouldDropResultsWithRevokedJti() {
+        ValidateTokenResponse revoked = valid(null);
+        revoked.setJti("j1");
+        cache.get("a", loader(revoked));
+        cache.get("b", loader(valid(null)));
+
+        cache.invalidateRevoked(Set.of("j1"));
+        cache.get("a", loader(valid(null)));
+        cache.get("b", loader(valid(null)));
+
+        assertEquals(3, loads.get());
+    }
+
+    private Function<String, ValidateTokenResponse> loader(ValidateTokenResponse response) {
+        return token -> {
+            loads.incrementAndGet();
+            return response;
+        };
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(TimeUnit.NANOSECONDS.convert(duration));
+    }
+
+    private static ValidateTokenResponse valid(Long expiresAt) {
+        ValidateTokenResponse response = new ValidateTokenResponse();
+        response.setValid(true);
+        response.setExpiresAt(expiresAt);
+        return response;
+    }
+}
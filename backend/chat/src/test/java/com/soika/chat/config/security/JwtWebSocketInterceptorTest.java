@@ -0,0 +1,79 @@
+package com.soika.chat.config.security;
+
+import com.soika.chat.client.AuthClient;
+import com.soika.chat.config.ws_security.ChatAccessControl;
+import com.soika.chat.config.ws_security.SlowConsumerHandlerDecoratorFactory;
+import com.soika.chat.config.ws_security.WebSocketAuthContext;
+import com.soika.chat.dto.ValidateTokenResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JwtWebSocketInterceptorTest {
+
+    private final WebSocketAuthContext authContext = new WebSocketAuthContext(event -> { }, mock(SlowConsumerHandlerDecoratorFactory.class), new SimpleMeterRegistry(), Duration.ofMinutes(30));
+    private final AuthClient authClient = mock(AuthClient.class);
+    private final ChatAccessControl accessControl = mock(ChatAccessControl.class);
+    private final MessageChannel outboundChannel = mock(MessageChannel.class);
+    private final JwtWebSocketInterceptor interceptor =
+            new JwtWebSocketInterceptor(authContext, authClient, accessControl, outboundChannel);
+    private final MessageChannel channel = mock(MessageChannel.class);
+
+    @Test
+    void connect_ShouldRejectInvalidToken() {
+        ValidateTokenResponse response = new ValidateTokenResponse();
+        response.setValid(false);
+        when(authClient.validateToken("bad")).thenReturn(response);
+        StompHeaderAccessor accessor = accessor(StompCommand.CONNECT, null);
+        accessor.setNativeHeader("Authorization", "Bearer bad");
+
+        assertNull(interceptor.preSend(message(accessor), channel));
+        assertEquals(0, authContext.size());
+        ArgumentCaptor<Message<?>> error = ArgumentCaptor.forClass(Message.class);
+        verify(outboundChannel).send(error.capture());
+        StompHeaderAccessor errorAccessor = StompHeaderAccessor.wrap(error.getValue());
+        assertEquals(StompCommand.ERROR, errorAccessor.getCommand());
+        assertEquals("s1", errorAccessor.getSessionId());
+    }
+
+    @Test
+    void subscribe_ShouldDropFramesForChatsWithoutAccess() {
+        authContext.register("s1", 1L, "a@x");
+        when(accessControl.canAccess("s1", 10L)).thenReturn(false);
+        when(accessControl.canAccess("s1", 11L)).thenReturn(true);
+
+        assertNull(interceptor.preSend(message(accessor(StompCommand.SUBSCRIBE, "/topic/chat/10")), channel));
+        assertNotNull(interceptor.preSend(message(accessor(StompCommand.SUBSCRIBE, "/topic/chat/11")), channel));
+        assertNotNull(interceptor.preSend(message(accessor(StompCommand.SUBSCRIBE, "/user/queue/errors")), channel));
+    }
+
+    @Test
+    void send_ShouldRequireMembershipAndSession() {
+        when(accessControl.canAccess("s1", 10L)).thenReturn(false);
+
+        assertNull(interceptor.preSend(message(accessor(StompCommand.SEND, "/app/chat/10/sendMessage")), channel));
+        assertNull(interceptor.preSend(message(accessor(StompCommand.SEND, "/app/other")), channel));
+    }
+
+    private static StompHeaderAccessor accessor(StompCommand command, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId("s1");
+        accessor.setDestination(destination);
+        accessor.setLeaveMutable(true);
+        return accessor;
+    }
+
+    private static Message<byte[]> message(StompHeaderAccessor accessor) {
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
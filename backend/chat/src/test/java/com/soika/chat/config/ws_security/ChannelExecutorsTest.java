@@ -0,0 +1,33 @@
+package com.soika.chat.config.ws_security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChannelExecutorsTest {
+
+    @Test
+    void fromEnvironment_ShouldSizePlatformPoolPerChannel() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("chat.ws.channels.inbound.pool-size", "12")
+                .withProperty("chat.ws.channels.inbound.queue-capacity", "100");
+
+        TaskExecutor executor = ChannelExecutors.fromEnvironment(environment, "inbound", 4);
+
+        ThreadPoolTaskExecutor pool = assertInstanceOf(ThreadPoolTaskExecutor.class, executor);
+        assertEquals(12, pool.getCorePoolSize());
+        assertEquals(12, pool.getMaxPoolSize());
+        assertEquals(100, pool.getQueueCapacity());
+        assertEquals("inbound-", pool.getThreadNamePrefix());
+    }
+
+    @Test
+    void fromEnvironment_ShouldRejectUnknownMode() {
+        MockEnvironment environment = new MockEnvironment().withProperty("chat.ws.channels.mode", "fibers");
+
+        assertThrows(IllegalStateException.class, () -> ChannelExecutors.fromEnvironment(environment, "inbound", 4));
+    }
+}
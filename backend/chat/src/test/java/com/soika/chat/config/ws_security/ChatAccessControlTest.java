@@ -0,0 +1,50 @@
+package com.soika.chat.config.ws_security;
+
+import com.soika.chat.service.ChatMembershipChangedEvent;
+import com.soika.chat.service.ChatMembershipIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ChatAccessControlTest {
+
+    private final WebSocketAuthContext authContext = new WebSocketAuthContext(event -> { }, mock(SlowConsumerHandlerDecoratorFactory.class), new SimpleMeterRegistry(), Duration.ofMinutes(30));
+    private final ChatMembershipIndex membershipIndex = mock(ChatMembershipIndex.class);
+    private final ChatAccessControl accessControl = new ChatAccessControl(authContext, membershipIndex, Duration.ofMinutes(1));
+
+    @Test
+    void canAccess_ShouldCacheDecisionPerSession() {
+        authContext.register("s1", 1L, "a@x");
+        when(membershipIndex.isMember(10L, 1L)).thenReturn(true);
+
+        assertTrue(accessControl.canAccess("s1", 10L));
+        assertTrue(accessControl.canAccess("s1", 10L));
+        assertFalse(accessControl.canAccess("unknown", 10L));
+        verify(membershipIndex, times(1)).isMember(10L, 1L);
+    }
+
+    @Test
+    void onMembershipChanged_ShouldEvictUserSessions() {
+        authContext.register("s1", 1L, "a@x");
+        authContext.register("s2", 1L, "a@x");
+        when(membershipIndex.isMember(10L, 1L)).thenReturn(true, true, false);
+        accessControl.canAccess("s1", 10L);
+        accessControl.canAccess("s2", 10L);
+
+        accessControl.onMembershipChanged(new ChatMembershipChangedEvent(10L, 1L));
+
+        assertFalse(accessControl.canAccess("s1", 10L));
+        assertFalse(accessControl.canAccess("s2", 10L));
+    }
+
+    @Test
+    void sendChatId_ShouldParseApplicationDestination() {
+        assertEquals(7L, ChatAccessControl.sendChatId("/app/chat/7/sendMessage"));
+        assertNull(ChatAccessControl.sendChatId("/app/chat/x/sendMessage"));
+        assertNull(ChatAccessControl.sendChatId("/topic/chat/7"));
+    }
+}
@@ -0,0 +1,87 @@
+package com.soika.chat.config.ws_security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ChatSubscriptionTrackerTest {
+
+    private final ChatAccessControl accessControl = mock(ChatAccessControl.class);
+    private final ChatSubscriptionTracker tracker = new ChatSubscriptionTracker(accessControl);
+    private final ChatSubscriptionTracker.Listener messages = mock(ChatSubscriptionTracker.Listener.class);
+    private final ChatSubscriptionTracker.Listener presence = mock(ChatSubscriptionTracker.Listener.class);
+
+    @BeforeEach
+    void setUp() {
+        tracker.register("", messages);
+        tracker.register("/presence", presence);
+        when(accessControl.canAccess(anyString(), eq(1L))).thenReturn(true);
+    }
+
+    @Test
+    void subscribe_ShouldReportFirstSubscriberAndLastUnsubscribe() {
+        tracker.subscribe("s1", "sub-0", 1L, "");
+        tracker.subscribe("s2", "sub-0", 1L, "");
+        verify(messages).subscribed(1L, true);
+        verify(messages).subscribed(1L, false);
+
+        tracker.unsubscribe("s1", "sub-0");
+        verify(messages, never()).lastUnsubscribed(1L);
+        assertTrue(tracker.hasSubscribers(1L, ""));
+
+        tracker.removeSession("s2");
+        verify(messages).lastUnsubscribed(1L);
+        assertFalse(tracker.hasSubscribers(1L, ""));
+    }
+
+    @Test
+    void onSubscribe_ShouldRouteSubTopicsToTheirListener() {
+        tracker.onSubscribe(subscribeEvent("s1", "sub-0", "/topic/chat/1"));
+        tracker.onSubscribe(subscribeEvent("s1", "sub-1", "/topic/chat/1/presence"));
+        tracker.onSubscribe(subscribeEvent("s1", "sub-2", "/topic/chat/1/receipts"));
+
+        verify(messages).subscribed(1L, true);
+        verify(presence).subscribed(1L, true);
+        verifyNoMoreInteractions(messages, presence);
+
+        tracker.removeSession("s1");
+        verify(messages).lastUnsubscribed(1L);
+        verify(presence).lastUnsubscribed(1L);
+    }
+
+    @Test
+    void onSubscribe_ShouldIgnoreSubscriptionsTheAclDenied() {
+        tracker.onSubscribe(subscribeEvent("s1", "sub-0", "/topic/chat/2"));
+        tracker.onSubscribe(subscribeEvent("s1", "sub-1", "/topic/chat/2/presence"));
+
+        verifyNoInteractions(messages, presence);
+        assertFalse(tracker.hasSubscribers(2L, ""));
+    }
+
+    @Test
+    void subscribe_ShouldReleaseTheTopicAReusedSubscriptionIdHad() {
+        tracker.subscribe("s1", "sub-0", 1L, "");
+        tracker.subscribe("s1", "sub-0", 1L, "/presence");
+
+        verify(messages).lastUnsubscribed(1L);
+        assertTrue(tracker.hasSubscribers(1L, "/presence"));
+    }
+
+    private static SessionSubscribeEvent subscribeEvent(String sessionId, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        return new SessionSubscribeEvent(ChatSubscriptionTrackerTest.class, message);
+    }
+}
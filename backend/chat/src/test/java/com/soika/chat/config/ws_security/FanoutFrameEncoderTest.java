@@ -0,0 +1,85 @@
+package com.soika.chat.config.ws_security;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FanoutFrameEncoderTest {
+
+    private final FanoutFrameEncoder encoder = new FanoutFrameEncoder(mock(SlowConsumerHandlerDecoratorFactory.class));
+
+    @Test
+    void encode_ShouldMatchSpringStompFrame() throws Exception {
+        byte[] payload = "{\"content\":\"привет: мир\"}".getBytes(StandardCharsets.UTF_8);
+        Message<byte[]> message = message("s1", "sub-0", "/topic/chat/1", payload, MimeTypeUtils.APPLICATION_JSON);
+
+        WebSocketSession session = mock(WebSocketSession.class);
+        new StompSubProtocolHandler().handleMessageToClient(session, message);
+        ArgumentCaptor<WebSocketMessage<?>> sent = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(session).sendMessage(sent.capture());
+
+        TextMessage expected = (TextMessage) sent.getValue();
+        TextMessage actual = assertInstanceOf(TextMessage.class, encoder.encode(message));
+        assertEquals(withoutMessageId(expected.getPayload()), withoutMessageId(actual.getPayload()));
+    }
+
+    @Test
+    void encode_ShouldVaryOnlySubscriptionHeadersForSharedPayload() {
+        byte[] payload = {(byte) 0xa1, 0x61, 0x61, 0x01};
+
+        BinaryMessage first = (BinaryMessage) encoder.encode(message("s1", "sub-0", "/topic/chat/1", payload, PayloadEncodings.CBOR));
+        BinaryMessage second = (BinaryMessage) encoder.encode(message("s2", "sub-7", "/topic/chat/1", payload, PayloadEncodings.CBOR));
+
+        String firstFrame = latin1(first.getPayload());
+        String secondFrame = latin1(second.getPayload());
+        assertTrue(firstFrame.contains("subscription:sub-0\n"));
+        assertTrue(secondFrame.contains("subscription:sub-7\n"));
+        assertTrue(firstFrame.endsWith("content-length:4\n\n¡aa\u0001\u0000"));
+        assertTrue(secondFrame.endsWith("content-length:4\n\n¡aa\u0001\u0000"));
+        assertEquals("/topic/chat/1", SlowConsumerSession.destination(first));
+    }
+
+    @Test
+    void encode_ShouldLeaveOtherDestinationsToSpring() {
+        byte[] payload = "{}".getBytes(StandardCharsets.UTF_8);
+
+        assertNull(encoder.encode(message("s1", "sub-0", "/topic/notifications", payload, MimeTypeUtils.APPLICATION_JSON)));
+    }
+
+    private static Message<byte[]> message(String sessionId, String subscriptionId, String destination,
+                                           byte[] payload, MimeType contentType) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        accessor.setContentType(contentType);
+        accessor.setNativeHeader("x-note", "a:b");
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    private static String withoutMessageId(String frame) {
+        return frame.replaceAll("message-id:[^\n]*\n", "");
+    }
+
+    private static String latin1(ByteBuffer frame) {
+        byte[] bytes = new byte[frame.remaining()];
+        frame.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
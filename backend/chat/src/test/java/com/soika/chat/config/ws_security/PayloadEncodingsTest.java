@@ -0,0 +1,49 @@
+package com.soika.chat.config.ws_security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadEncodingsTest {
+
+    @Test
+    void negotiate_ShouldPickCborOnlyForNativeTransport() {
+        assertEquals(PayloadEncodings.CBOR, PayloadEncodings.negotiate(connect(true, "application/cbor, application/json")));
+        assertEquals(MimeTypeUtils.APPLICATION_JSON, PayloadEncodings.negotiate(connect(false, "application/cbor")));
+        assertEquals(MimeTypeUtils.APPLICATION_JSON, PayloadEncodings.negotiate(connect(true, null)));
+    }
+
+    @Test
+    void jsonToCbor_ShouldKeepContent() throws Exception {
+        String json = "{\"id\":7,\"chatId\":1,\"content\":\"привет\",\"tags\":[true,null,1.5]}";
+
+        byte[] cbor = PayloadEncodings.jsonToCbor(json.getBytes(StandardCharsets.UTF_8));
+
+        Map<?, ?> decoded = new ObjectMapper(new CBORFactory()).readValue(cbor, Map.class);
+        assertEquals(new ObjectMapper().readValue(json, Map.class), decoded);
+        assertTrue(cbor.length < json.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static StompHeaderAccessor connect(boolean nativeTransport, String accept) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        Map<String, Object> attributes = new HashMap<>();
+        if (nativeTransport) {
+            attributes.put(PayloadEncodings.NATIVE_TRANSPORT_ATTRIBUTE, true);
+        }
+        accessor.setSessionAttributes(attributes);
+        if (accept != null) {
+            accessor.setNativeHeader(PayloadEncodings.ACCEPT_CONTENT_TYPE_HEADER, accept);
+        }
+        return accessor;
+    }
+}
@@ -0,0 +1,191 @@
+package com.soika.chat.config.ws_security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SlowConsumerSessionTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseWrites = new CountDownLatch(1);
+    private final List<String> written = new CopyOnWriteArrayList<>();
+    private SlowConsumerHandlerDecoratorFactory factory;
+
+    @AfterEach
+    void tearDown() {
+        releaseWrites.countDown();
+        if (factory != null) {
+            factory.destroy();
+        }
+    }
+
+    @Test
+    void dropOldest_ShouldKeepNewestFramesWithinLimit() throws Exception {
+        SlowConsumerSession session = blockedSession(OutboundOverflowPolicy.DROP_OLDEST);
+        for (int i = 2; i <= 6; i++) {
+            session.sendMessage(frame("/topic/chat/1/presence", "p" + i));
+        }
+
+        assertEquals(3, session.getQueueDepth());
+        releaseWrites.countDown();
+        awaitWritten(4);
+        assertEquals(List.of("m1", "p4", "p5", "p6"), written);
+        assertEquals(2.0, meterRegistry.get("chat.ws.outbound.dropped").tag("policy", "drop_oldest").counter().count());
+        assertEquals(0.0, meterRegistry.get("chat.ws.outbound.queue.depth").gauge().value());
+    }
+
+    @Test
+    void dropOldest_ShouldSkipChatMessages() throws Exception {
+        SlowConsumerSession session = blockedSession(OutboundOverflowPolicy.DROP_OLDEST);
+        session.sendMessage(frame("/topic/chat/1", "m2"));
+        session.sendMessage(frame("/topic/chat/1/presence", "p1"));
+        session.sendMessage(frame("/topic/chat/1", "m3"));
+        session.sendMessage(frame("/topic/chat/1", "m4"));
+
+        releaseWrites.countDown();
+        awaitWritten(4);
+        assertEquals(List.of("m1", "m2", "m3", "m4"), written);
+        verify(session.getDelegate(), never()).close(any());
+    }
+
+    @Test
+    void dropOldest_ShouldDisconnectRatherThanDropChatMessages() throws Exception {
+        SlowConsumerSession session = blockedSession(OutboundOverflowPolicy.DROP_OLDEST);
+        for (int i = 2; i <= 5; i++) {
+            session.sendMessage(frame("/topic/chat/1", "m" + i));
+        }
+
+        verify(session.getDelegate()).close(CloseStatus.SESSION_NOT_RELIABLE.withReason("Outbound queue limit exceeded"));
+    }
+
+    @Test
+    void coalesce_ShouldKeepNewestFramePerPresenceTopic() throws Exception {
+        SlowConsumerSession session = blockedSession(OutboundOverflowPolicy.COALESCE);
+        session.sendMessage(frame("/topic/chat/1/presence", "a1"));
+        session.sendMessage(frame("/topic/chat/1", "m2"));
+        session.sendMessage(frame("/topic/chat/1/presence", "a2"));
+        session.sendMessage(frame("/topic/chat/1/presence", "a3"));
+
+        releaseWrites.countDown();
+        awaitWritten(3);
+        assertEquals(List.of("m1", "m2", "a3"), written);
+    }
+
+    @Test
+    void disconnect_ShouldCloseSessionWithReason() throws Exception {
+        SlowConsumerSession session = blockedSession(OutboundOverflowPolicy.DISCONNECT);
+        for (int i = 2; i <= 5; i++) {
+            session.sendMessage(frame("/topic/chat/1", "m" + i));
+        }
+
+        verify(session.getDelegate()).close(CloseStatus.SESSION_NOT_RELIABLE.withReason("Outbound queue limit exceeded"));
+        assertEquals(0, session.getQueueDepth());
+        session.sendMessage(frame("/topic/chat/1", "late"));
+        assertEquals(0, session.getQueueDepth());
+    }
+
+    @Test
+    void batching_ShouldJoinFramesQueuedWithinWindow() throws Exception {
+        factory = new SlowConsumerHandlerDecoratorFactory(meterRegistry, new MockEnvironment(),
+                100, DataSize.ofMegabytes(1), Duration.ofMinutes(1), OutboundOverflowPolicy.DROP_OLDEST,
+                Duration.ofMillis(300), DataSize.ofKilobytes(64));
+        List<String> messages = new CopyOnWriteArrayList<>();
+        WebSocketSession delegate = mock(WebSocketSession.class);
+        when(delegate.getId()).thenReturn("s2");
+        when(delegate.getAttributes()).thenReturn(new HashMap<>(Map.of(SlowConsumerHandlerDecoratorFactory.BATCH_ATTRIBUTE, true)));
+        doAnswer(invocation -> messages.add(((TextMessage) invocation.getArgument(0)).getPayload()))
+                .when(delegate).sendMessage(any());
+        WebSocketSession session = captureDecorated(delegate);
+
+        session.sendMessage(frame("/topic/chat/1", "m1\u0000"));
+        awaitSize(messages, 1);
+        // The first frame of an idle session is not held back by the window
+        assertEquals(List.of("MESSAGE\ndestination:/topic/chat/1\n\nm1\u0000"), messages);
+
+        session.sendMessage(frame("/topic/chat/1", "m2\u0000"));
+        session.sendMessage(frame("/topic/chat/2", "m3\u0000"));
+        awaitSize(messages, 2);
+        assertEquals("MESSAGE\ndestination:/topic/chat/1\n\nm2\u0000MESSAGE\ndestination:/topic/chat/2\n\nm3\u0000", messages.get(1));
+        assertEquals(2.0, meterRegistry.get("chat.ws.outbound.batch.size").summary().max());
+    }
+
+    @Test
+    void batching_ShouldBeOffUnlessNegotiated() throws Exception {
+        SlowConsumerSession session = blockedSession(OutboundOverflowPolicy.DROP_OLDEST);
+        session.sendMessage(frame("/topic/chat/1", "m2"));
+        session.sendMessage(frame("/topic/chat/1", "m3"));
+
+        releaseWrites.countDown();
+        awaitWritten(3);
+        assertEquals(List.of("m1", "m2", "m3"), written);
+    }
+
+    @Test
+    void destination_ShouldReadStompHeader() {
+        assertEquals("/topic/chat/7", SlowConsumerSession.destination(
+                new TextMessage("MESSAGE\ndestination:/topic/chat/7\nsubscription:sub-0\n\n{}\u0000")));
+        assertNull(SlowConsumerSession.destination(new TextMessage("\n")));
+    }
+
+    // The first frame is taken by the drain thread and blocks until releaseWrites, so later frames queue up
+    private SlowConsumerSession blockedSession(OutboundOverflowPolicy policy) throws Exception {
+        factory = new SlowConsumerHandlerDecoratorFactory(meterRegistry, new MockEnvironment(),
+                3, DataSize.ofMegabytes(1), Duration.ofMinutes(1), policy, Duration.ofMillis(5), DataSize.ofKilobytes(64));
+        WebSocketSession delegate = mock(WebSocketSession.class);
+        when(delegate.getId()).thenReturn("s1");
+        doAnswer(invocation -> {
+            WebSocketMessage<?> message = invocation.getArgument(0);
+            firstWriteStarted.countDown();
+            releaseWrites.await(5, TimeUnit.SECONDS);
+            String payload = ((TextMessage) message).getPayload();
+            written.add(payload.substring(payload.indexOf("\n\n") + 2));
+            return null;
+        }).when(delegate).sendMessage(any());
+        SlowConsumerSession session = (SlowConsumerSession) captureDecorated(delegate);
+        session.sendMessage(frame("/topic/chat/1", "m1"));
+        assertTrue(firstWriteStarted.await(5, TimeUnit.SECONDS));
+        return session;
+    }
+
+    private WebSocketSession captureDecorated(WebSocketSession delegate) throws Exception {
+        WebSocketSession[] decorated = new WebSocketSession[1];
+        org.springframework.web.socket.WebSocketHandler handler = mock(org.springframework.web.socket.WebSocketHandler.class);
+        doAnswer(invocation -> decorated[0] = invocation.getArgument(0)).when(handler).afterConnectionEstablished(any());
+        factory.decorate(handler).afterConnectionEstablished(delegate);
+        return decorated[0];
+    }
+
+    private void awaitWritten(int count) throws InterruptedException {
+        awaitSize(written, count);
+    }
+
+    private static void awaitSize(List<String> list, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (list.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static TextMessage frame(String destination, String body) {
+        return new TextMessage("MESSAGE\ndestination:" + destination + "\n\n" + body);
+    }
+}
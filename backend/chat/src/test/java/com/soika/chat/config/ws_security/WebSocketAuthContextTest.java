@@ -0,0 +1,77 @@
+package com.soika.chat.config.ws_security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class WebSocketAuthContextTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SlowConsumerHandlerDecoratorFactory webSocketSessions = mock(SlowConsumerHandlerDecoratorFactory.class);
+    private final WebSocketAuthContext authContext = new WebSocketAuthContext(event -> { }, webSocketSessions, meterRegistry, Duration.ofMinutes(30));
+
+    @Test
+    void register_ShouldIndexSessionsByUser() {
+        authContext.register("s1", 1L, "a@x");
+        authContext.register("s2", 1L, "a@x");
+        authContext.register("s3", 2L, "b@x");
+
+        assertEquals(1L, authContext.getUserId("s1"));
+        assertEquals(Set.of("s1", "s2"), authContext.getSessions(1L));
+        assertEquals(3.0, meterRegistry.get("chat.ws.sessions").gauge().value());
+        assertEquals(2.0, meterRegistry.get("chat.ws.users").gauge().value());
+    }
+
+    @Test
+    void register_ShouldReplaceSessionOfAnotherUser() {
+        authContext.register("s1", 1L, "a@x");
+        authContext.register("s1", 2L, "b@x");
+
+        assertEquals(2L, authContext.getUserId("s1"));
+        assertTrue(authContext.getSessions(1L).isEmpty());
+        assertEquals(Set.of("s1"), authContext.getSessions(2L));
+    }
+
+    @Test
+    void onDisconnect_ShouldRemoveSessionAndEmptyUserIndex() {
+        authContext.register("s1", 1L, "a@x");
+
+        authContext.onDisconnect(new SessionDisconnectEvent(
+                this, MessageBuilder.withPayload(new byte[0]).build(), "s1", CloseStatus.NORMAL));
+
+        assertNull(authContext.get("s1"));
+        assertTrue(authContext.getSessions(1L).isEmpty());
+        assertEquals(0.0, meterRegistry.get("chat.ws.users").gauge().value());
+        assertEquals(0.0, meterRegistry.get("chat.ws.registry.memory").gauge().value());
+    }
+
+    @Test
+    void sweepIdleSessions_ShouldEvictAndCloseOnlyIdleSessions() throws Exception {
+        WebSocketSession idle = mock(WebSocketSession.class);
+        WebSocketSession active = mock(WebSocketSession.class);
+        when(webSocketSessions.session("idle")).thenReturn(idle);
+        when(webSocketSessions.session("active")).thenReturn(active);
+        authContext.register("idle", 1L, "a@x");
+        authContext.register("active", 1L, "a@x");
+        authContext.get("idle").touch(System.currentTimeMillis() - Duration.ofHours(1).toMillis());
+        authContext.touch("active");
+
+        authContext.sweepIdleSessions();
+
+        assertNull(authContext.get("idle"));
+        assertNotNull(authContext.get("active"));
+        assertEquals(Set.of("active"), authContext.getSessions(1L));
+        verify(idle).close(any(CloseStatus.class));
+        verify(active, never()).close(any(CloseStatus.class));
+    }
+}
@@ -0,0 +1,36 @@
+package com.soika.chat.fanout;
+
+import com.soika.chat.config.ws_security.ChatSubscriptionTracker;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ChatSubscriptionRegistryTest {
+
+    private final ChatFanout chatFanout = mock(ChatFanout.class);
+    private final ChatSubscriptionTracker subscriptions = mock(ChatSubscriptionTracker.class);
+    private final ChatSubscriptionRegistry registry = new ChatSubscriptionRegistry(chatFanout, subscriptions);
+
+    @Test
+    void constructor_ShouldTrackTheChatTopic() {
+        verify(subscriptions).register("", registry);
+    }
+
+    @Test
+    void subscribed_ShouldListenOnFirstSubscriberAndUnlistenAfterLast() {
+        registry.subscribed(1L, true);
+        registry.subscribed(1L, false);
+        verify(chatFanout, times(1)).listen(1L);
+
+        registry.lastUnsubscribed(1L);
+        verify(chatFanout).unlisten(1L);
+    }
+
+    @Test
+    void chatId_ShouldOnlyMatchChatTopics() {
+        assertEquals(42L, ChatSubscriptionRegistry.chatId("/topic/chat/42"));
+        assertNull(ChatSubscriptionRegistry.chatId("/topic/chat/abc"));
+        assertNull(ChatSubscriptionRegistry.chatId("/user/queue/errors"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.soika.chat.fanout;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soika.chat.model.dto.ChatMessageDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.DriverManager;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Several fan-out nodes against one Postgres stand in for several chat instances
+@Testcontainers(disabledWithoutDocker = true)
+class PostgresChatFanoutTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<PostgresChatFanout> nodes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(PostgresChatFanout::close);
+    }
+
+    @Test
+    void publish_ShouldReachOnlyNodesSubscribedToTheChat() throws Exception {
+        BlockingQueue<ChatMessageDto> subscribed = new LinkedBlockingQueue<>();
+        BlockingQueue<ChatMessageDto> other = new LinkedBlockingQueue<>();
+        PostgresChatFanout publisher = node(message -> {}, id -> null);
+        PostgresChatFanout subscriber = node(subscribed::add, id -> null);
+        PostgresChatFanout unrelated = node(other::add, id -> null);
+
+        subscriber.listen(1L);
+        unrelated.listen(2L);
+        awaitListening(subscriber, 1L);
+        awaitListening(unrelated, 2L);
+
+        publisher.publish(message(1L, 10L, "hello"));
+
+        ChatMessageDto delivered = subscribed.poll(5, TimeUnit.SECONDS);
+        assertNotNull(delivered);
+        assertEquals(10L, delivered.getId());
+        assertEquals("hello", delivered.getContent());
+        assertNull(other.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void publish_ShouldNotEchoToPublishingNode() throws Exception {
+        BlockingQueue<ChatMessageDto> own = new LinkedBlockingQueue<>();
+        BlockingQueue<ChatMessageDto> remote = new LinkedBlockingQueue<>();
+        PostgresChatFanout publisher = node(own::add, id -> null);
+        PostgresChatFanout subscriber = node(remote::add, id -> null);
+
+        publisher.listen(1L);
+        subscriber.listen(1L);
+        awaitListening(publisher, 1L);
+        awaitListening(subscriber, 1L);
+
+        publisher.publish(message(1L, 11L, "once"));
+
+        assertNotNull(remote.poll(5, TimeUnit.SECONDS));
+        assertNull(own.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void unlisten_ShouldStopDelivery() throws Exception {
+        BlockingQueue<ChatMessageDto> received = new LinkedBlockingQueue<>();
+        PostgresChatFanout publisher = node(message -> {}, id -> null);
+        PostgresChatFanout subscriber = node(received::add, id -> null);
+
+        subscriber.listen(1L);
+        awaitListening(subscriber, 1L);
+        subscriber.unlisten(1L);
+        awaitNotListening(subscriber, 1L);
+
+        publisher.publish(message(1L, 12L, "missed"));
+
+        assertNull(received.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void publish_OversizedMessage_ShouldBeLoadedById() throws Exception {
+        String content = "x".repeat(PostgresChatFanout.MAX_PAYLOAD_BYTES + 100);
+        BlockingQueue<ChatMessageDto> received = new LinkedBlockingQueue<>();
+        PostgresChatFanout publisher = node(message -> {}, id -> null);
+        PostgresChatFanout subscriber = node(received::add, id -> message(1L, id, content));
+
+        subscriber.listen(1L);
+        awaitListening(subscriber, 1L);
+
+        publisher.publish(message(1L, 13L, content));
+
+        ChatMessageDto delivered = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(delivered);
+        assertEquals(13L, delivered.getId());
+        assertEquals(content, delivered.getContent());
+    }
+
+    private PostgresChatFanout node(Consumer<ChatMessageDto> delivery, LongFunction<ChatMessageDto> loader) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        PostgresChatFanout fanout = new PostgresChatFanout(
+                new JdbcTemplate(dataSource),
+                () -> DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword()),
+                objectMapper,
+                delivery,
+                loader,
+                Duration.ofMillis(50),
+                Duration.ofMillis(200)
+        );
+        fanout.start();
+        nodes.add(fanout);
+        return fanout;
+    }
+
+    private static void awaitListening(PostgresChatFanout fanout, Long chatId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!fanout.isListening(chatId)) {
+            assertTrue(System.currentTimeMillis() < deadline, "LISTEN was not applied for chat " + chatId);
+            Thread.sleep(20);
+        }
+    }
+
+    private static void awaitNotListening(PostgresChatFanout fanout, Long chatId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (fanout.isListening(chatId)) {
+            assertTrue(System.currentTimeMillis() < deadline, "UNLISTEN was not applied for chat " + chatId);
+            Thread.sleep(20);
+        }
+    }
+
+    private static ChatMessageDto message(Long chatId, Long id, String content) {
+        ChatMessageDto message = new ChatMessageDto();
+        message.setId(id);
+        message.setChatId(chatId);
+        message.setSender("sender");
+        message.setEmail("sender@example.com");
+        message.setContent(content);
+        message.setTimestamp(LocalDateTime.now());
+        return message;
+    }
+}
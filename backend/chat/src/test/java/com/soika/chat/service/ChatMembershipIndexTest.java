@@ -0,0 +1,94 @@
+package com.soika.chat.service;
+
+import com.soika.chat.model.ChatRole;
+import com.soika.chat.repository.UserChatRepository;
+import com.soika.chat.repository.UserChatRepository.MembershipView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ChatMembershipIndexTest {
+
+    private final UserChatRepository userChatRepository = mock(UserChatRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final ChatMembershipIndex index = new ChatMembershipIndex(
+            userChatRepository, eventPublisher, mock(PlatformTransactionManager.class), new SimpleMeterRegistry(),
+            1000, 3, Duration.ofMinutes(5), false);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void getRole_ShouldLoadChatOnceAndAnswerFromMemory() {
+        when(userChatRepository.findMemberships(1L)).thenReturn(List.of(
+                membership(1L, 30L, ChatRole.MEMBER),
+                membership(1L, 10L, ChatRole.ADMIN)));
+
+        assertEquals(ChatRole.ADMIN, index.getRole(1L, 10L));
+        assertEquals(ChatRole.MEMBER, index.getRole(1L, 30L));
+        assertFalse(index.isMember(1L, 20L));
+        verify(userChatRepository, times(1)).findMemberships(1L);
+    }
+
+    @Test
+    void membershipChanges_ShouldBeAppliedWithoutReload() {
+        when(userChatRepository.findMemberships(1L)).thenReturn(List.of(membership(1L, 10L, ChatRole.ADMIN)));
+        index.getRole(1L, 10L);
+
+        index.onJoined(1L, 5L, ChatRole.MEMBER);
+        index.onRoleChanged(1L, 5L, ChatRole.ADMIN);
+        index.onLeft(1L, 10L);
+
+        assertEquals(ChatRole.ADMIN, index.getRole(1L, 5L));
+        assertFalse(index.isMember(1L, 10L));
+        verify(userChatRepository, times(1)).findMemberships(1L);
+    }
+
+    @Test
+    void membershipChanges_ShouldWaitForCommit() {
+        when(userChatRepository.findMemberships(1L)).thenReturn(List.of(membership(1L, 10L, ChatRole.ADMIN)));
+        index.getRole(1L, 10L);
+        TransactionSynchronizationManager.initSynchronization();
+
+        index.onLeft(1L, 10L);
+        assertTrue(index.isMember(1L, 10L));
+        verifyNoInteractions(eventPublisher);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertFalse(index.isMember(1L, 10L));
+        verify(eventPublisher).publishEvent(new ChatMembershipChangedEvent(1L, 10L));
+    }
+
+    @Test
+    void getRole_ShouldQueryDatabaseForChatsAboveSizeLimit() {
+        when(userChatRepository.countByChatId(1L)).thenReturn(4L);
+        when(userChatRepository.findRole(1L, 10L)).thenReturn(Optional.of(ChatRole.MEMBER));
+
+        assertEquals(ChatRole.MEMBER, index.getRole(1L, 10L));
+        assertNull(index.getRole(1L, 11L));
+        verify(userChatRepository, never()).findMemberships(1L);
+    }
+
+    private static MembershipView membership(Long chatId, Long userId, ChatRole role) {
+        return new MembershipView() {
+            public Long getChatId() { return chatId; }
+            public Long getUserId() { return userId; }
+            public ChatRole getRole() { return role; }
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package com.soika.chat.service;
+
+import com.soika.chat.fanout.ChatFanout;
+import com.soika.chat.model.dto.ChatMessageDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ChatMessageBroadcasterTest {
+
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final ChatFanout chatFanout = mock(ChatFanout.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatMessageBroadcaster broadcaster =
+            new ChatMessageBroadcaster(messagingTemplate, chatFanout, mock(UnreadCounterService.class), mock(HotTailCache.class), meterRegistry, 2, 100);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        broadcaster.destroy();
+    }
+
+    @Test
+    void broadcastAfterCommit_ShouldWaitForCommit() throws InterruptedException {
+        TransactionSynchronizationManager.initSynchronization();
+        broadcaster.broadcastAfterCommit(message(1L, 1L));
+
+        verifyNoInteractions(messagingTemplate);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        broadcaster.destroy();
+
+        verify(messagingTemplate).convertAndSend(eq("/topic/chat/1"), any(ChatMessageDto.class));
+        verify(chatFanout).publish(any(ChatMessageDto.class));
+        assertEquals(1, meterRegistry.get("chat.broadcast.delivery").timer().count());
+    }
+
+    @Test
+    void broadcastAfterCommit_OnRollback_ShouldNotBroadcast() throws InterruptedException {
+        TransactionSynchronizationManager.initSynchronization();
+        broadcaster.broadcastAfterCommit(message(1L, 1L));
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        broadcaster.destroy();
+
+        verifyNoInteractions(messagingTemplate, chatFanout);
+    }
+
+    @Test
+    void broadcastAfterCommit_ShouldKeepPerChatOrder() throws InterruptedException {
+        for (long id = 1; id <= 50; id++) {
+            broadcaster.broadcastAfterCommit(message(7L, id));
+        }
+        broadcaster.destroy();
+
+        ArgumentCaptor<ChatMessageDto> captor = ArgumentCaptor.forClass(ChatMessageDto.class);
+        verify(messagingTemplate, times(50)).convertAndSend(eq("/topic/chat/7"), captor.capture());
+        List<Long> ids = captor.getAllValues().stream().map(ChatMessageDto::getId).toList();
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i + 1L, ids.get(i));
+        }
+    }
+
+    @Test
+    void broadcastRelayed_ShouldDeliverWithoutRelayingAgain() throws InterruptedException {
+        broadcaster.broadcastRelayed(message(1L, 1L));
+        broadcaster.destroy();
+
+        verify(messagingTemplate).convertAndSend(eq("/topic/chat/1"), any(ChatMessageDto.class));
+        verifyNoInteractions(chatFanout);
+        assertEquals(1, meterRegistry.get("chat.broadcast.delivery").timer().count());
+    }
+
+    private static ChatMessageDto message(Long chatId, Long id) {
+        ChatMessageDto message = new ChatMessageDto();
+        message.setChatId(chatId);
+        message.setId(id);
+        message.setContent("content " + id);
+        return message;
+    }
+}
@@ -0,0 +1,36 @@
+package com.soika.chat.service;
+
+import com.soika.chat.repository.ChatMessagePartitionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class ChatMessagePartitionServiceTest {
+
+    private final ChatMessagePartitionRepository repository = mock(ChatMessagePartitionRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatMessagePartitionService service = new ChatMessagePartitionService(repository, meterRegistry, 4);
+
+    @Test
+    void createPartitions_ShouldKeepConfiguredPartitionsAhead() {
+        when(repository.createPartitions(4)).thenReturn(2, 0);
+
+        service.createPartitions();
+        service.createPartitions();
+
+        verify(repository, times(2)).createPartitions(4);
+        assertEquals(2.0, meterRegistry.get("chat.messages.partitions.created").counter().count());
+    }
+
+    @Test
+    void createPartitions_ShouldSurviveDatabaseErrors() {
+        when(repository.createPartitions(4)).thenThrow(new QueryTimeoutException("lock timeout"));
+
+        assertDoesNotThrow(service::createPartitions);
+        assertEquals(0.0, meterRegistry.get("chat.messages.partitions.created").counter().count());
+    }
+}
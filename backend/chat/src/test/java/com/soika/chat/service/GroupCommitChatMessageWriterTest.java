@@ -0,0 +1,149 @@
+package com.soika.chat.service;
+
+import com.soika.chat.model.dto.ChatMessageDto;
+import com.soika.chat.model.entity.Chat;
+import com.soika.chat.model.entity.ChatMessage;
+import com.soika.chat.repository.ChatMessageBatchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class GroupCommitChatMessageWriterTest {
+
+    private final ChatMessageBatchRepository repository = mock(ChatMessageBatchRepository.class);
+    private final ChatMessageBroadcaster broadcaster = mock(ChatMessageBroadcaster.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final AtomicLong ids = new AtomicLong();
+    private final ConcurrentLinkedQueue<Integer> batchSizes = new ConcurrentLinkedQueue<>();
+    private final CountDownLatch stalled = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private GroupCommitChatMessageWriter writer;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        writer.destroy();
+    }
+
+    @Test
+    void write_ConcurrentMessages_ShouldBeCommittedTogetherInArrivalOrder() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(repository.reserveIds(anyInt())).thenAnswer(invocation -> reserve(invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            List<ChatMessage> messages = invocation.getArgument(0);
+            batchSizes.add(messages.size());
+            return null;
+        }).when(repository).insertAll(anyList());
+        writer = writer(Duration.ofMillis(50));
+
+        List<CompletableFuture<ChatMessageDto>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ChatMessage message = message("m" + i);
+            futures.add(CompletableFuture.supplyAsync(() -> writer.write(message)));
+        }
+        List<ChatMessageDto> written = futures.stream().map(CompletableFuture::join).toList();
+
+        assertEquals(20, written.stream().map(ChatMessageDto::getId).distinct().count());
+        assertTrue(batchSizes.stream().anyMatch(size -> size > 1), "batches: " + batchSizes);
+        verify(transactionManager, times(batchSizes.size())).commit(any());
+        verify(repository, times(batchSizes.size())).reserveIds(anyInt());
+        verify(broadcaster, times(20)).broadcastAfterCommit(any(ChatMessageDto.class));
+    }
+
+    @Test
+    void write_WhenBatchFails_ShouldRetryMessagesIndividually() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(repository.reserveIds(anyInt())).thenAnswer(invocation -> reserve(invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            List<ChatMessage> messages = invocation.getArgument(0);
+            if (messages.stream().anyMatch(message -> message.getContent().equals("bad"))) {
+                throw new DataIntegrityViolationException("bad message");
+            }
+            return null;
+        }).when(repository).insertAll(anyList());
+        writer = writer(Duration.ofMillis(200));
+
+        CompletableFuture<ChatMessageDto> good = CompletableFuture.supplyAsync(() -> writer.write(message("good")));
+        CompletableFuture<ChatMessageDto> bad = CompletableFuture.supplyAsync(() -> writer.write(message("bad")));
+
+        assertNotNull(good.join().getId());
+        assertThrows(Exception.class, bad::join);
+    }
+
+    @Test
+    void write_WhenWriterStalls_ShouldFailAfterTimeout() {
+        stallInserts();
+        writer = writer(Duration.ZERO, Duration.ofMillis(100));
+
+        assertThrows(QueryTimeoutException.class, () -> writer.write(message("stuck")));
+    }
+
+    @Test
+    void destroy_ShouldFailWritesStillQueued() throws InterruptedException {
+        stallInserts();
+        writer = writer(Duration.ZERO, Duration.ofMinutes(1));
+        CompletableFuture.runAsync(() -> writer.write(message("stuck")));
+        stalled.await();
+        CompletableFuture<ChatMessageDto> queued = CompletableFuture.supplyAsync(() -> writer.write(message("queued")));
+        Thread.sleep(50);
+
+        writer.destroy();
+
+        CompletionException e = assertThrows(CompletionException.class, queued::join);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+
+    private void stallInserts() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(repository.reserveIds(anyInt())).thenAnswer(invocation -> reserve(invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            stalled.countDown();
+            release.await();
+            return null;
+        }).when(repository).insertAll(anyList());
+    }
+
+    private GroupCommitChatMessageWriter writer(Duration window) {
+        return writer(window, Duration.ofSeconds(5));
+    }
+
+    private GroupCommitChatMessageWriter writer(Duration window, Duration writeTimeout) {
+        return new GroupCommitChatMessageWriter(
+                repository, broadcaster, transactionManager, new SimpleMeterRegistry(), window, 50, 100, writeTimeout);
+    }
+
+    private List<Long> reserve(int count) {
+        return LongStream.range(0, count).mapToObj(i -> ids.incrementAndGet()).toList();
+    }
+
+    private static ChatMessage message(String content) {
+        Chat chat = new Chat();
+        chat.setId(1L);
+        ChatMessage message = new ChatMessage();
+        message.setChat(chat);
+        message.setSender("sender");
+        message.setContent(content);
+        return message;
+    }
+}
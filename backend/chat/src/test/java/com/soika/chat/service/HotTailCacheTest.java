@@ -0,0 +1,139 @@
+package com.soika.chat.service;
+
+import com.soika.chat.fanout.ChatFanout;
+import com.soika.chat.model.dto.ChatMessageDto;
+import com.soika.chat.model.entity.Chat;
+import com.soika.chat.model.entity.ChatMessage;
+import com.soika.chat.model.entity.User;
+import com.soika.chat.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class HotTailCacheTest {
+
+    private final ChatMessageRepository repository = mock(ChatMessageRepository.class);
+    private final ChatFanout chatFanout = mock(ChatFanout.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final HotTailCache cache = new HotTailCache(repository, chatFanout, meterRegistry, 3, DataSize.ofMegabytes(1), 2);
+
+    @Test
+    void newest_ShouldLoadOnceThenServeCommittedMessagesFromMemory() {
+        when(repository.findByChatIdOrderByIdDesc(1L, Limit.of(3))).thenReturn(messages(1L, 2, 1));
+
+        assertEquals(List.of(1L, 2L), ids(cache.newest(1L, 2)));
+        cache.onMessage(dto(1L, 3));
+        cache.onMessage(dto(1L, 4));
+
+        assertEquals(List.of(3L, 4L), ids(cache.newest(1L, 2)));
+        assertEquals(List.of(2L, 3L, 4L), ids(cache.newest(1L, 3)));
+        verify(repository, times(1)).findByChatIdOrderByIdDesc(any(), any());
+        assertEquals(2.0, meterRegistry.get("chat.history.hot-tail.requests").tag("result", "hit").counter().count());
+        assertTrue(meterRegistry.get("chat.history.hot-tail.bytes").gauge().value() > 0);
+    }
+
+    @Test
+    void newest_ShouldReloadOnceTheFanOutWasInterrupted() {
+        when(chatFanout.listenEpoch(1L)).thenReturn(1L, 2L);
+        when(repository.findByChatIdOrderByIdDesc(1L, Limit.of(3))).thenReturn(messages(1L, 1));
+
+        cache.newest(1L, 3);
+        cache.newest(1L, 3);
+
+        verify(repository, times(2)).findByChatIdOrderByIdDesc(any(), any());
+    }
+
+    @Test
+    void newest_ShouldNotCacheChatsTheFanOutDoesNotRelay() {
+        when(chatFanout.listenEpoch(1L)).thenReturn(-1L);
+        when(repository.findByChatIdOrderByIdDesc(1L, Limit.of(3))).thenReturn(messages(1L, 1));
+
+        cache.newest(1L, 3);
+        cache.onMessage(dto(1L, 2));
+        cache.newest(1L, 3);
+
+        verify(repository, times(2)).findByChatIdOrderByIdDesc(any(), any());
+        assertNull(cache.after(1L, 0));
+    }
+
+    @Test
+    void lastMessageId_ShouldComeFromTheTailOnceLoaded() {
+        when(repository.findLastMessageId(1L)).thenReturn(2L);
+        when(repository.findByChatIdOrderByIdDesc(1L, Limit.of(3))).thenReturn(messages(1L, 2, 1));
+
+        assertEquals(2L, cache.lastMessageId(1L));
+        cache.newest(1L, 3);
+        cache.onMessage(dto(1L, 3));
+
+        assertEquals(3L, cache.lastMessageId(1L));
+        verify(repository, times(1)).findLastMessageId(1L);
+    }
+
+    @Test
+    void after_ShouldAnswerOnlyGapsTheTailCovers() {
+        when(repository.findByChatIdOrderByIdDesc(eq(1L), any())).thenReturn(messages(1L, 12, 11, 10));
+        cache.newest(1L, 3);
+
+        assertEquals(List.of(12L), ids(cache.after(1L, 11)));
+        assertEquals(List.of(), ids(cache.after(1L, 12)));
+        // Full at load time: the chat may have older messages the tail never saw
+        assertNull(cache.after(1L, 5));
+    }
+
+    @Test
+    void before_ShouldAnswerOnlyPagesTheTailCovers() {
+        when(repository.findByChatIdOrderByIdDesc(eq(1L), any())).thenReturn(messages(1L, 12, 11, 10));
+        cache.newest(1L, 3);
+
+        assertEquals(List.of(10L, 11L), ids(cache.before(1L, 12, 2)));
+        assertNull(cache.before(1L, 12, 3));
+        assertNull(cache.before(2L, 12, 1));
+    }
+
+    @Test
+    void overlap_ShouldReadBackFromTheTailOrTheDatabase() {
+        when(repository.findByChatIdOrderByIdDesc(eq(1L), any())).thenReturn(messages(1L, 12, 11, 10));
+        when(repository.findByChatIdAndIdLessThanOrderByIdDesc(1L, 11L, Limit.of(2))).thenReturn(messages(1L, 10, 9));
+        cache.newest(1L, 3);
+
+        assertEquals(List.of(11L, 12L), ids(cache.overlap(1L, 12)));
+        assertEquals(List.of(9L, 10L), ids(cache.overlap(1L, 10)));
+        assertEquals(List.of(), ids(cache.overlap(1L, 0)));
+    }
+
+    private static List<Long> ids(List<ChatMessageDto> messages) {
+        return messages.stream().map(ChatMessageDto::getId).toList();
+    }
+
+    private static ChatMessageDto dto(Long chatId, long id) {
+        ChatMessageDto message = new ChatMessageDto();
+        message.setId(id);
+        message.setChatId(chatId);
+        message.setContent("m" + id);
+        return message;
+    }
+
+    private static List<ChatMessage> messages(Long chatId, long... ids) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        User user = new User();
+        user.setId(7L);
+        return LongStream.of(ids).mapToObj(id -> {
+            ChatMessage message = new ChatMessage();
+            message.setId(id);
+            message.setChat(chat);
+            message.setUser(user);
+            message.setContent("m" + id);
+            return message;
+        }).toList();
+    }
+}
@@ -0,0 +1,75 @@
+package com.soika.chat.service;
+
+import com.soika.chat.model.dto.ChatMessageDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageRingTest {
+
+    @Test
+    void add_ShouldKeepTheNewestMessagesInIdOrder() {
+        MessageRing ring = new MessageRing(50);
+        TreeSet<Long> expected = new TreeSet<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 5_000; i++) {
+            // Mostly increasing, with late and repeated ids as out-of-order commits and relays produce
+            long id = i + 1 - random.nextInt(80);
+            if (id < 1) {
+                continue;
+            }
+            boolean older = expected.size() == 50 && id < expected.first();
+            ring.add(message(id));
+            if (!older) {
+                expected.add(id);
+                if (expected.size() > 50) {
+                    expected.pollFirst();
+                }
+            }
+        }
+
+        assertFalse(ring.isComplete());
+        assertEquals(List.copyOf(expected), ids(ring.newest(50)));
+        assertEquals(List.copyOf(expected.tailSet(expected.last() - 10, false)), ids(ring.after(expected.last() - 10)));
+        assertNull(ring.after(expected.first() - 2));
+        List<Long> older = List.copyOf(expected.headSet(expected.last() - 10));
+        assertEquals(older.subList(older.size() - 5, older.size()), ids(ring.before(expected.last() - 10, 5)));
+        assertNull(ring.before(expected.last() - 10, 50));
+    }
+
+    @Test
+    void add_ShouldStayCompleteUntilAMessageFallsOff() {
+        MessageRing ring = new MessageRing(3);
+        ring.add(message(2));
+        ring.add(message(1));
+        ring.add(message(2));
+
+        assertTrue(ring.isComplete());
+        assertEquals(List.of(1L, 2L), ids(ring.after(0)));
+        assertEquals(List.of(1L), ids(ring.before(2, 10)));
+        assertEquals(2 * MessageRing.estimateBytes(message(1)), ring.bytes());
+
+        ring.add(message(3));
+        ring.add(message(4));
+
+        assertFalse(ring.isComplete());
+        assertEquals(List.of(2L, 3L, 4L), ids(ring.newest(10)));
+        assertNull(ring.after(0));
+    }
+
+    private static List<Long> ids(List<ChatMessageDto> messages) {
+        return messages.stream().map(ChatMessageDto::getId).toList();
+    }
+
+    private static ChatMessageDto message(long id) {
+        ChatMessageDto message = new ChatMessageDto();
+        message.setId(id);
+        message.setChatId(1L);
+        message.setContent("m");
+        return message;
+    }
+}
@@ -0,0 +1,120 @@
+package com.soika.chat.service;
+
+import com.soika.chat.config.ws_security.ChatSubscriptionTracker;
+import com.soika.chat.config.ws_security.SlowConsumerHandlerDecoratorFactory;
+import com.soika.chat.config.ws_security.UserSessionsChangedEvent;
+import com.soika.chat.config.ws_security.WebSocketAuthContext;
+import com.soika.chat.model.dto.ChatPresenceDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PresenceServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatMembershipIndex membershipIndex = mock(ChatMembershipIndex.class);
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private PresenceService presenceService;
+    private WebSocketAuthContext authContext;
+
+    @BeforeEach
+    void setUp() {
+        authContext = new WebSocketAuthContext(
+                event -> presenceService.onUserSessionsChanged((UserSessionsChangedEvent) event),
+                mock(SlowConsumerHandlerDecoratorFactory.class),
+                meterRegistry, Duration.ofMinutes(30));
+        presenceService = new PresenceService(authContext, membershipIndex, mock(ChatSubscriptionTracker.class),
+                messagingTemplate, meterRegistry, Duration.ofSeconds(1), Duration.ofSeconds(5));
+        when(membershipIndex.memberIds(1L)).thenReturn(new long[]{1L, 2L, 3L});
+        when(membershipIndex.isMember(eq(1L), any())).thenAnswer(inv -> (Long) inv.getArgument(1) <= 3L);
+    }
+
+    @Test
+    void flush_ShouldSendSnapshotToNewSubscribersThenOnlyDiffs() {
+        authContext.register("s1", 1L, "a@x");
+        presenceService.subscribed(1L, true);
+        presenceService.flush();
+
+        ChatPresenceDto snapshot = lastUpdate();
+        assertTrue(snapshot.isSnapshot());
+        assertEquals(List.of(1L), snapshot.getOnline());
+
+        authContext.register("s2", 2L, "b@x");
+        authContext.register("s9", 9L, "z@x");
+        authContext.register("s3", 3L, "c@x");
+        authContext.remove("s3");
+        presenceService.flush();
+
+        ChatPresenceDto diff = lastUpdate();
+        assertFalse(diff.isSnapshot());
+        assertEquals(List.of(2L), diff.getOnline());
+        assertTrue(diff.getOffline().isEmpty());
+
+        presenceService.flush();
+        verify(messagingTemplate, times(2)).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void typing_ShouldBeCoalescedAndExpire() throws Exception {
+        presenceService = new PresenceService(authContext, membershipIndex, mock(ChatSubscriptionTracker.class),
+                messagingTemplate, meterRegistry, Duration.ofSeconds(1), Duration.ofMillis(50));
+        authContext.register("s1", 1L, "a@x");
+        presenceService.subscribed(1L, true);
+        presenceService.flush();
+
+        presenceService.typing(1L, 1L, true);
+        presenceService.typing(1L, 1L, true);
+        presenceService.typing(1L, 1L, true);
+        presenceService.flush();
+
+        assertEquals(List.of(1L), lastUpdate().getTyping());
+        assertEquals(2.0, meterRegistry.get("chat.presence.typing").tag("result", "coalesced").counter().count());
+
+        Thread.sleep(100);
+        presenceService.flush();
+        assertEquals(List.of(1L), lastUpdate().getStoppedTyping());
+    }
+
+    @Test
+    void typing_ShouldKeepNoStateForUnwatchedChats() {
+        authContext.register("s1", 1L, "a@x");
+        presenceService.typing(1L, 1L, true);
+        presenceService.flush();
+
+        verifyNoInteractions(messagingTemplate);
+        assertEquals(0.0, meterRegistry.get("chat.presence.chats").gauge().value());
+    }
+
+    @Test
+    void lastUnsubscribed_ShouldDropChat() {
+        presenceService.subscribed(1L, true);
+        presenceService.subscribed(1L, false);
+        assertEquals(1.0, meterRegistry.get("chat.presence.chats").gauge().value());
+
+        presenceService.lastUnsubscribed(1L);
+        assertEquals(0.0, meterRegistry.get("chat.presence.chats").gauge().value());
+    }
+
+    @Test
+    void chatId_ShouldOnlyMatchPresenceTopics() {
+        assertEquals(42L, PresenceService.chatId(PresenceService.topic(42L)));
+        assertNull(PresenceService.chatId("/topic/chat/42"));
+        assertNull(PresenceService.chatId("/topic/chat/abc/presence"));
+    }
+
+    private ChatPresenceDto lastUpdate() {
+        ArgumentCaptor<Object> sent = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, atLeastOnce()).convertAndSend(eq("/topic/chat/1/presence"), sent.capture());
+        return (ChatPresenceDto) sent.getValue();
+    }
+}
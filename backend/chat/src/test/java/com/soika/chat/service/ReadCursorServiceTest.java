@@ -0,0 +1,121 @@
+package com.soika.chat.service;
+
+import com.soika.chat.model.dto.ReadCursorDto;
+import com.soika.chat.repository.ReadCursorRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class ReadCursorServiceTest {
+
+    private final ReadCursorRepository repository = mock(ReadCursorRepository.class);
+    private final HotTailCache hotTail = mock(HotTailCache.class);
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReadCursorService service = new ReadCursorService(repository, hotTail, messagingTemplate, event -> { }, meterRegistry, 1000, 500);
+
+    @BeforeEach
+    void setUp() {
+        when(hotTail.lastMessageId(anyLong())).thenReturn(1000L);
+    }
+
+    @Test
+    void flush_ShouldWriteOneMonotonicRowPerMember() {
+        for (long messageId = 1; messageId <= 100; messageId++) {
+            service.markRead(1L, 7L, messageId);
+        }
+        service.markRead(1L, 7L, 50L);
+        service.markRead(2L, 7L, 5L);
+
+        service.flush();
+
+        List<Object[]> rows = captureAdvance();
+        assertEquals(2, rows.size());
+        assertArrayEquals(new Object[]{1L, 7L, 100L}, rows.get(0));
+        assertArrayEquals(new Object[]{2L, 7L, 5L}, rows.get(1));
+        assertEquals(1.0, meterRegistry.get("chat.read-cursors.updates").tag("result", "coalesced").counter().count());
+
+        service.flush();
+        verifyNoMoreInteractions(repository);
+    }
+
+    @Test
+    void markRead_ShouldClampToTheChatsLastMessage() {
+        when(hotTail.lastMessageId(3L)).thenReturn(40L);
+        when(hotTail.lastMessageId(4L)).thenReturn(0L);
+
+        service.markRead(3L, 7L, Long.MAX_VALUE);
+        service.markRead(4L, 7L, 5L);
+
+        assertEquals(40L, service.cachedCursor(3L, 7L));
+        assertNull(service.cachedCursor(4L, 7L));
+    }
+
+    @Test
+    void publishReceipts_ShouldSendLatestCursorsOncePerChat() {
+        service.markRead(1L, 7L, 10L);
+        service.markRead(1L, 7L, 12L);
+        service.markRead(1L, 8L, 11L);
+
+        service.publishReceipts();
+        service.publishReceipts();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ReadCursorDto>> sent = ArgumentCaptor.forClass(List.class);
+        verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/chat/1/receipts"), sent.capture());
+        assertEquals(2, sent.getValue().size());
+        assertTrue(sent.getValue().contains(new ReadCursorDto(7L, 12L)));
+    }
+
+    @Test
+    void flush_ShouldRetryTransientFailuresAndDropRowsThatCanNeverBeWritten() {
+        doThrow(new TransientDataAccessResourceException("down")).when(repository).advance(anyList());
+        service.markRead(1L, 7L, 10L);
+        service.flush();
+
+        reset(repository);
+        doAnswer(invocation -> {
+            List<Object[]> rows = invocation.getArgument(0);
+            if (rows.stream().anyMatch(row -> row[0].equals(2L))) {
+                throw new DataIntegrityViolationException("chat 2 is gone");
+            }
+            return null;
+        }).when(repository).advance(anyList());
+        service.markRead(2L, 7L, 3L);
+        service.flush();
+        service.flush();
+
+        verify(repository, times(3)).advance(anyList());
+        assertEquals(0.0, meterRegistry.get("chat.read-cursors.unflushed").gauge().value());
+    }
+
+    @Test
+    void getReadCursors_ShouldApplyUnflushedAdvances() {
+        when(repository.findByChatId(1L)).thenReturn(List.of(new ReadCursorDto(7L, 5L), new ReadCursorDto(8L, 9L)));
+        service.markRead(1L, 7L, 6L);
+
+        List<ReadCursorDto> cursors = service.getReadCursors(1L);
+
+        assertTrue(cursors.contains(new ReadCursorDto(7L, 6L)));
+        assertTrue(cursors.contains(new ReadCursorDto(8L, 9L)));
+    }
+
+    private List<Object[]> captureAdvance() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(repository).advance(rows.capture());
+        return rows.getValue();
+    }
+}
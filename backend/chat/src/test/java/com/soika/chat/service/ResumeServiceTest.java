@@ -0,0 +1,179 @@
+package com.soika.chat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soika.chat.config.ws_security.ChatAccessControl;
+import com.soika.chat.model.dto.ChatMessageDto;
+import com.soika.chat.model.dto.ResumeDto;
+import com.soika.chat.model.entity.Chat;
+import com.soika.chat.model.entity.ChatMessage;
+import com.soika.chat.model.entity.User;
+import com.soika.chat.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class ResumeServiceTest {
+
+    private final ChatMessageRepository repository = mock(ChatMessageRepository.class);
+    private final HotTailCache hotTail = mock(HotTailCache.class);
+    private final ChatAccessControl accessControl = mock(ChatAccessControl.class);
+    private final BlockingQueue<Message<?>> sent = new LinkedBlockingQueue<>();
+    private final MessageChannel outboundChannel = (message, timeout) -> sent.add(message);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ResumeService service = new ResumeService(
+            repository, hotTail, accessControl, outboundChannel, jsonTemplate(), meterRegistry, 3, 1, 10);
+
+    @BeforeEach
+    void setUp() {
+        when(hotTail.after(any(), anyLong())).thenReturn(null);
+        when(accessControl.canAccess("s1", 1L)).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        service.destroy();
+    }
+
+    @Test
+    void resume_ShouldReplayOnlyTheGap() {
+        when(repository.findByChatIdAndIdGreaterThanOrderByIdAsc(1L, 10L, Limit.of(4)))
+                .thenReturn(messages(1L, 11, 12));
+
+        ResumeDto result = service.resume(1L, 10L);
+
+        assertFalse(result.isReset());
+        assertEquals(List.of(11L, 12L), result.getMessages().stream().map(m -> m.getId()).toList());
+        assertEquals(1.0, meterRegistry.get("chat.resume").tag("result", "replayed").counter().count());
+    }
+
+    @Test
+    void resume_ShouldRepeatTheOverlapBeforeTheGap() {
+        // 10 committed after the client saw 11
+        when(hotTail.overlap(1L, 11L)).thenReturn(messages(1L, 10, 11).stream().map(ChatMessageDto::fromEntity).toList());
+        when(repository.findByChatIdAndIdGreaterThanOrderByIdAsc(1L, 11L, Limit.of(4)))
+                .thenReturn(messages(1L, 12, 13, 14));
+
+        ResumeDto result = service.resume(1L, 11L);
+
+        assertFalse(result.isReset());
+        assertEquals(List.of(10L, 11L, 12L, 13L, 14L), result.getMessages().stream().map(m -> m.getId()).toList());
+    }
+
+    @Test
+    void resume_ShouldServeTheGapFromTheHotTail() {
+        List<ChatMessageDto> cached = messages(1L, 11).stream().map(ChatMessageDto::fromEntity).toList();
+        when(hotTail.after(1L, 10L)).thenReturn(cached);
+
+        ResumeDto result = service.resume(1L, 10L);
+
+        assertEquals(cached, result.getMessages());
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void resume_ShouldResetWhenGapExceedsLimit() {
+        when(repository.findByChatIdAndIdGreaterThanOrderByIdAsc(1L, 10L, Limit.of(4)))
+                .thenReturn(messages(1L, 11, 12, 13, 14));
+
+        ResumeDto result = service.resume(1L, 10L);
+
+        assertTrue(result.isReset());
+        assertTrue(result.getMessages().isEmpty());
+        assertEquals(1.0, meterRegistry.get("chat.resume").tag("result", "reset").counter().count());
+    }
+
+    @Test
+    void onSubscribe_ShouldSendReplayToTheSubscriptionOnly() throws Exception {
+        when(repository.findByChatIdAndIdGreaterThanOrderByIdAsc(1L, 10L, Limit.of(4)))
+                .thenReturn(messages(1L, 11));
+
+        service.onSubscribe(subscribe("/topic/chat/1", "10"));
+
+        Message<?> frame = sent.poll(5, TimeUnit.SECONDS);
+        assertNotNull(frame);
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(frame);
+        assertEquals("s1", headers.getSessionId());
+        assertEquals("sub-0", headers.getSubscriptionId());
+        assertEquals("/topic/chat/1", headers.getDestination());
+        assertEquals("true", headers.getFirstNativeHeader(ResumeService.RESUME_HEADER));
+        ResumeDto body = new ObjectMapper().findAndRegisterModules()
+                .readValue((byte[]) frame.getPayload(), ResumeDto.class);
+        assertEquals(11L, body.getMessages().get(0).getId());
+    }
+
+    @Test
+    void onSubscribe_ShouldIgnoreSubscriptionsWithoutResumeHeader() throws InterruptedException {
+        service.onSubscribe(subscribe("/topic/chat/1", null));
+        service.onSubscribe(subscribe("/topic/chat/1/presence", "10"));
+        service.onSubscribe(subscribe("/topic/chat/1", "latest"));
+
+        verifyNoInteractions(repository);
+        assertNull(sent.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void onSubscribe_ShouldNotReplayChatsTheAclDenied() throws InterruptedException {
+        service.onSubscribe(subscribe("/topic/chat/2", "10"));
+
+        verifyNoInteractions(repository, hotTail);
+        assertNull(sent.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    private static SimpMessagingTemplate jsonTemplate() {
+        SimpMessagingTemplate template = new SimpMessagingTemplate(mock(MessageChannel.class));
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(new ObjectMapper().findAndRegisterModules());
+        template.setMessageConverter(converter);
+        return template;
+    }
+
+    private static SessionSubscribeEvent subscribe(String destination, String resumeFrom) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId("s1");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination(destination);
+        if (resumeFrom != null) {
+            accessor.setNativeHeader(ResumeService.RESUME_FROM_HEADER, resumeFrom);
+        }
+        return new SessionSubscribeEvent(new Object(), MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    private static List<ChatMessage> messages(Long chatId, long... ids) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        User user = new User();
+        user.setId(7L);
+        user.setEmail("a@x");
+        return LongStream.of(ids).mapToObj(id -> {
+            ChatMessage message = new ChatMessage();
+            message.setId(id);
+            message.setChat(chat);
+            message.setUser(user);
+            message.setSender("a");
+            message.setContent("m" + id);
+            return message;
+        }).toList();
+    }
+}
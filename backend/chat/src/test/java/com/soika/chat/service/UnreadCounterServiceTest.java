@@ -0,0 +1,78 @@
+package com.soika.chat.service;
+
+import com.soika.chat.model.dto.ChatMessageDto;
+import com.soika.chat.repository.UnreadCountRepository;
+import com.soika.chat.repository.UnreadCountRepository.UnreadCount;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UnreadCounterServiceTest {
+
+    private final UnreadCountRepository repository = mock(UnreadCountRepository.class);
+    private final ReadCursorService readCursorService = mock(ReadCursorService.class);
+    private final UnreadCounterService service = new UnreadCounterService(repository, readCursorService,
+            new SimpleMeterRegistry(), 999, Duration.ofMinutes(1), 1000, Duration.ofMinutes(10));
+
+    @Test
+    void getUnreadCounts_ShouldLoadOnceThenCountCommittedMessages() {
+        when(repository.countUnread(eq(7L), any(), any(), eq(999)))
+                .thenReturn(List.of(new UnreadCount(1L, 10L, 12L, 2)));
+
+        assertEquals(Map.of(1L, 2), service.getUnreadCounts(7L, List.of(1L)));
+
+        service.onMessage(message(1L, 13L, 8L));
+        service.onMessage(message(1L, 14L, 7L));
+        service.onMessage(message(1L, 9L, 8L));
+
+        assertEquals(Map.of(1L, 3), service.getUnreadCounts(7L, List.of(1L)));
+        verify(repository, times(1)).countUnread(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void onReadCursorAdvanced_ShouldResetAtTheEndAndRecountOtherwise() {
+        when(repository.countUnread(eq(7L), any(), any(), eq(999)))
+                .thenReturn(List.of(new UnreadCount(1L, 10L, 12L, 2)));
+        service.getUnreadCounts(7L, List.of(1L));
+
+        service.onReadCursorAdvanced(new ReadCursorAdvancedEvent(1L, 7L, 12L));
+        assertEquals(Map.of(1L, 0), service.getUnreadCounts(7L, List.of(1L)));
+
+        service.onMessage(message(1L, 13L, 8L));
+        service.onMessage(message(1L, 14L, 8L));
+        service.onReadCursorAdvanced(new ReadCursorAdvancedEvent(1L, 7L, 13L));
+        when(repository.countUnread(eq(7L), any(), any(), eq(999)))
+                .thenReturn(List.of(new UnreadCount(1L, 13L, 14L, 1)));
+
+        assertEquals(Map.of(1L, 1), service.getUnreadCounts(7L, List.of(1L)));
+        verify(repository, times(2)).countUnread(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getUnreadCounts_ShouldNotKeepCountThatRacedWithACommit() {
+        when(repository.countUnread(eq(7L), any(), any(), eq(999))).thenAnswer(invocation -> {
+            service.onMessage(message(1L, 13L, 8L));
+            return List.of(new UnreadCount(1L, 10L, 12L, 2));
+        });
+
+        assertEquals(Map.of(1L, 2), service.getUnreadCounts(7L, List.of(1L)));
+        service.getUnreadCounts(7L, List.of(1L));
+
+        verify(repository, times(2)).countUnread(any(), any(), any(), anyInt());
+    }
+
+    private static ChatMessageDto message(Long chatId, Long id, Long senderId) {
+        ChatMessageDto message = new ChatMessageDto();
+        message.setChatId(chatId);
+        message.setId(id);
+        message.setSenderId(senderId);
+        return message;
+    }
+}
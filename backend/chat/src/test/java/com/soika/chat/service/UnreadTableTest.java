@@ -0,0 +1,40 @@
+package com.soika.chat.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnreadTableTest {
+
+    @Test
+    void putAndRemove_ShouldBehaveLikeAMap() {
+        UnreadTable table = new UnreadTable();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            long userId = 1 + random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                table.remove(userId);
+                expected.remove(userId);
+            } else {
+                table.put(userId, userId * 10, i, 0);
+                expected.put(userId, i);
+            }
+        }
+
+        assertEquals(expected.size(), table.size());
+        for (long userId = 1; userId <= 500; userId++) {
+            int index = table.indexOf(userId);
+            if (expected.containsKey(userId)) {
+                assertEquals(expected.get(userId), table.count(index));
+                assertEquals(userId * 10, table.cursor(index));
+            } else {
+                assertEquals(-1, index);
+            }
+        }
+    }
+}
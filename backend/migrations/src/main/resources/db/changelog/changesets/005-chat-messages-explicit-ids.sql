@@ -0,0 +1,4 @@
+-- Chat message ids are drawn from this sequence before the insert and written explicitly, so that
+-- inserts can be batched; the identity has to accept explicit ids. The step stays 1, one id per
+-- message
+ALTER TABLE chat_messages ALTER COLUMN id SET GENERATED BY DEFAULT;
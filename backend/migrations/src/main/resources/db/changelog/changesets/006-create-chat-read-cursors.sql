@@ -0,0 +1,7 @@
+-- Last message each member has read, one narrow row per member so cursor updates stay HOT
+CREATE TABLE IF NOT EXISTS chat_read_cursors (
+    chat_id BIGINT NOT NULL REFERENCES chats(id) ON DELETE CASCADE,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    last_read_message_id BIGINT NOT NULL,
+    primary key (chat_id, user_id)
+);
@@ -0,0 +1,3 @@
+-- Range scans over one chat's messages by id: unread counts now, history pages later.
+-- Built without blocking writes, so the changeset runs outside a transaction
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_messages_chat_id_id ON chat_messages(chat_id, id);
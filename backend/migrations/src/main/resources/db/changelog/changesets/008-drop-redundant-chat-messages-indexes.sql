@@ -0,0 +1,4 @@
+-- (chat_id, id) from 007 serves every per-chat lookup, including the cascade from chats;
+-- nothing reads chat_messages by timestamp since history pages by id
+DROP INDEX CONCURRENTLY IF EXISTS idx_chat_messages_chat_id;
+DROP INDEX CONCURRENTLY IF EXISTS idx_chat_messages_timestamp;
@@ -0,0 +1,79 @@
+-- chat_messages partitioned by id range. Lookups by id or (chat_id, id) touch only the partitions
+-- their ids fall in, and ids come from one increasing sequence, so new rows go to the newest
+-- partitions and older ones mostly stop changing. Takes over the name chat_messages in 011, once
+-- 010 has copied the rows
+CREATE TABLE IF NOT EXISTS chat_messages_partitioned (
+    id bigint NOT NULL,
+    chat_id BIGINT NOT NULL REFERENCES chats(id) ON DELETE CASCADE,
+    sender VARCHAR(255) NOT NULL,
+    content TEXT NOT NULL,
+    timestamp TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    user_id bigint,
+    CONSTRAINT chat_messages_partitioned_pkey PRIMARY KEY (id)
+) PARTITION BY RANGE (id);
+
+CREATE INDEX IF NOT EXISTS idx_chat_messages_partitioned_chat_id_id ON chat_messages_partitioned(chat_id, id);
+
+-- Creates the missing partitions of 10M ids each up to `ahead` partitions past both the sequence
+-- and the highest stored id, so inserts never run out of range. The chat service calls it
+-- periodically; the advisory lock lets several instances do so at once
+CREATE OR REPLACE FUNCTION chat_messages_create_partitions(ahead integer DEFAULT 4) RETURNS integer
+    LANGUAGE plpgsql
+    SET lock_timeout = '5s'
+AS $$
+DECLARE
+    step CONSTANT bigint := 10000000;
+    parent regclass := coalesce(to_regclass('chat_messages_partitioned'), 'chat_messages'::regclass);
+    highest bigint;
+    partition_name text;
+    created integer := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('chat_messages_create_partitions'));
+    SELECT greatest(last_value, (SELECT coalesce(max(id), 0) FROM chat_messages))
+    INTO highest
+    FROM chat_messages_id_seq;
+    FOR i IN 0 .. highest / step + ahead LOOP
+        partition_name := format('chat_messages_p%s', lpad(i::text, 5, '0'));
+        IF to_regclass(partition_name) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I PARTITION OF %s FOR VALUES FROM (%s) TO (%s)',
+                           partition_name, parent, i * step, (i + 1) * step);
+            created := created + 1;
+        END IF;
+    END LOOP;
+    RETURN created;
+END;
+$$;
+
+SELECT chat_messages_create_partitions();
+
+-- Until the swap every write to chat_messages is repeated on the partitioned table, so the
+-- backfill only has to copy what was there when this trigger was created
+CREATE OR REPLACE FUNCTION chat_messages_mirror() RETURNS trigger
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        DELETE FROM chat_messages_partitioned WHERE id = OLD.id;
+        RETURN OLD;
+    END IF;
+    INSERT INTO chat_messages_partitioned (id, chat_id, sender, content, timestamp, created_at, updated_at, user_id)
+    VALUES (NEW.id, NEW.chat_id, NEW.sender, NEW.content, NEW.timestamp, NEW.created_at, NEW.updated_at, NEW.user_id)
+    ON CONFLICT (id) DO UPDATE
+    SET chat_id = EXCLUDED.chat_id,
+        sender = EXCLUDED.sender,
+        content = EXCLUDED.content,
+        timestamp = EXCLUDED.timestamp,
+        created_at = EXCLUDED.created_at,
+        updated_at = EXCLUDED.updated_at,
+        user_id = EXCLUDED.user_id;
+    RETURN NEW;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS chat_messages_mirror ON chat_messages;
+
+CREATE TRIGGER chat_messages_mirror
+    AFTER INSERT OR UPDATE OR DELETE ON chat_messages
+    FOR EACH ROW EXECUTE FUNCTION chat_messages_mirror();
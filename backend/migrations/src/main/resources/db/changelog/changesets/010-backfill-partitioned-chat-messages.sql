@@ -0,0 +1,31 @@
+-- Copies chat_messages into the partitioned table in id order, committing every batch so that no
+-- long transaction holds back vacuum or replication. Rows are share-locked while a batch copies
+-- them: a concurrent update or delete waits and then reaches the copy through the mirror trigger.
+-- Rows above the starting maximum were all written after the trigger and are already there.
+-- Rerunnable; copied rows are skipped
+CREATE OR REPLACE PROCEDURE chat_messages_backfill(batch_size integer DEFAULT 10000)
+    LANGUAGE plpgsql
+AS $$
+DECLARE
+    last_id bigint := 0;
+    max_id bigint;
+BEGIN
+    SELECT coalesce(max(id), 0) INTO max_id FROM chat_messages;
+    WHILE last_id < max_id LOOP
+        WITH batch AS (
+            SELECT id, chat_id, sender, content, timestamp, created_at, updated_at, user_id
+            FROM chat_messages
+            WHERE id > last_id AND id <= max_id
+            ORDER BY id
+            LIMIT batch_size
+            FOR SHARE
+        ), copied AS (
+            INSERT INTO chat_messages_partitioned (id, chat_id, sender, content, timestamp, created_at, updated_at, user_id)
+            SELECT id, chat_id, sender, content, timestamp, created_at, updated_at, user_id FROM batch
+            ON CONFLICT (id) DO NOTHING
+        )
+        SELECT coalesce(max(id), max_id) INTO last_id FROM batch;
+        COMMIT;
+    END LOOP;
+END;
+$$;
@@ -0,0 +1,23 @@
+-- The partitioned table takes over the name, indexes and id sequence of chat_messages in one short
+-- transaction. The old table stays as chat_messages_unpartitioned until it is dropped by hand
+LOCK TABLE chat_messages IN ACCESS EXCLUSIVE MODE;
+
+DROP TRIGGER chat_messages_mirror ON chat_messages;
+DROP FUNCTION chat_messages_mirror();
+DROP PROCEDURE chat_messages_backfill(integer);
+
+ALTER TABLE chat_messages RENAME TO chat_messages_unpartitioned;
+ALTER INDEX chat_messages_pkey RENAME TO chat_messages_unpartitioned_pkey;
+ALTER INDEX idx_chat_messages_chat_id_id RENAME TO idx_chat_messages_unpartitioned_chat_id_id;
+ALTER SEQUENCE chat_messages_id_seq RENAME TO chat_messages_unpartitioned_id_seq;
+
+-- Partitioned tables cannot have identity columns, so the ids continue in a plain sequence
+CREATE SEQUENCE chat_messages_id_seq;
+SELECT setval('chat_messages_id_seq', last_value) FROM chat_messages_unpartitioned_id_seq;
+
+ALTER TABLE chat_messages_partitioned RENAME TO chat_messages;
+ALTER INDEX chat_messages_partitioned_pkey RENAME TO chat_messages_pkey;
+ALTER INDEX idx_chat_messages_partitioned_chat_id_id RENAME TO idx_chat_messages_chat_id_id;
+ALTER TABLE chat_messages RENAME CONSTRAINT chat_messages_partitioned_chat_id_fkey TO chat_messages_chat_id_fkey;
+ALTER TABLE chat_messages ALTER COLUMN id SET DEFAULT nextval('chat_messages_id_seq');
+ALTER SEQUENCE chat_messages_id_seq OWNED BY chat_messages.id;
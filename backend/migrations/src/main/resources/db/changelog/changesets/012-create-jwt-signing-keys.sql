@@ -0,0 +1,10 @@
+-- RS256 signing keys shared by every auth_provider instance: the newest activated key signs,
+-- older activated ones still verify, and a pending one is published before a rotation promotes it
+CREATE TABLE IF NOT EXISTS jwt_signing_keys (
+    kid VARCHAR(32) NOT NULL,
+    private_key TEXT NOT NULL,
+    public_key TEXT NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    activated_at TIMESTAMP WITH TIME ZONE,
+    PRIMARY KEY (kid)
+);
@@ -0,0 +1,9 @@
+-- Chat membership, so far created by Hibernate on the chat service's first start; declared here
+-- with the same shape so the index below has a table to go on in a fresh database
+CREATE TABLE IF NOT EXISTS user_chat (
+    id bigint generated by default as identity,
+    user_id BIGINT NOT NULL REFERENCES users(id),
+    chat_id BIGINT NOT NULL REFERENCES chats(id),
+    role VARCHAR(255) NOT NULL CHECK (role IN ('ADMIN', 'MEMBER')),
+    primary key (id)
+);
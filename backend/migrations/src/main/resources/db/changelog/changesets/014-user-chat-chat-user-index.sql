@@ -0,0 +1,3 @@
+-- Membership lookups and the member lists loaded into the in-memory index go by chat first.
+-- Built without blocking writes, so the changeset runs outside a transaction
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_user_chat_chat_user ON user_chat(chat_id, user_id);
@@ -33,6 +33,9 @@ export const ChatWindow: React.FC<ChatWindowProps> = ({ chatId, isPersonal }) =>
     const maxPanelWidth = 500;
     const isResizing = useRef(false);
     const messagesEndRef = useRef<HTMLDivElement>(null);
+    // Highest message id received, sent as resume-from when the subscription is renewed; the replay
+    // also repeats a few ids below it, since one of those may have committed after it was delivered
+    const lastSeenId = useRef<number | null>(null);
 
     useEffect(() => {
         if (!user && !loading) {
@@ -53,9 +56,30 @@ export const ChatWindow: React.FC<ChatWindowProps> = ({ chatId, isPersonal }) =>
     }, [user, loading, chatId]);
 
     useEffect(() => {
+        lastSeenId.current = null;
+
+        const trackLastSeen = (received: Message[]) => {
+            received.forEach(message => {
+                if (lastSeenId.current === null || message.id > lastSeenId.current) {
+                    lastSeenId.current = message.id;
+                }
+            });
+        };
+
+        // A replay may overlap messages already delivered live, and a late commit can arrive below the newest id
+        const appendMessages = (received: Message[]) => {
+            trackLastSeen(received);
+            setMessages(prev => {
+                const known = new Set(prev.map(message => message.id));
+                const fresh = received.filter(message => !known.has(message.id));
+                return fresh.length > 0 ? [...prev, ...fresh].sort((a, b) => a.id - b.id) : prev;
+            });
+        };
+
         const fetchMessages = async () => {
             try {
                 const data = await chatService.getChatMessages(chatId);
+                trackLastSeen(data);
                 setMessages(data);
             } catch (err) {
                 setError('Failed to load messages');
@@ -71,9 +95,16 @@ export const ChatWindow: React.FC<ChatWindowProps> = ({ chatId, isPersonal }) =>
         const setupWebSocket = async () => {
             try {
                 // Subscribe to chat messages
-                await websocketService.subscribe(`/topic/chat/${chatId}`, (message: Message) => {
-                    setMessages(prev => [...prev, message]);
-                });
+                await websocketService.subscribe(`/topic/chat/${chatId}`, (payload: any, headers) => {
+                    if (!headers['resume']) {
+                        appendMessages([payload]);
+                    } else if (payload.reset) {
+                        // Missed too much to replay
+                        fetchMessages();
+                    } else {
+                        appendMessages(payload.messages);
+                    }
+                }, () => lastSeenId.current !== null ? { 'resume-from': String(lastSeenId.current) } : {});
 
                 // Subscribe to error messages
                 await websocketService.subscribe('/user/queue/errors', (error: string) => {
@@ -1,5 +1,6 @@
 export const API_CONFIG = {
     AUTH_API_URL: 'http://51.250.44.113:8080/api',
     CHAT_API_URL: 'http://51.250.44.113:8081/api',
-    WS_URL: 'http://51.250.44.113:8081/ws'
+    WS_URL: 'http://51.250.44.113:8081/ws',
+    WS_NATIVE_URL: 'ws://51.250.44.113:8081/ws-native'
 } as const; 
\ No newline at end of file
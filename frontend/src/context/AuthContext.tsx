@@ -62,6 +62,7 @@ export const AuthProvider: React.FC<{ children: React.ReactNode }> = ({ children
     } catch (error) {
       console.error('Auth check failed:', error);
       localStorage.removeItem('token');
+      localStorage.removeItem('refreshToken');
       setUser(null);
       chatService.clearChats();
     } finally {
@@ -73,6 +74,7 @@ export const AuthProvider: React.FC<{ children: React.ReactNode }> = ({ children
     try {
       const response = await axios.post('/auth/login', { email, password });
       localStorage.setItem('token', response.data.token);
+      localStorage.setItem('refreshToken', response.data.refreshToken);
       await checkAuth();
     } catch (error) {
       console.error('Login failed:', error);
@@ -88,6 +90,7 @@ export const AuthProvider: React.FC<{ children: React.ReactNode }> = ({ children
         username
       });
       localStorage.setItem('token', response.data.token);
+      localStorage.setItem('refreshToken', response.data.refreshToken);
       await checkAuth();
     } catch (error) {
       console.error('Registration failed:', error);
@@ -96,6 +99,15 @@ export const AuthProvider: React.FC<{ children: React.ReactNode }> = ({ children
   };
 
   const logout = () => {
+    // Отзываем токены на сервере, не дожидаясь ответа
+    const token = localStorage.getItem('token');
+    const refreshToken = localStorage.getItem('refreshToken');
+    if (token || refreshToken) {
+      axios.post('/auth/logout', { refreshToken }, {
+        headers: token ? { Authorization: `Bearer ${token}` } : {}
+      }).catch(error => console.error('Logout request failed:', error));
+    }
+
     // Очищаем localStorage
     localStorage.clear();
     
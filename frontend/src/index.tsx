@@ -4,11 +4,34 @@ import './index.css';
 import App from './App';
 import axios from 'axios';
 import { API_CONFIG } from './config';
+import { refreshAccessToken } from './services/authTokens';
 
 // Configure axios defaults
 axios.defaults.baseURL = API_CONFIG.AUTH_API_URL;
 axios.defaults.headers.common['Content-Type'] = 'application/json';
 
+// Refresh once on 401/403 and replay the request
+const AUTH_ENDPOINTS = ['/auth/login', '/auth/register', '/auth/refresh', '/auth/logout'];
+
+axios.interceptors.response.use(undefined, async error => {
+  const original = error.config;
+  const status = error.response?.status;
+  const refreshToken = localStorage.getItem('refreshToken');
+  if (!original || original._retried || !refreshToken || (status !== 401 && status !== 403)
+      || AUTH_ENDPOINTS.some(endpoint => original.url?.endsWith(endpoint))) {
+    return Promise.reject(error);
+  }
+
+  original._retried = true;
+  try {
+    const token = await refreshAccessToken(refreshToken);
+    original.headers['Authorization'] = `Bearer ${token}`;
+    return axios(original);
+  } catch {
+    return Promise.reject(error);
+  }
+});
+
 const root = ReactDOM.createRoot(
   document.getElementById('root') as HTMLElement
 );
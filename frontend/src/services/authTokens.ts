@@ -0,0 +1,62 @@
+import axios from 'axios';
+
+// Access tokens live 15 minutes. Concurrent callers share one refresh, since a refresh token can be used only once.
+let refreshing: Promise<string> | null = null;
+
+// A token this close to expiry is refreshed before it is sent
+const EXPIRY_MARGIN_MS = 30_000;
+
+// Tabs share the stored refresh token, so they refresh under one lock; presenting a token another tab has
+// already rotated would count as reuse and end every session of the user
+const REFRESH_LOCK = 'auth-refresh';
+
+const rotate = async (refreshToken: string): Promise<string> => {
+  const current = localStorage.getItem('refreshToken');
+  if (current !== refreshToken) {
+    // Rotated by another tab while this one waited, or signed out there
+    const token = localStorage.getItem('token');
+    if (current && token) {
+      return token;
+    }
+    throw new Error('Signed out');
+  }
+  const response = await axios.post('/auth/refresh', { refreshToken });
+  localStorage.setItem('token', response.data.token);
+  localStorage.setItem('refreshToken', response.data.refreshToken);
+  return response.data.token as string;
+};
+
+export const refreshAccessToken = (refreshToken: string): Promise<string> => {
+  if (!refreshing) {
+    const run = () => rotate(refreshToken);
+    refreshing = ('locks' in navigator ? navigator.locks.request(REFRESH_LOCK, run) : run())
+      .finally(() => {
+        refreshing = null;
+      });
+  }
+  return refreshing;
+};
+
+const expiresAt = (token: string): number | null => {
+  try {
+    const payload = JSON.parse(atob(token.split('.')[1].replace(/-/g, '+').replace(/_/g, '/')));
+    return typeof payload.exp === 'number' ? payload.exp * 1000 : null;
+  } catch {
+    return null;
+  }
+};
+
+// The stored access token, refreshed first when it is missing or about to expire
+export const freshAccessToken = async (): Promise<string | null> => {
+  const token = localStorage.getItem('token');
+  const refreshToken = localStorage.getItem('refreshToken');
+  const expiry = token ? expiresAt(token) : null;
+  if (!refreshToken || (token && (expiry === null || expiry - Date.now() > EXPIRY_MARGIN_MS))) {
+    return token;
+  }
+  try {
+    return await refreshAccessToken(refreshToken);
+  } catch {
+    return token;
+  }
+};
@@ -1,12 +1,23 @@
 import { API_CONFIG } from '../config';
 import SockJS from 'sockjs-client';
 import { Client, StompHeaders } from '@stomp/stompjs';
+import { freshAccessToken } from './authTokens';
+
+type MessageCallback = (message: any, headers: StompHeaders) => void;
+
+interface ActiveSubscription {
+    callback: MessageCallback;
+    // Extra SUBSCRIBE headers, evaluated again on every resubscription
+    subscribeHeaders?: () => StompHeaders;
+}
 
 class WebSocketService {
     private stompClient: Client | null = null;
-    private subscriptions: Map<string, (message: any) => void> = new Map();
+    private subscriptions: Map<string, ActiveSubscription> = new Map();
     private isConnecting: boolean = false;
     private connectionPromise: Promise<void> | null = null;
+    // Native WebSocket first; SockJS once it fails (proxies without upgrade support)
+    private nativeFailed: boolean = false;
 
     private getHeaders(): StompHeaders {
         const token = localStorage.getItem('token');
@@ -17,6 +28,11 @@ class WebSocketService {
         return headers;
     }
 
+    // accept-batch: frames queued within a few ms may arrive in one WebSocket message
+    private getConnectHeaders(): StompHeaders {
+        return { ...this.getHeaders(), 'accept-batch': 'true' };
+    }
+
     private async ensureConnected(): Promise<void> {
         if (this.stompClient?.connected) {
             return;
@@ -30,14 +46,22 @@ class WebSocketService {
         this.connectionPromise = new Promise((resolve, reject) => {
             if (!this.stompClient) {
                 this.stompClient = new Client({
-                    webSocketFactory: () => new SockJS(API_CONFIG.WS_URL),
-                    connectHeaders: this.getHeaders(),
+                    webSocketFactory: () => this.nativeFailed
+                        ? new SockJS(API_CONFIG.WS_URL)
+                        : new WebSocket(API_CONFIG.WS_NATIVE_URL),
+                    // Runs before every (re)connect: a reconnect after the access token expired sends a fresh one
+                    beforeConnect: async () => {
+                        await freshAccessToken();
+                        if (this.stompClient) {
+                            this.stompClient.connectHeaders = this.getConnectHeaders();
+                        }
+                    },
                     onConnect: () => {
                         console.log('Connected to WebSocket');
                         this.isConnecting = false;
                         // Resubscribe to all active subscriptions
-                        this.subscriptions.forEach((callback, destination) => {
-                            this.subscribe(destination, callback);
+                        this.subscriptions.forEach(({ callback, subscribeHeaders }, destination) => {
+                            this.subscribe(destination, callback, subscribeHeaders);
                         });
                         resolve();
                     },
@@ -48,6 +72,11 @@ class WebSocketService {
                     },
                     onWebSocketError: (event) => {
                         console.error('WebSocket error:', event);
+                        if (!this.nativeFailed && !this.stompClient?.connected) {
+                            // The client reconnects on its own, this time over SockJS
+                            this.nativeFailed = true;
+                            return;
+                        }
                         this.isConnecting = false;
                         reject(event);
                     },
@@ -64,7 +93,7 @@ class WebSocketService {
         return this.connectionPromise;
     }
 
-    async subscribe(destination: string, callback: (message: any) => void) {
+    async subscribe(destination: string, callback: MessageCallback, subscribeHeaders?: () => StompHeaders) {
         try {
             await this.ensureConnected();
             
@@ -75,10 +104,10 @@ class WebSocketService {
             console.log('Subscribing to:', destination);
             const subscription = this.stompClient.subscribe(destination, (message) => {
                 console.log('Received message:', message);
-                callback(JSON.parse(message.body));
-            }, this.getHeaders());
+                callback(JSON.parse(message.body), message.headers);
+            }, { ...this.getHeaders(), ...subscribeHeaders?.() });
 
-            this.subscriptions.set(destination, callback);
+            this.subscriptions.set(destination, { callback, subscribeHeaders });
             return subscription;
         } catch (error) {
             console.error('Error subscribing to WebSocket:', error);